@@ -0,0 +1,101 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.oms.position.ProjectionPath;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.api.RiskRule;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap of MaxQuantity rules for large projections: one {@link SampleQuantityRiskRule} per row
+ * versus {@link CompactQuantityRiskRule} handles backed by {@link QuantityLimitTable}.
+ *
+ * Each operation builds rules for all rows and sends one order through every rule. Order exceeds the limit
+ * in {@link #breachPercent} percent of rows (standalone rules allocate breach reason on the first reject).
+ * Rules stay referenced until the end of iteration, when full GC is performed and heap retained per row is printed
+ * (<code>Retained heap: N bytes per row</code>). Projection paths are shared with risk table in server, so they are
+ * created during setup and excluded from measurement.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseSerialGC"})
+public class CompactLimitsMemoryBenchmark extends RiskRuleBenchmark<RiskRule> {
+
+    @Param("1000000")
+    public int rows;
+
+    @Param({"0", "10"})
+    public int breachPercent;
+
+    private RiskOrder order;
+    private OrderNewRequest smallOrder;
+    private OrderNewRequest largeOrder;
+    private ProjectionPath[] paths;
+    private RiskRule[] rules;
+    private long baselineHeap;
+
+    @Setup(Level.Trial)
+    public void setUpOrders() {
+        addInstruments();
+        smallOrder = newOrder(Side.BUY, 10, SYMBOL, 25);
+        largeOrder = newOrder(Side.BUY, 1_000_000, SYMBOL, 25);
+        order = placeOrder(smallOrder);
+
+        paths = new ProjectionPath[rows];
+        for (int i = 0; i < rows; i++)
+            paths[i] = makeProjectionPath(ProjectionKey.Trader, "T" + i);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        rules = new RiskRule[rows]; // same for both benchmarks, excluded from measurement
+        baselineHeap = usedHeapAfterGc();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportRetainedHeap() {
+        long retained = usedHeapAfterGc() - baselineHeap;
+        System.out.printf("%nRetained heap: %.1f bytes per row (%d MB per %d rows)%n", (double) retained / rows, retained >> 20, rows);
+        rules = null;
+    }
+
+    @Benchmark
+    public Object perRowRules() {
+        for (int i = 0; i < rows; i++) {
+            SampleQuantityRiskRule rule = new SampleQuantityRiskRule();
+            rule.setMaxQuantity(100 + (i & 1023));
+            rule.onNewOrderRequest(order, selectOrder(i), observer);
+            rules[i] = rule;
+        }
+        return observer;
+    }
+
+    @Benchmark
+    public Object compactRules() {
+        QuantityLimitTable limits = new QuantityLimitTable(rows);
+        for (int i = 0; i < rows; i++) {
+            CompactQuantityRiskRule rule = new CompactQuantityRiskRule(limits, paths[i]);
+            rule.setMaxQuantity(100 + (i & 1023));
+            rule.onNewOrderRequest(order, selectOrder(i), observer);
+            rules[i] = rule;
+        }
+        return observer;
+    }
+
+    private OrderNewRequest selectOrder(int row) {
+        return (row % 100 < breachPercent) ? largeOrder : smallOrder;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,79 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limit comparisons used by sample rules: Decimal64Utils arithmetic versus {@link FixedPoint} fast path
+ * (including conversion of the request value, as rules do on every request).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FixedPointBenchmark {
+
+    private static final int MASK = 1023;
+
+    private final @Decimal long[] quantities = new long[MASK + 1];
+    private final @Decimal long[] pnls = new long[MASK + 1];
+
+    private @Decimal long maxQuantity;
+    private long maxQuantityFixed;
+    private @Decimal long maxLoss;
+    private long maxLossFixed;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i <= MASK; i++) {
+            quantities[i] = Decimal64Utils.fromLong(1 + i % 200);
+            pnls[i] = Decimal64Utils.fromDouble((i % 2000 - 1000) * 1.25);
+        }
+        maxQuantity = Decimal64Utils.fromLong(150);
+        maxQuantityFixed = FixedPoint.toFixed(maxQuantity);
+        maxLoss = Decimal64Utils.fromLong(500);
+        maxLossFixed = FixedPoint.toFixed(maxLoss);
+    }
+
+    @Benchmark
+    public boolean quantityDecimal() {
+        return Decimal64Utils.isGreater(quantities[index++ & MASK], maxQuantity);
+    }
+
+    @Benchmark
+    public boolean quantityFixed() {
+        long quantity = FixedPoint.toFixed(quantities[index++ & MASK]);
+        return quantity > maxQuantityFixed;
+    }
+
+    @Benchmark
+    public boolean lossDecimal() {
+        @Decimal long pnl = pnls[index++ & MASK];
+        return Decimal64Utils.isNegative(pnl) && Decimal64Utils.isGreater(Decimal64Utils.abs(pnl), maxLoss);
+    }
+
+    @Benchmark
+    public boolean lossFixed() {
+        long pnl = FixedPoint.toFixed(pnls[index++ & MASK]);
+        return pnl < -maxLossFixed;
+    }
+
+    @Benchmark
+    public boolean positionDecimal() {
+        @Decimal long position = Decimal64Utils.add(pnls[index & MASK], quantities[index++ & MASK]);
+        return Decimal64Utils.isGreater(position, maxLoss);
+    }
+
+    @Benchmark
+    public boolean positionFixed() {
+        long position = FixedPoint.toFixed(pnls[index & MASK]) + FixedPoint.toFixed(quantities[index++ & MASK]);
+        return position > maxLossFixed;
+    }
+}
@@ -0,0 +1,115 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.util.FixedPositionView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Pre-trade checks of [MaxQuantity, MaxPosition, MaxLoss] projection: three standalone rules versus fused rule.
+ * Fused variant also calls two no-op aliases that server still invokes for the other limits of the row.
+ */
+public class FusedSampleRiskRuleBenchmark extends RiskRuleBenchmark<FusedSampleRiskRule> {
+
+    private SampleQuantityRiskRule quantityRule;
+    private SamplePositionRiskRule positionRule;
+    private SamplePnLRiskRule lossRule;
+    private FusedSampleRiskRule.Alias positionAlias;
+    private FusedSampleRiskRule.Alias lossAlias;
+
+    private RiskOrder order;
+    private OrderNewRequest newOrder;
+    private OrderReplaceRequest replace;
+
+    @Setup
+    public void setUp() {
+        addInstruments();
+
+        FixedPositionView position = new FixedPositionView();
+        position.setActualPositionSize(Decimal64Utils.fromLong(20));
+        position.setRealizedPnL(Decimal64Utils.fromLong(-50));
+
+        rule = new FusedSampleRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return position;
+            }
+        };
+        rule.enable(SampleQuantityRiskRule.MaxQuantity);
+        rule.enable(SamplePositionRiskRule.MaxPosition);
+        rule.enable(SamplePnLRiskRule.MaxLoss);
+        rule = init(rule);
+        rule.setMaxQuantity(15);
+        rule.setMaxPosition(100);
+        rule.setMaxLoss(100);
+        positionAlias = new FusedSampleRiskRule.Alias(SamplePositionRiskRule.MaxPosition, rule);
+        positionAlias.onLive(this);
+        lossAlias = new FusedSampleRiskRule.Alias(SamplePnLRiskRule.MaxLoss, rule);
+        lossAlias.onLive(this);
+
+        quantityRule = new SampleQuantityRiskRule();
+        quantityRule.onLive(this);
+        quantityRule.setMaxQuantity(15);
+        positionRule = new SamplePositionRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return position;
+            }
+        };
+        positionRule.onLive(this);
+        positionRule.setMaxPosition(100);
+        lossRule = new SamplePnLRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return position;
+            }
+        };
+        lossRule.onLive(this);
+        lossRule.setMaxPosition(100);
+
+        newOrder = newOrder(Side.BUY, 10, SYMBOL, 25);
+        order = placeOrder(newOrder);
+        replace = cancelReplaceOrder(newOrder, 12);
+
+        // register active order
+        rule.onNewOrderRequest(order, newOrder, null);
+        lossRule.onNewOrderRequest(order, newOrder, null);
+    }
+
+    @Benchmark
+    public Object newOrderPassSeparate() {
+        quantityRule.onNewOrderRequest(order, newOrder, observer);
+        positionRule.onNewOrderRequest(order, newOrder, observer);
+        lossRule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object newOrderPassFused() {
+        rule.onNewOrderRequest(order, newOrder, observer);
+        positionAlias.onNewOrderRequest(order, newOrder, observer);
+        lossAlias.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object replacePassSeparate() {
+        quantityRule.onReplaceOrderRequest(order, replace, observer);
+        positionRule.onReplaceOrderRequest(order, replace, observer);
+        lossRule.onReplaceOrderRequest(order, replace, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object replacePassFused() {
+        rule.onReplaceOrderRequest(order, replace, observer);
+        positionAlias.onReplaceOrderRequest(order, replace, observer);
+        lossAlias.onReplaceOrderRequest(order, replace, observer);
+        return observer;
+    }
+}
@@ -0,0 +1,89 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.MutableOrderTradeReportEvent;
+import deltix.ember.message.trade.OrderEntryRequest;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.position.ConstProjectionPath;
+import deltix.ember.service.oms.risk.api.RiskObserver;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.api.RiskRule;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of risk rule latency benchmarks.
+ *
+ * Benchmarks reuse RiskRuleTest harness wiring (TwoLevelOrdersCache + TestOrderProcessor + FixedPricingService):
+ * orders are placed into the cache during setup, benchmark methods measure risk rule callbacks alone.
+ *
+ * Run all benchmarks with allocation profiler: <code>./gradlew jmh</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class RiskRuleBenchmark<R extends RiskRule> extends RiskRuleTestEx<R> {
+
+    protected static final String SYMBOL = "MSFT";
+
+    protected final CountingRiskObserver observer = new CountingRiskObserver();
+    protected final CountingRiskObserver silentObserver = new CountingRiskObserver(false);
+
+    protected void addInstruments() {
+        addInstrument(SYMBOL, InstrumentType.EQUITY, 25);
+    }
+
+    /** Places new order into orders cache (as OMS does before calling risk rules) */
+    protected RiskOrder placeOrder(OrderNewRequest request) {
+        RiskOrder order = processor.placeOrder(request);
+        cache.add(order.getLastOrder());
+        return order;
+    }
+
+    protected MutableOrderTradeReportEvent tradeEvent(OrderEntryRequest request, int tradeQuantity) {
+        MutableOrderTradeReportEvent event = new MutableOrderTradeReportEvent();
+        event.setSourceId(request.getDestinationId());
+        event.setDestinationId(request.getSourceId());
+        event.setOrderId(request.getOrderId());
+        event.setTimestamp(currentTimeMillis());
+        event.setTradePrice(request.getLimitPrice());
+        event.setTradeQuantity(Decimal64Utils.fromLong(tradeQuantity));
+        event.setEventId("EVT" + request.getOrderId());
+        return event;
+    }
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        // benchmarks do not publish instrument updates
+    }
+
+    /** Counts breaches and consumes reject reason (as OMS would when it sends reject) */
+    protected static final class CountingRiskObserver implements RiskObserver {
+        private final boolean readReason;
+        long breaches;
+        long reasonLength;
+
+        CountingRiskObserver() {
+            this(true);
+        }
+
+        /** @param readReason false to ignore reject reason (e.g. rejects that are counted but not reported) */
+        CountingRiskObserver(boolean readReason) {
+            this.readReason = readReason;
+        }
+
+        @Override
+        public void onBreach(ConstProjectionPath path, String limitName, int rejectCode, CharSequence reason) {
+            breaches++;
+            if (readReason)
+                reasonLength += reason.length();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.OrderTradeReportEvent;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.util.FixedPositionView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+public class SamplePnLRiskRuleBenchmark extends RiskRuleBenchmark<SamplePnLRiskRule> {
+
+    private SamplePnLRiskRule breachRule;
+    private SamplePnLRiskRule markToMarketRule;
+
+    private RiskOrder order;
+    private OrderNewRequest newOrder;
+    private OrderReplaceRequest replace;
+    private OrderTradeReportEvent fill;
+    private OrderState state;
+
+    @Setup
+    public void setUp() {
+        addInstruments();
+
+        FixedPositionView position = new FixedPositionView();
+        position.setRealizedPnL(Decimal64Utils.fromLong(-50));
+        rule = init(newRiskRule(position, SamplePnLRiskRule.LossMode.REALIZED));
+
+        FixedPositionView losingPosition = new FixedPositionView();
+        losingPosition.setRealizedPnL(Decimal64Utils.fromLong(-500));
+        breachRule = init(newRiskRule(losingPosition, SamplePnLRiskRule.LossMode.REALIZED));
+
+        markToMarketRule = newRiskRule(position, SamplePnLRiskRule.LossMode.TOTAL);
+        markToMarketRule.setSymbol(SYMBOL); // TOTAL mode requires symbol when rule goes live
+        markToMarketRule = init(markToMarketRule);
+
+        newOrder = newOrder(Side.BUY, 10, SYMBOL, 25);
+        order = placeOrder(newOrder);
+        replace = cancelReplaceOrder(newOrder, 12);
+        fill = tradeEvent(newOrder, 1);
+        state = order.getState();
+
+        // register active order
+        rule.onNewOrderRequest(order, newOrder, null);
+        breachRule.onNewOrderRequest(order, newOrder, null);
+        markToMarketRule.onNewOrderRequest(order, newOrder, null);
+    }
+
+    @Benchmark
+    public Object newOrderPass() {
+        rule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    /** Breach is latched after the first reject: subsequent rejects reuse cached reason */
+    @Benchmark
+    public Object newOrderBreach() {
+        breachRule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    /** Limit update clears the latch, so each reject evaluates P&amp;L again */
+    @Benchmark
+    public Object newOrderBreachNotLatched() {
+        breachRule.setMaxPosition(100);
+        breachRule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object replacePass() {
+        rule.onReplaceOrderRequest(order, replace, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object fill() {
+        rule.onOrderEvent(order, fill, state, observer);
+        return observer;
+    }
+
+    /** Fill after breach: active order already has cancel requested */
+    @Benchmark
+    public Object fillBreach() {
+        breachRule.onOrderEvent(order, fill, state, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object fillMarkToMarket() {
+        markToMarketRule.onOrderEvent(order, fill, state, observer);
+        return observer;
+    }
+
+    private static SamplePnLRiskRule newRiskRule(PositionView position, SamplePnLRiskRule.LossMode lossMode) {
+        SamplePnLRiskRule result = new SamplePnLRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return position;
+            }
+        };
+        result.setLossMode(lossMode);
+        result.setMaxPosition(100);
+        return result;
+    }
+}
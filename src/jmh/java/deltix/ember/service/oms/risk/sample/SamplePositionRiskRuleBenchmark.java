@@ -0,0 +1,88 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.OrderTradeReportEvent;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.util.FixedPositionView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+public class SamplePositionRiskRuleBenchmark extends RiskRuleBenchmark<SamplePositionRiskRule> {
+
+    private SamplePositionRiskRule breachRule;
+
+    private RiskOrder order;
+    private OrderNewRequest newOrder;
+    private OrderReplaceRequest replace;
+    private OrderTradeReportEvent fill;
+    private OrderState state;
+
+    @Setup
+    public void setUp() {
+        addInstruments();
+
+        FixedPositionView position = new FixedPositionView();
+        position.setActualPositionSize(Decimal64Utils.fromLong(50));
+        position.setOpenBuySize(Decimal64Utils.fromLong(10));
+        rule = init(newRiskRule(position, 1e12)); // repeated requests consume headroom, keep it away from the limit
+
+        FixedPositionView largePosition = new FixedPositionView();
+        largePosition.setActualPositionSize(Decimal64Utils.fromLong(95));
+        largePosition.setOpenBuySize(Decimal64Utils.fromLong(10));
+        breachRule = init(newRiskRule(largePosition, 100));
+
+        newOrder = newOrder(Side.BUY, 10, SYMBOL, 25);
+        order = placeOrder(newOrder);
+        replace = cancelReplaceOrder(newOrder, 12);
+        fill = tradeEvent(newOrder, 1);
+        state = order.getState();
+    }
+
+    @Benchmark
+    public Object newOrderPass() {
+        rule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object newOrderBreach() {
+        breachRule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object replacePass() {
+        rule.onReplaceOrderRequest(order, replace, observer);
+        return observer;
+    }
+
+    /** Fill invalidates headroom: next request recomputes it from PositionView */
+    @Benchmark
+    public Object fillThenNewOrder() {
+        rule.onOrderEvent(order, fill, state, observer);
+        rule.onNewOrderRequest(order, newOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object fill() {
+        rule.onOrderEvent(order, fill, state, observer);
+        return observer;
+    }
+
+    private static SamplePositionRiskRule newRiskRule(PositionView position, double maxPosition) {
+        SamplePositionRiskRule result = new SamplePositionRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return position;
+            }
+        };
+        result.setMaxPosition(maxPosition);
+        return result;
+    }
+}
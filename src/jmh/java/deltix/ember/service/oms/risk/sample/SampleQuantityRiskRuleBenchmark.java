@@ -0,0 +1,65 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.OrderTradeReportEvent;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+public class SampleQuantityRiskRuleBenchmark extends RiskRuleBenchmark<SampleQuantityRiskRule> {
+
+    private RiskOrder order;
+    private OrderNewRequest smallOrder;
+    private OrderNewRequest largeOrder;
+    private OrderReplaceRequest replace;
+    private OrderTradeReportEvent fill;
+    private OrderState state;
+
+    @Setup
+    public void setUp() {
+        addInstruments();
+        rule = init(new SampleQuantityRiskRule());
+        rule.setMaxQuantity(15);
+
+        smallOrder = newOrder(Side.BUY, 10, SYMBOL, 25);
+        largeOrder = newOrder(Side.BUY, 20, SYMBOL, 25);
+        order = placeOrder(smallOrder);
+        replace = cancelReplaceOrder(smallOrder, 12);
+        fill = tradeEvent(smallOrder, 1);
+        state = order.getState();
+    }
+
+    @Benchmark
+    public Object newOrderPass() {
+        rule.onNewOrderRequest(order, smallOrder, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object newOrderBreach() {
+        rule.onNewOrderRequest(order, largeOrder, observer);
+        return observer;
+    }
+
+    /** Breach when nobody reads reject reason: reason text is never rendered */
+    @Benchmark
+    public Object newOrderBreachReasonNotRead() {
+        rule.onNewOrderRequest(order, largeOrder, silentObserver);
+        return silentObserver;
+    }
+
+    @Benchmark
+    public Object replacePass() {
+        rule.onReplaceOrderRequest(order, replace, observer);
+        return observer;
+    }
+
+    @Benchmark
+    public Object fill() {
+        rule.onOrderEvent(order, fill, state, observer);
+        return observer;
+    }
+}
@@ -0,0 +1,273 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+
+import java.util.Arrays;
+
+/**
+ * Set of live orders tracked by a risk rule.
+ *
+ * Orders are kept in a dense array (for fast garbage-free iteration) and indexed by an open-addressing
+ * hash table keyed by sourceId/orderId. Both add() and remove() are O(1): removal uses backward-shift deletion
+ * in the hash table and swaps the last order into the freed dense position.
+ *
+ * Index allocates only when it grows beyond its capacity. Size initial capacity for expected number of resting orders.
+ *
+ * Each order also carries "cancel requested" latch used by {@link BreachCancelEmitter} to avoid duplicate cancels
+ * and optional primitive attachments (e.g. open notional of the order) that move together with the order.
+ *
+ * Typical iteration:
+ * <pre>
+ *     for (int i = 0; i &lt; activeOrders.size(); i++) {
+ *         RiskOrder order = activeOrders.get(i);
+ *         ...
+ *     }
+ * </pre>
+ * Note that removal changes positions of the remaining orders, so do not remove orders while iterating.
+ *
+ * This class is not thread-safe (risk rules are called from single OMS thread).
+ */
+public final class ActiveOrderIndex {
+
+    private static final int EMPTY = -1;
+
+    private RiskOrder[] orders;
+    private int[] hashes;   // hash of each order in dense array
+    private boolean[] cancelRequested;
+    private int cancelRequestedCount;
+    private long[] attachments; // attachmentCount values per order
+    private final int attachmentCount;
+    private int[] slots;    // hash table, contains position in dense array or EMPTY
+    private int mask;
+    private int size;
+
+    public ActiveOrderIndex() {
+        this(128);
+    }
+
+    public ActiveOrderIndex(int initialCapacity) {
+        this(initialCapacity, 0);
+    }
+
+    /** @param attachmentCount number of long values attached to each order */
+    public ActiveOrderIndex(int initialCapacity, int attachmentCount) {
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        if (attachmentCount < 0)
+            throw new IllegalArgumentException("Attachment count must not be negative: " + attachmentCount);
+
+        this.attachmentCount = attachmentCount;
+        attachments = new long[initialCapacity * attachmentCount];
+        orders = new RiskOrder[initialCapacity];
+        hashes = new int[initialCapacity];
+        cancelRequested = new boolean[initialCapacity];
+        slots = new int[tableSize(initialCapacity)];
+        mask = slots.length - 1;
+        Arrays.fill(slots, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return order at given position of dense array, 0 &lt;= index &lt; size() */
+    public RiskOrder get(int index) {
+        assert index < size;
+        return orders[index];
+    }
+
+    /** @return true if risk rule already requested cancellation of order at given position */
+    public boolean isCancelRequested(int index) {
+        assert index < size;
+        return cancelRequested[index];
+    }
+
+    public void setCancelRequested(int index, boolean value) {
+        assert index < size;
+        if (cancelRequested[index] != value) {
+            cancelRequested[index] = value;
+            cancelRequestedCount += value ? 1 : -1;
+        }
+    }
+
+    /** @return attachment of order at given position, 0 &lt;= slot &lt; attachmentCount */
+    public long getAttachment(int index, int slot) {
+        assert index < size && slot < attachmentCount;
+        return attachments[index * attachmentCount + slot];
+    }
+
+    public void setAttachment(int index, int slot, long value) {
+        assert index < size && slot < attachmentCount;
+        attachments[index * attachmentCount + slot] = value;
+    }
+
+    /** @return true if cancellation was requested for every order in this index */
+    public boolean isCancelRequestedForAll() {
+        return cancelRequestedCount == size;
+    }
+
+    public boolean contains(RiskOrder order) {
+        return indexOf(order.getSourceId(), order.getOrderId()) != EMPTY;
+    }
+
+    /** @return active order with given identity or null */
+    public RiskOrder find(long sourceId, CharSequence orderId) {
+        int index = indexOf(sourceId, orderId);
+        return (index != EMPTY) ? orders[index] : null;
+    }
+
+    /** @return position of the order in dense array or -1 if order is not in this index */
+    public int indexOf(long sourceId, CharSequence orderId) {
+        int hash = hash(sourceId, orderId);
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int index = slots[slot];
+            if (index == EMPTY)
+                return EMPTY;
+            if (hashes[index] == hash && isSameOrder(orders[index], sourceId, orderId))
+                return index;
+        }
+    }
+
+    /** @return false if order is already in this index */
+    public boolean add(RiskOrder order) {
+        int size = this.size;
+        return addOrGet(order) == size;
+    }
+
+    /**
+     * Adds order unless it is already in this index. Attachments of added order are zero.
+     * @return position of the order in dense array
+     */
+    public int addOrGet(RiskOrder order) {
+        long sourceId = order.getSourceId();
+        CharSequence orderId = order.getOrderId();
+        int hash = hash(sourceId, orderId);
+
+        int slot = hash & mask;
+        for (int index; (index = slots[slot]) != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[index] == hash && isSameOrder(orders[index], sourceId, orderId))
+                return index;
+        }
+
+        if (size == orders.length) {
+            grow();
+            slot = findEmptySlot(hash);
+        }
+
+        orders[size] = order;
+        hashes[size] = hash;
+        cancelRequested[size] = false;
+        for (int i = size * attachmentCount, end = i + attachmentCount; i < end; i++)
+            attachments[i] = 0;
+        slots[slot] = size;
+        return size++;
+    }
+
+    /** @return false if order was not in this index */
+    public boolean remove(RiskOrder order) {
+        long sourceId = order.getSourceId();
+        CharSequence orderId = order.getOrderId();
+        int hash = hash(sourceId, orderId);
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int index = slots[slot];
+            if (index == EMPTY)
+                return false;
+
+            if (hashes[index] == hash && isSameOrder(orders[index], sourceId, orderId)) {
+                deleteSlot(slot);
+                removeDense(index);
+                return true;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(orders, 0, size, null);
+        Arrays.fill(cancelRequested, 0, size, false);
+        Arrays.fill(slots, EMPTY);
+        cancelRequestedCount = 0;
+        size = 0;
+    }
+
+    /// region Internals
+
+    /** Backward-shift deletion: keeps probe sequences intact without tombstones */
+    private void deleteSlot(int hole) {
+        for (int slot = (hole + 1) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = hashes[slots[slot]] & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    /** Moves last order of dense array into removed position */
+    private void removeDense(int index) {
+        if (cancelRequested[index])
+            cancelRequestedCount--;
+
+        int last = --size;
+        if (index != last) {
+            int hash = hashes[last];
+            orders[index] = orders[last];
+            hashes[index] = hash;
+            cancelRequested[index] = cancelRequested[last];
+            if (attachmentCount != 0)
+                System.arraycopy(attachments, last * attachmentCount, attachments, index * attachmentCount, attachmentCount);
+
+            int slot = hash & mask;
+            while (slots[slot] != last)
+                slot = (slot + 1) & mask;
+            slots[slot] = index;
+        }
+        orders[last] = null;
+        cancelRequested[last] = false;
+    }
+
+    private int findEmptySlot(int hash) {
+        int slot = hash & mask;
+        while (slots[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = orders.length << 1;
+        orders = Arrays.copyOf(orders, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        cancelRequested = Arrays.copyOf(cancelRequested, capacity);
+        attachments = Arrays.copyOf(attachments, capacity * attachmentCount);
+        slots = new int[tableSize(capacity)];
+        mask = slots.length - 1;
+        Arrays.fill(slots, EMPTY);
+
+        for (int index = 0; index < size; index++)
+            slots[findEmptySlot(hashes[index])] = index;
+    }
+
+    /** Keeps load factor of hash table at or below 0.5 */
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 2) - 1) << 2;
+    }
+
+    private static boolean isSameOrder(RiskOrder order, long sourceId, CharSequence orderId) {
+        return order.getSourceId() == sourceId && CharSequenceUtil.equals(order.getOrderId(), orderId);
+    }
+
+    static int hash(long sourceId, CharSequence orderId) {
+        int hash = Long.hashCode(sourceId);
+        for (int i = 0, length = orderId.length(); i < length; i++)
+            hash = 31 * hash + orderId.charAt(i);
+        return hash ^ (hash >>> 16);
+    }
+
+    /// endregion
+}
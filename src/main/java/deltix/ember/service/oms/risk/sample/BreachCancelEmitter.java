@@ -0,0 +1,142 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.trade.MutableOrderCancelRequest;
+import deltix.ember.message.trade.MutableOrderMassCancelRequest;
+import deltix.ember.service.oms.position.ProjectionPath;
+import deltix.ember.service.oms.risk.api.RiskManagerContext;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+
+import javax.annotation.Nullable;
+
+/**
+ * Cancels active orders of a risk rule when the rule detects limit breach.
+ *
+ * Each order is canceled at most once: emitter sets "cancel requested" latch of the order in {@link ActiveOrderIndex}
+ * and skips latched orders on subsequent breach evaluations. The latch is cleared only when venue rejects the cancel
+ * (see {@link #onCancelRejected(ActiveOrderIndex, RiskOrder)}), so that next evaluation retries it.
+ *
+ * Orders sent to destinations that support mass cancellation are grouped into a single
+ * OrderMassCancelRequest per source/destination pair. Mass cancel affects all orders of the source on that
+ * destination, so it is only used when projection row is keyed by nothing but Source and/or Destination
+ * (see {@link #setProjectionPath(ProjectionPath)}). Orders of other projections are canceled one by one.
+ *
+ * Emitter reuses the same request instances (garbage free).
+ */
+public final class BreachCancelEmitter {
+
+    private static final int MAX_MASS_CANCEL_GROUPS = 16;
+
+    private final MutableOrderCancelRequest cancelRequest = new MutableOrderCancelRequest();
+    private final MutableOrderMassCancelRequest massCancelRequest = new MutableOrderMassCancelRequest();
+    private final StringBuilder requestId = new StringBuilder(64);
+
+    private final long[] massCancelDestinations;
+    private final long[] groupSourceIds = new long[MAX_MASS_CANCEL_GROUPS];
+    private final long[] groupDestinationIds = new long[MAX_MASS_CANCEL_GROUPS];
+    private int groupCount;
+    private boolean massCancelAllowed;
+    private long requestSequence;
+
+    /**
+     * @param reason text of cancel requests
+     * @param massCancelDestinations destinations that support mass cancel (empty array if none)
+     */
+    public BreachCancelEmitter(String reason, long[] massCancelDestinations) {
+        this.massCancelDestinations = massCancelDestinations;
+        cancelRequest.setReason(reason);
+    }
+
+    /** @param path projection row of the rule, mass cancel is only allowed for Source/Destination rows */
+    public void setProjectionPath(@Nullable ProjectionPath path) {
+        this.massCancelAllowed = massCancelDestinations.length > 0 && path != null && ProjectionPathUtil.isSourceOrDestinationOnly(path);
+    }
+
+    /**
+     * Sends cancel request for every active order that was not canceled yet
+     * @return number of orders for which cancel was requested
+     */
+    public int cancelAll(ActiveOrderIndex activeOrders, RiskManagerContext context) {
+        if (activeOrders.isCancelRequestedForAll())
+            return 0;
+
+        final long now = context.getClock().time();
+        int count = 0;
+        groupCount = 0;
+
+        for (int i = 0; i < activeOrders.size(); i++) {
+            if (activeOrders.isCancelRequested(i))
+                continue;
+
+            RiskOrder order = activeOrders.get(i);
+            if ( ! massCancelAllowed || ! addToMassCancelGroup(order.getSourceId(), order.getDestinationId()))
+                sendCancel(order, now, context);
+
+            activeOrders.setCancelRequested(i, true);
+            count++;
+        }
+
+        for (int i = 0; i < groupCount; i++)
+            sendMassCancel(groupSourceIds[i], groupDestinationIds[i], now, context);
+
+        return count;
+    }
+
+    /** Re-arms cancellation of given order, should be called when venue rejects cancel request */
+    public void onCancelRejected(ActiveOrderIndex activeOrders, RiskOrder order) {
+        int index = activeOrders.indexOf(order.getSourceId(), order.getOrderId());
+        if (index >= 0)
+            activeOrders.setCancelRequested(index, false);
+    }
+
+    private void sendCancel(RiskOrder order, long now, RiskManagerContext context) {
+        requestId.setLength(0);
+        requestId.append("cancel_").append(order.getOrderId()).append('_').append(++requestSequence); // unique when cancel is retried
+
+        cancelRequest.setTimestamp(now);
+        cancelRequest.setRequestId(requestId);
+        cancelRequest.setSourceId(order.getSourceId());
+        cancelRequest.setOrderId(order.getOrderId());
+        cancelRequest.setDestinationId(order.getDestinationId());
+
+        context.sendCancelOrderRequest(cancelRequest);
+    }
+
+    private void sendMassCancel(long sourceId, long destinationId, long now, RiskManagerContext context) {
+        requestId.setLength(0);
+        requestId.append("mass_cancel_").append(++requestSequence);
+
+        massCancelRequest.setTimestamp(now);
+        massCancelRequest.setRequestId(requestId);
+        massCancelRequest.setSourceId(sourceId);
+        massCancelRequest.setDestinationId(destinationId);
+
+        context.sendCancelMassOrderRequest(massCancelRequest);
+    }
+
+    /** @return false if destination does not support mass cancel (or there are too many groups already) */
+    private boolean addToMassCancelGroup(long sourceId, long destinationId) {
+        if ( ! supportsMassCancel(destinationId))
+            return false;
+
+        for (int i = 0; i < groupCount; i++) {
+            if (groupSourceIds[i] == sourceId && groupDestinationIds[i] == destinationId)
+                return true;
+        }
+
+        if (groupCount == MAX_MASS_CANCEL_GROUPS)
+            return false;
+
+        groupSourceIds[groupCount] = sourceId;
+        groupDestinationIds[groupCount] = destinationId;
+        groupCount++;
+        return true;
+    }
+
+    private boolean supportsMassCancel(long destinationId) {
+        for (long massCancelDestination : massCancelDestinations) {
+            if (massCancelDestination == destinationId)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,81 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Reusable reject reason of the form "prefix VALUE infix LIMIT" (e.g. "Order quantity 20 exceeds maximum 15")
+ * or a constant message.
+ *
+ * Rule captures the numbers as primitives and passes this object to RiskObserver.onBreach() as reason.
+ * Text is rendered only when somebody reads it (e.g. when reject is serialized or logged) and only once per breach,
+ * so reject storms do not pay for formatting of the messages nobody reads.
+ *
+ * Like rule's clean buffer, reason is valid until the next breach of the same rule.
+ * Observers that need to keep the text should copy it.
+ */
+public final class BreachReason implements CharSequence {
+
+    private final StringBuilder text = new StringBuilder(96);
+    private boolean rendered;
+
+    private String prefix;
+    private @Decimal long value;
+    private String infix;
+    private @Decimal long limit;
+
+    /** Captures reason parameters, text is rendered on demand */
+    public BreachReason set(String prefix, @Decimal long value, String infix, @Decimal long limit) {
+        this.prefix = prefix;
+        this.value = value;
+        this.infix = infix;
+        this.limit = limit;
+        this.rendered = false;
+        return this;
+    }
+
+    /** Sets constant reason text */
+    public BreachReason set(String message) {
+        this.prefix = message;
+        this.infix = null;
+        this.rendered = false;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return render().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return render().charAt(index);
+    }
+
+    @Nonnull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return render().subSequence(start, end);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return render().toString();
+    }
+
+    private StringBuilder render() {
+        if ( ! rendered) {
+            text.setLength(0);
+            text.append(prefix);
+            if (infix != null) {
+                Decimal64Utils.appendTo(value, text).append(infix);
+                Decimal64Utils.appendTo(limit, text);
+            }
+            rendered = true;
+        }
+        return text;
+    }
+}
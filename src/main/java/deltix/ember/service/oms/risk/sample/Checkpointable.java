@@ -0,0 +1,19 @@
+package deltix.ember.service.oms.risk.sample;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Risk rule which state can be saved into (and restored from) periodic checkpoint, see {@link RuleCheckpoint}.
+ *
+ * Only state that cannot be rebuilt from active orders of OMS belongs to checkpoint (counters, accumulated P&amp;L etc).
+ * Restored rule skips warm-up messages already reflected in the checkpoint (see SampleRiskRule.isCheckpointed()),
+ * so implementations must call isCheckpointed() before applying a message to checkpointed state.
+ */
+public interface Checkpointable {
+
+    /** Writes rule state. Called from OMS thread, must not allocate */
+    void writeCheckpoint(ByteBuffer buffer);
+
+    /** Restores rule state written by {@link #writeCheckpoint(ByteBuffer)}. Called before warm-up */
+    void readCheckpoint(ByteBuffer buffer);
+}
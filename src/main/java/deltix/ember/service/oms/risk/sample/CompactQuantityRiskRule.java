@@ -0,0 +1,76 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.OrderEntryRequest;
+import deltix.ember.message.trade.OrderEvent;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.position.ProjectionPath;
+import deltix.ember.service.oms.risk.api.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static deltix.ember.service.oms.risk.sample.SampleQuantityRiskRule.MaxQuantity;
+
+/**
+ * Compact flavor of {@link SampleQuantityRiskRule}.
+ *
+ * Risk manager still needs a RiskRule instance per projection row, but this handle carries no limit state:
+ * the limit lives in shared {@link QuantityLimitTable} at position {@link #getRow()}, breach reason
+ * is shared by all handles of the table. Handle extends AbstractRiskRule directly (not {@link SampleRiskRule}),
+ * so it has no per-row latency, checkpoint or warm start fields either (compact rows are not instrumented).
+ *
+ * Handle holds no references other than the table, table row is keyed by projection path and is reused by the handle
+ * that risk manager creates when it re-creates the row. Limit check uses {@link FixedPoint} comparison when possible.
+ */
+public final class CompactQuantityRiskRule extends AbstractRiskRule {
+
+    private final QuantityLimitTable limits;
+    private final int row;
+
+    public CompactQuantityRiskRule(QuantityLimitTable limits, ProjectionPath path) {
+        super("Max Order Quantity");
+        this.limits = limits;
+        this.row = limits.acquireRow(path);
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxQuantity((riskLimits == null) ? -1 : riskLimits.getIntLimit(MaxQuantity, -1));
+    }
+
+    public long getMaxQuantity() {
+        return Decimal64Utils.toLong(limits.getMaxQuantity(row));
+    }
+
+    // negative maxQuantity for unlimited
+    public void setMaxQuantity(long maxQuantity) {
+        limits.setMaxQuantity(row, (maxQuantity >= 0) ? Decimal64Utils.fromLong(maxQuantity) : Decimal64Utils.NULL);
+    }
+
+    @Override
+    public void onNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        validateQuantity(request, observer);
+    }
+
+    @Override
+    public void onReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        validateQuantity(request, observer);
+    }
+
+    @Override
+    public void onOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+    }
+
+    private void validateQuantity(@Nonnull OrderEntryRequest request, @Nullable RiskObserver observer) {
+        if (observer != null && limits.exceedsMaxQuantity(row, request.getQuantity()))
+            observer.onBreach(getProjectionPath(), MaxQuantity, DeltixRiskCodes.MAX_ORDER_SIZE.ordinal(),
+                    limits.getBreachReason().set("Order quantity ", request.getQuantity(), " exceeds maximum ", limits.getMaxQuantity(row)));
+    }
+}
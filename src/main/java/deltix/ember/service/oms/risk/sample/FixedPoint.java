@@ -0,0 +1,77 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+
+/**
+ * Fast path for limit checks: Decimal64 values are normalized into longs scaled by 10^{@link #SCALE},
+ * so that rules compare and accumulate them with plain integer operations.
+ *
+ * Conversion decodes BID64 encoding directly (no Decimal64 arithmetic). Values that cannot be represented exactly
+ * (more than SCALE fractional digits, magnitude above ~2.3E10, NaN, infinities, NULL) are reported as {@link #NOT_FIXED}
+ * and callers fall back to Decimal64Utils comparisons.
+ *
+ * Magnitude of fixed-point values is kept below 2^61, so sum or difference of any four of them does not overflow.
+ */
+final class FixedPoint {
+
+    /** Number of fractional decimal digits */
+    static final int SCALE = 8;
+
+    /** Marker of value that does not fit fixed-point representation */
+    static final long NOT_FIXED = Long.MIN_VALUE;
+
+    private static final long SPECIAL_ENCODING_MASK = 0x6000000000000000L;
+    private static final long SMALL_COEFFICIENT_MASK = 0x001FFFFFFFFFFFFFL;
+    private static final int EXPONENT_SHIFT = 53;
+    private static final int EXPONENT_MASK = 0x3FF;
+    private static final int EXPONENT_BIAS = 398;
+    private static final long MAX_FIXED = Long.MAX_VALUE >> 2;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final long[] MAX_COEFFICIENT = new long[19];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            MAX_COEFFICIENT[i] = MAX_FIXED / power;
+            power *= 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /** @return value scaled by 10^SCALE or {@link #NOT_FIXED} if value cannot be represented exactly */
+    static long toFixed(@Decimal long value) {
+        if ((value & SPECIAL_ENCODING_MASK) == SPECIAL_ENCODING_MASK)
+            return NOT_FIXED; // NaN, infinity or large (17 digit) coefficient
+
+        final long coefficient = value & SMALL_COEFFICIENT_MASK;
+        if (coefficient == 0)
+            return 0;
+
+        final int exponent = (int) ((value >>> EXPONENT_SHIFT) & EXPONENT_MASK) - EXPONENT_BIAS + SCALE;
+        final long result;
+        if (exponent >= 0) {
+            if (exponent >= POWERS_OF_TEN.length || coefficient > MAX_COEFFICIENT[exponent])
+                return NOT_FIXED;
+            result = coefficient * POWERS_OF_TEN[exponent];
+        } else {
+            if (-exponent >= POWERS_OF_TEN.length)
+                return NOT_FIXED;
+            final long power = POWERS_OF_TEN[-exponent];
+            result = coefficient / power;
+            if (result * power != coefficient)
+                return NOT_FIXED; // more than SCALE fractional digits
+        }
+        return (value < 0) ? -result : result;
+    }
+
+    /** @return Decimal64 value of given fixed-point value */
+    @Decimal
+    static long toDecimal(long fixed) {
+        return Decimal64Utils.fromFixedPoint(fixed, SCALE);
+    }
+}
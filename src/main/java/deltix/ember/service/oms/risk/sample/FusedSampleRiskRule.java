@@ -0,0 +1,285 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.data.OrderEntry;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static deltix.ember.service.oms.risk.sample.SamplePnLRiskRule.MaxLoss;
+import static deltix.ember.service.oms.risk.sample.SamplePositionRiskRule.MaxPosition;
+import static deltix.ember.service.oms.risk.sample.SampleQuantityRiskRule.MaxQuantity;
+
+/**
+ * Single evaluator of MaxQuantity, MaxPosition and (realized) MaxLoss limits of one projection row.
+ *
+ * Behaves like a combination of {@link SampleQuantityRiskRule}, {@link SamplePositionRiskRule} and
+ * {@link SamplePnLRiskRule} in REALIZED mode, but reads PositionView once per request and stops at the first breach.
+ * Breaches are reported with the same limit names, reject codes and messages as standalone rules.
+ *
+ * Factory returns this rule for the first sample limit created for a projection row and {@link Alias} rules for the others,
+ * each created limit is enabled in this rule via {@link #enable(String)}.
+ * Active orders (MaxLoss) are rebuilt from OMS when rule goes live, see {@link SamplePnLRiskRule}. Active order index and
+ * breach cancel emitter are allocated only when MaxLoss is enabled.
+ */
+public class FusedSampleRiskRule extends SampleRiskRule implements PositionRule {
+
+    private static final Log LOGGER = LogFactory.getLog(FusedSampleRiskRule.class);
+
+    private static final int QUANTITY = 1;
+    private static final int POSITION = 2;
+    private static final int LOSS = 4;
+
+    private int enabledLimits;
+
+    private @Decimal long maxQuantity = Decimal64Utils.NULL; // NULL if unlimited
+    private @Decimal long maxPosition = Decimal64Utils.NULL; // NULL if unlimited
+    private @Decimal long maxLoss = Decimal64Utils.NULL;     // NULL if unlimited
+    private long maxQuantityFixed = FixedPoint.NOT_FIXED;
+    private long maxPositionFixed = FixedPoint.NOT_FIXED;
+    private long maxLossFixed = FixedPoint.NOT_FIXED;
+
+    protected ActiveOrderIndex activeOrders; // null unless MaxLoss is enabled
+    private BreachCancelEmitter cancelEmitter;
+    private final long[] massCancelDestinations;
+
+    private RiskManagerContext context;
+    private PositionView position;
+    private PositionView positionOverride; // set by offline tools
+
+    public FusedSampleRiskRule() {
+        this(new long[0]);
+    }
+
+    /** @param massCancelDestinations destinations that support mass cancel (used to cancel active orders on MaxLoss breach) */
+    public FusedSampleRiskRule(long[] massCancelDestinations) {
+        super("Sample Limits");
+        this.massCancelDestinations = massCancelDestinations;
+    }
+
+    /**
+     * Enables evaluation of given limit by this rule
+     * @throws IllegalArgumentException if the limit is not supported
+     */
+    public void enable(String limitName) {
+        final int flag = toFlag(limitName);
+        if (flag == LOSS && activeOrders == null) {
+            activeOrders = new ActiveOrderIndex(128);
+            cancelEmitter = new BreachCancelEmitter("MaxLoss limit breached", massCancelDestinations);
+        }
+        enabledLimits |= flag;
+    }
+
+    public boolean isEnabled(String limitName) {
+        return (enabledLimits & toFlag(limitName)) != 0;
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxQuantity((riskLimits == null || (enabledLimits & QUANTITY) == 0) ? -1 : riskLimits.getIntLimit(MaxQuantity, -1));
+        setMaxPosition((riskLimits == null || (enabledLimits & POSITION) == 0) ? -1 : riskLimits.getDoubleLimit(MaxPosition, -1));
+        setMaxLoss((riskLimits == null || (enabledLimits & LOSS) == 0) ? -1 : riskLimits.getDoubleLimit(MaxLoss, -1));
+    }
+
+    @Override
+    public Object getCurrentValue(String limitName) {
+        if (position != null) {
+            if (MaxPosition.equals(limitName))
+                return Decimal64Utils.abs(Decimal64Utils.add(position.getActualPositionSize(), Decimal64Utils.subtract(position.getOpenBuySize(), position.getOpenSellSize())));
+            if (MaxLoss.equals(limitName))
+                return Decimal64Utils.abs(Decimal64Utils.min(position.getRealizedPnL(), Decimal64Utils.ZERO));
+        }
+        return super.getCurrentValue(limitName);
+    }
+
+    // negative maxQuantity for unlimited
+    public void setMaxQuantity(long maxQuantity) {
+        this.maxQuantity = (maxQuantity >= 0) ? Decimal64Utils.fromLong(maxQuantity) : Decimal64Utils.NULL;
+        this.maxQuantityFixed = FixedPoint.toFixed(this.maxQuantity);
+    }
+
+    // negative maxPosition for unlimited
+    public void setMaxPosition(double maxPosition) {
+        this.maxPosition = (maxPosition >= 0) ? Decimal64Utils.fromDouble(maxPosition) : Decimal64Utils.NULL;
+        this.maxPositionFixed = FixedPoint.toFixed(this.maxPosition);
+    }
+
+    // negative maxLoss for unlimited
+    public void setMaxLoss(double maxLoss) {
+        this.maxLoss = (maxLoss >= 0) ? Decimal64Utils.fromDouble(maxLoss) : Decimal64Utils.NULL;
+        this.maxLossFixed = FixedPoint.toFixed(this.maxLoss);
+    }
+
+    @Override
+    public void onLive(RiskManagerContext context) {
+        this.context = context;
+        this.position = lookupPositionView();
+        if (this.position == null && (enabledLimits & (POSITION | LOSS)) != 0)
+            LOGGER.error("MaxPosition and MaxLoss limits must be defined on Position projection");
+
+        if ((enabledLimits & LOSS) != 0)
+            cancelEmitter.setProjectionPath(getProjectionPath());
+
+        if ((enabledLimits & LOSS) != 0 && isWarmStartSupported()) {
+            activeOrders.clear();
+            iterateActiveOrders(context, (order, index) -> index.add(order), activeOrders);
+        }
+    }
+
+    @Override
+    public void setPositionView(PositionView position) {
+        this.positionOverride = position;
+    }
+
+    /** @return PositionView of parent projection or null if projection does not maintain positions */
+    protected PositionView lookupPositionView() {
+        return (positionOverride != null) ? positionOverride : getParentGroup().getPositionView();
+    }
+
+    @Override
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        if ((enabledLimits & LOSS) != 0 && (observer != null || ! isWarmStartSupported()))
+            activeOrders.add(order);
+
+        checkLimits(order, request, true, observer);
+    }
+
+    /** As in {@link SamplePositionRiskRule}, MaxPosition is checked only when replace increases order quantity */
+    @Override
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        OrderEntry workingOrder = order.getWorkingOrder();
+        boolean quantityIncreases = (workingOrder == null) || Decimal64Utils.isGreater(request.getQuantity(), workingOrder.getQuantity());
+        checkLimits(order, request, quantityIncreases, observer);
+    }
+
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (activeOrders == null || activeOrders.isEmpty() || (observer == null && isWarmStartSupported()))
+            return; // active orders are rebuilt on live
+
+        if (event instanceof OrderTradeReportEvent) {
+            if (observer != null && position != null && isLossLimitBreached(position.getRealizedPnL()))
+                cancelEmitter.cancelAll(activeOrders, context);
+        } else if (event instanceof OrderCancelRejectEvent) {
+            cancelEmitter.onCancelRejected(activeOrders, order);
+        }
+
+        if (order.isFinal())
+            activeOrders.remove(order);
+    }
+
+    /** @param checkPosition false if request cannot increase estimated position */
+    private void checkLimits(RiskOrder order, OrderEntryRequest request, boolean checkPosition, RiskObserver observer) {
+        if (observer == null)
+            return;
+
+        if ( ! Decimal64Utils.isNull(maxQuantity) && exceedsMaxQuantity(request.getQuantity())) {
+            observer.onBreach(getProjectionPath(), MaxQuantity, DeltixRiskCodes.MAX_ORDER_SIZE.ordinal(),
+                    getBreachReason().set("Order quantity ", request.getQuantity(), " exceeds maximum ", maxQuantity));
+            return;
+        }
+
+        final PositionView position = this.position;
+        if (position == null)
+            return;
+
+        if (checkPosition && ! Decimal64Utils.isNull(maxPosition)) {
+            boolean isBuyOrder = (order.getSide() == Side.BUY);
+            @Decimal long actualPositionSize = position.getActualPositionSize();
+            @Decimal long openSize = isBuyOrder ? position.getOpenBuySize() : position.getOpenSellSize();
+            @Decimal long positionSize = estimatePositionIfExceeds(isBuyOrder, actualPositionSize, openSize);
+
+            if ( ! Decimal64Utils.isNull(positionSize)) {
+                observer.onBreach(getProjectionPath(), MaxPosition, DeltixRiskCodes.MAX_NET_POSITION_SIZE.ordinal(), getBreachReason()
+                        .set(isBuyOrder ? "Estimated LONG position " : "Estimated SHORT position ", positionSize, " would exceed maximum limit ", maxPosition));
+                return;
+            }
+        }
+
+        if ( ! Decimal64Utils.isNull(maxLoss)) {
+            @Decimal long pnl = position.getRealizedPnL();
+            if (isLossLimitBreached(pnl)) {
+                observer.onBreach(getProjectionPath(), MaxLoss, 0,
+                        getBreachReason().set("Realized Loss ", pnl, " exceeds maximum ", maxLoss));
+            }
+        }
+    }
+
+    private boolean exceedsMaxQuantity(@Decimal long quantity) {
+        final long fixedQuantity;
+        if (maxQuantityFixed != FixedPoint.NOT_FIXED && (fixedQuantity = FixedPoint.toFixed(quantity)) != FixedPoint.NOT_FIXED)
+            return fixedQuantity > maxQuantityFixed;
+
+        return Decimal64Utils.isGreater(quantity, maxQuantity);
+    }
+
+    /** @return estimated LONG (or SHORT) position if it exceeds maxPosition, NULL otherwise */
+    private @Decimal long estimatePositionIfExceeds(boolean isBuyOrder, @Decimal long actualPositionSize, @Decimal long openSize) {
+        final long actualFixed = FixedPoint.toFixed(actualPositionSize);
+        final long openFixed = FixedPoint.toFixed(openSize);
+        if (maxPositionFixed != FixedPoint.NOT_FIXED && actualFixed != FixedPoint.NOT_FIXED && openFixed != FixedPoint.NOT_FIXED) {
+            long positionFixed = isBuyOrder ? actualFixed + openFixed : openFixed - actualFixed;
+            return (positionFixed > maxPositionFixed) ? FixedPoint.toDecimal(positionFixed) : Decimal64Utils.NULL;
+        }
+
+        @Decimal long positionSize = isBuyOrder ?
+                Decimal64Utils.add(actualPositionSize, openSize) :
+                Decimal64Utils.subtract(openSize, actualPositionSize);
+        return Decimal64Utils.isGreater(positionSize, maxPosition) ? positionSize : Decimal64Utils.NULL;
+    }
+
+    private boolean isLossLimitBreached(@Decimal long pnl) {
+        if (Decimal64Utils.isNull(maxLoss))
+            return false;
+
+        final long fixedPnL;
+        if (maxLossFixed != FixedPoint.NOT_FIXED && (fixedPnL = FixedPoint.toFixed(pnl)) != FixedPoint.NOT_FIXED)
+            return fixedPnL < -maxLossFixed;
+
+        return Decimal64Utils.isNegative(pnl) && Decimal64Utils.isGreater(Decimal64Utils.abs(pnl), maxLoss);
+    }
+
+    private static int toFlag(String limitName) {
+        if (MaxQuantity.equals(limitName))
+            return QUANTITY;
+        if (MaxPosition.equals(limitName))
+            return POSITION;
+        if (MaxLoss.equals(limitName))
+            return LOSS;
+        throw new IllegalArgumentException("Unsupported risk limit: " + limitName);
+    }
+
+    /**
+     * Placeholder rule returned for limits evaluated by fused rule of the same projection row.
+     * Does nothing on order flow, reports current values of the fused rule.
+     */
+    public static final class Alias extends SampleRiskRule {
+
+        private final FusedSampleRiskRule target;
+
+        public Alias(String limitName, FusedSampleRiskRule target) {
+            super(limitName);
+            this.target = target;
+        }
+
+        public FusedSampleRiskRule getTarget() {
+            return target;
+        }
+
+        @Override
+        public void setLimits(RiskLimits riskLimits) {
+            target.setLimits(riskLimits);
+        }
+
+        @Override
+        public Object getCurrentValue(String limitName) {
+            return target.getCurrentValue(limitName);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.smd.*;
+import deltix.ember.service.InstrumentUpdateHandler;
+
+/**
+ * Funnels instrument updates of all types into single {@link #onInstrumentUpdate(InstrumentUpdate)} callback.
+ *
+ * Risk rules that depend on market prices register this listener via RiskManagerContext.addInstrumentUpdateListener()
+ * and use instrument update as a trigger to re-read prices from PricingService.
+ */
+public abstract class InstrumentUpdateAdapter implements InstrumentUpdateHandler {
+
+    /** Called from OMS thread for every instrument update */
+    protected abstract void onInstrumentUpdate(InstrumentUpdate update);
+
+    @Override
+    public void onBondUpdate(BondUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onCurrencyUpdate(CurrencyUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onCustomInstrumentUpdate(CustomInstrumentUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onEquityUpdate(EquityUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onEtfUpdate(EtfUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onFutureUpdate(FutureUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onIndexUpdate(IndexUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onOptionUpdate(OptionUpdate update) {
+        onInstrumentUpdate(update);
+    }
+
+    @Override
+    public void onSyntheticUpdate(SyntheticUpdate update) {
+        onInstrumentUpdate(update);
+    }
+}
@@ -0,0 +1,106 @@
+package deltix.ember.service.oms.risk.sample;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Garbage-free log-linear histogram of latencies (in nanoseconds), similar to HdrHistogram.
+ *
+ * Each power of two range is split into {@link #SUB_BUCKET_COUNT} linear buckets, so reported percentiles have
+ * relative error below 1/SUB_BUCKET_COUNT (~3%). Values below SUB_BUCKET_COUNT are exact,
+ * values above 2^MAX_MAGNITUDE (~18 minutes) are clamped.
+ *
+ * Histogram is lock-free for single writer: recording thread publishes counters via lazySet(),
+ * other threads (e.g. monitoring or reporting) may read percentiles at any time.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2);
+
+    private static final int TOTAL_COUNT = BUCKET_COUNT;
+    private static final int MAX_VALUE_RECORDED = BUCKET_COUNT + 1;
+
+    // bucket counters followed by total count and max value (ordered writes, no fences on writer side)
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT + 2);
+
+    /** Records single value, must be called from single (writer) thread */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        else if (value > MAX_VALUE)
+            value = MAX_VALUE;
+
+        int index = bucketIndex(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        if (value > counts.get(MAX_VALUE_RECORDED))
+            counts.lazySet(MAX_VALUE_RECORDED, value);
+        counts.lazySet(TOTAL_COUNT, counts.get(TOTAL_COUNT) + 1);
+    }
+
+    public long getTotalCount() {
+        return counts.get(TOTAL_COUNT);
+    }
+
+    public long getMaxValue() {
+        return counts.get(MAX_VALUE_RECORDED);
+    }
+
+    /**
+     * @param percentile percentile in range [0..100]
+     * @return highest value equivalent (within histogram precision) to given percentile or 0 if histogram is empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getTotalCount();
+        if (total == 0)
+            return 0;
+
+        long maxValue = getMaxValue();
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long count = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            count += counts.get(index);
+            if (count >= rank)
+                return Math.min(highestEquivalentValue(index), maxValue);
+        }
+        return maxValue;
+    }
+
+    /** Adds counters of another histogram to this one, must be called from writer thread */
+    public void add(LatencyHistogram other) {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            long count = other.counts.get(index);
+            if (count != 0)
+                counts.lazySet(index, counts.get(index) + count);
+        }
+        if (other.getMaxValue() > getMaxValue())
+            counts.lazySet(MAX_VALUE_RECORDED, other.getMaxValue());
+        counts.lazySet(TOTAL_COUNT, getTotalCount() + other.getTotalCount());
+    }
+
+    /** Must be called from writer thread */
+    public void reset() {
+        for (int index = 0; index < counts.length(); index++)
+            counts.lazySet(index, 0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift); // in [SUB_BUCKET_COUNT, 2*SUB_BUCKET_COUNT)
+        return (shift + 1) * SUB_BUCKET_COUNT + (subBucket - SUB_BUCKET_COUNT);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,161 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.data.OrderEntry;
+import deltix.ember.service.oms.risk.api.RiskManagerContext;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.price.api.PriceInfo;
+
+/**
+ * Open notional (quantity * price) of active orders of a projection, maintained incrementally.
+ *
+ * Each tracked order carries its open notional and valuation price as {@link ActiveOrderIndex} attachments,
+ * so fills, replaces and final states adjust the total without iterating orders.
+ * Orders are valued at limit price, market orders at the best available market price. PriceInfo handle is live:
+ * it is resolved from PricingService once per symbol (once per book when projection symbol is known).
+ *
+ * Contract multipliers are not taken into account. This class is not thread-safe.
+ */
+final class OpenNotionalBook {
+
+    private static final int OPEN_NOTIONAL = 0; // attachment slots
+    private static final int PRICE = 1;
+
+    private final ActiveOrderIndex orders;
+    private @Decimal long openNotional = Decimal64Utils.ZERO;
+
+    private RiskManagerContext context;
+    private String symbol;
+    private final StringBuilder pricesSymbol = new StringBuilder(16);
+    private PriceInfo prices;
+
+    OpenNotionalBook(int initialCapacity) {
+        this.orders = new ActiveOrderIndex(initialCapacity, 2);
+    }
+
+    void setContext(RiskManagerContext context) {
+        this.context = context;
+    }
+
+    /** @param symbol instrument of the projection or null if projection is not keyed by symbol */
+    void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /** @return total open notional of tracked orders */
+    @Decimal long getOpenNotional() {
+        return openNotional;
+    }
+
+    /** @return open notional of given order, zero if order is not tracked */
+    @Decimal long getOrderNotional(RiskOrder order) {
+        int index = indexOf(order);
+        return (index >= 0) ? orders.getAttachment(index, OPEN_NOTIONAL) : Decimal64Utils.ZERO;
+    }
+
+    /** @return open notional of the order after given replace */
+    @Decimal long getReplaceNotional(RiskOrder order, OrderReplaceRequest request, @Decimal long price) {
+        return Decimal64Utils.multiply(Decimal64Utils.subtract(request.getQuantity(), order.getCumulativeQuantity()), price);
+    }
+
+    /** @return limit price of the request, or best available market price. NaN if there is no price */
+    @Decimal long getPrice(OrderEntryRequest request) {
+        @Decimal long price = request.getLimitPrice();
+        if ( ! Decimal64Utils.isNaN(price))
+            return price;
+
+        PriceInfo prices = getPrices(request.getSymbol());
+        return (prices != null) ? prices.getBestAvailableMarketPrice(request.getSide() == Side.BUY) : Decimal64Utils.NaN;
+    }
+
+    /** @return price of the replace request. Market order keeps its valuation price. NaN if there is no price */
+    @Decimal long getPrice(RiskOrder order, OrderReplaceRequest request) {
+        @Decimal long price = request.getLimitPrice();
+        if (Decimal64Utils.isNaN(price)) {
+            int index = indexOf(order);
+            price = (index >= 0) ? orders.getAttachment(index, PRICE) : getPrice(request);
+        }
+        return price;
+    }
+
+    /** Starts tracking of new order */
+    void add(RiskOrder order, @Decimal long price, @Decimal long notional) {
+        int index = orders.addOrGet(order);
+        orders.setAttachment(index, PRICE, price);
+        setOrderNotional(index, notional);
+    }
+
+    /** Starts tracking of order that is already active (warm start). Order is valued at its working limit price */
+    void addActive(RiskOrder order) {
+        OrderEntry entry = order.getWorkingOrder();
+        @Decimal long price = entry.getLimitPrice();
+        if (Decimal64Utils.isNaN(price)) {
+            PriceInfo prices = getPrices(entry.getSymbol());
+            price = (prices != null) ? prices.getBestAvailableMarketPrice(entry.getSide() == Side.BUY) : Decimal64Utils.NaN;
+            if (Decimal64Utils.isNaN(price))
+                return; // cannot be valued, as if it was submitted without market data
+        }
+        add(order, price, Decimal64Utils.multiply(order.getRemainingQuantity(), price));
+    }
+
+    void clear() {
+        orders.clear();
+        openNotional = Decimal64Utils.ZERO;
+    }
+
+    /** Reserves open notional of pending replace until venue confirms or rejects it */
+    void reserve(RiskOrder order, @Decimal long notional) {
+        int index = indexOf(order);
+        if (index >= 0)
+            setOrderNotional(index, notional);
+    }
+
+    /** Applies order event to the order open notional. Orders in final state are no longer tracked */
+    void onOrderEvent(RiskOrder order, OrderEvent event) {
+        if (orders.isEmpty())
+            return;
+
+        final int index = indexOf(order);
+        if (index < 0)
+            return;
+
+        if (order.isFinal()) {
+            openNotional = Decimal64Utils.subtract(openNotional, orders.getAttachment(index, OPEN_NOTIONAL));
+            orders.remove(order);
+        } else if (event instanceof OrderTradeReportEvent) {
+            @Decimal long tradeNotional = Decimal64Utils.multiply(((OrderTradeReportEvent) event).getTradeQuantity(), orders.getAttachment(index, PRICE));
+            setOrderNotional(index, Decimal64Utils.max(Decimal64Utils.subtract(orders.getAttachment(index, OPEN_NOTIONAL), tradeNotional), Decimal64Utils.ZERO));
+        } else if (event instanceof OrderReplaceEvent || event instanceof OrderReplaceRejectEvent) {
+            @Decimal long limitPrice = order.getWorkingOrder().getLimitPrice();
+            if ( ! Decimal64Utils.isNaN(limitPrice))
+                orders.setAttachment(index, PRICE, limitPrice);
+            setOrderNotional(index, Decimal64Utils.multiply(order.getRemainingQuantity(), orders.getAttachment(index, PRICE)));
+        }
+    }
+
+    private int indexOf(RiskOrder order) {
+        return orders.indexOf(order.getSourceId(), order.getOrderId());
+    }
+
+    private void setOrderNotional(int index, @Decimal long notional) {
+        openNotional = Decimal64Utils.add(openNotional, Decimal64Utils.subtract(notional, orders.getAttachment(index, OPEN_NOTIONAL)));
+        orders.setAttachment(index, OPEN_NOTIONAL, notional);
+    }
+
+    /** @return price handle of given instrument, resolved from PricingService only when symbol changes */
+    private PriceInfo getPrices(CharSequence requestSymbol) {
+        if (prices != null && (symbol != null || CharSequenceUtil.equals(pricesSymbol, requestSymbol)))
+            return prices;
+
+        if (context == null)
+            return null;
+
+        pricesSymbol.setLength(0);
+        pricesSymbol.append(requestSymbol);
+        prices = context.getPricingService().getInstrumentPrices(requestSymbol);
+        return prices;
+    }
+}
@@ -0,0 +1,14 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.service.oms.risk.api.PositionView;
+
+/**
+ * Risk rule that reads PositionView of its projection (MaxPosition, MaxLoss).
+ * Rule looks up position of parent projection group when it goes live, unless position is set explicitly
+ * by code that runs rules without Ember (e.g. offline replay).
+ */
+public interface PositionRule {
+
+    /** Overrides PositionView of parent projection group, must be called before onLive() */
+    void setPositionView(PositionView position);
+}
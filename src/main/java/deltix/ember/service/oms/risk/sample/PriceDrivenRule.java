@@ -0,0 +1,13 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.smd.InstrumentUpdate;
+
+/**
+ * Risk rule that needs to re-evaluate its state when prices of the instrument(s) of its projection change.
+ * Factory registers such rules in {@link SymbolRuleIndex} so that each update reaches only dependent rules.
+ */
+public interface PriceDrivenRule {
+
+    /** Called from OMS thread when instrument (or root symbol) this rule depends on is updated */
+    void onPriceUpdate(InstrumentUpdate update);
+}
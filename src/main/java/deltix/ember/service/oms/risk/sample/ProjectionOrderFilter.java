@@ -0,0 +1,171 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.service.data.OrderEntry;
+import deltix.ember.service.oms.position.Projection;
+import deltix.ember.service.oms.position.ProjectionPath;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+
+/**
+ * Tells whether an order belongs to projection row. Used to rebuild rule state from
+ * RiskManagerContext.iterateActiveOrders(), which visits active orders of all projections.
+ *
+ * Supports Source, Destination, Symbol, Trader and Account keys (wildcard matches any value).
+ * Rules defined on projections with other keys cannot use the filter (see {@link #isSupported()}).
+ *
+ * Filter also builds row keys, so that orders can be dispatched to rows in a single pass (see {@link WarmStartIndex}):
+ * order belongs to the row if {@link #getRowKey(RiskOrder)} equals {@link #getRowKey()}. Rows of projections with the
+ * same keys and wildcards share the same {@link #getPattern() pattern}.
+ */
+final class ProjectionOrderFilter {
+
+    /** Filter of unknown projection */
+    static final ProjectionOrderFilter UNSUPPORTED = new ProjectionOrderFilter();
+
+    private final ProjectionKey[] keys;
+    private final String[] values; // null for wildcard
+    private final long[] alphanumericValues;
+    private final boolean supported;
+    private final String pattern;
+    private final String rowKey;
+
+    private ProjectionOrderFilter() {
+        keys = new ProjectionKey[0];
+        values = new String[0];
+        alphanumericValues = new long[0];
+        supported = false;
+        pattern = rowKey = "";
+    }
+
+    ProjectionOrderFilter(ProjectionPath path) {
+        Projection projection = path.getProjection();
+        keys = projection.getKeys();
+        values = new String[keys.length];
+        alphanumericValues = new long[keys.length];
+
+        boolean supported = true;
+        for (int i = 0; i < keys.length; i++) {
+            String value = CharSequenceUtil.toString(path.getValue(i));
+            if (ProjectionPathUtil.isWildcard(value))
+                continue;
+
+            values[i] = value;
+            switch (keys[i]) {
+                case Source:
+                case Destination:
+                    alphanumericValues[i] = AlphanumericCodec.encode(value);
+                    break;
+                case Symbol:
+                case Trader:
+                case Account:
+                    break;
+                default:
+                    supported = false;
+            }
+        }
+        this.supported = supported;
+
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0)
+                pattern.append('/');
+            if (values[i] == null)
+                pattern.append(ProjectionPathUtil.WILDCARD);
+            pattern.append(keys[i].name());
+        }
+        this.pattern = pattern.toString();
+
+        StringBuilder rowKey = new StringBuilder(this.pattern);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                appendValue(rowKey, (keys[i] == ProjectionKey.Source || keys[i] == ProjectionKey.Destination) ? Long.toString(alphanumericValues[i]) : values[i]);
+        }
+        this.rowKey = rowKey.toString();
+    }
+
+    /** @return false if projection has keys this filter cannot evaluate */
+    boolean isSupported() {
+        return supported;
+    }
+
+    /** @return projection keys and wildcards of the row (e.g. "*Trader/Symbol") */
+    String getPattern() {
+        return pattern;
+    }
+
+    /** @return key of the projection row */
+    String getRowKey() {
+        return rowKey;
+    }
+
+    /** @return key of the row of this filter's pattern given order belongs to */
+    String getRowKey(RiskOrder order) {
+        final OrderEntry entry = order.getWorkingOrder();
+        final StringBuilder result = new StringBuilder(pattern);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] == null)
+                continue;
+
+            switch (keys[i]) {
+                case Source:
+                    appendValue(result, Long.toString(order.getSourceId()));
+                    break;
+                case Destination:
+                    appendValue(result, Long.toString(order.getDestinationId()));
+                    break;
+                case Symbol:
+                    appendValue(result, entry.getSymbol());
+                    break;
+                case Trader:
+                    appendValue(result, entry.getTraderId());
+                    break;
+                case Account:
+                    appendValue(result, entry.getAccount());
+                    break;
+                default:
+                    appendValue(result, null);
+            }
+        }
+        return result.toString();
+    }
+
+    private static void appendValue(StringBuilder rowKey, CharSequence value) {
+        rowKey.append('\u0001');
+        if (value != null)
+            rowKey.append(value);
+    }
+
+    boolean matches(RiskOrder order) {
+        final OrderEntry entry = order.getWorkingOrder();
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] == null)
+                continue;
+
+            final boolean match;
+            switch (keys[i]) {
+                case Source:
+                    match = order.getSourceId() == alphanumericValues[i];
+                    break;
+                case Destination:
+                    match = order.getDestinationId() == alphanumericValues[i];
+                    break;
+                case Symbol:
+                    match = CharSequenceUtil.equals(values[i], entry.getSymbol());
+                    break;
+                case Trader:
+                    match = CharSequenceUtil.equals(values[i], entry.getTraderId());
+                    break;
+                case Account:
+                    match = CharSequenceUtil.equals(values[i], entry.getAccount());
+                    break;
+                default:
+                    match = false;
+            }
+            if ( ! match)
+                return false;
+        }
+        return true;
+    }
+}
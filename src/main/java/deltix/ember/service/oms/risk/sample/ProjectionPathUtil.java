@@ -0,0 +1,75 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.service.oms.position.Projection;
+import deltix.ember.service.oms.position.ProjectionPath;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+final class ProjectionPathUtil {
+
+    static final String WILDCARD = "*";
+
+    private ProjectionPathUtil() {
+    }
+
+    /** @return value of given projection key in the path, or null if projection does not include this key */
+    @Nullable
+    static String getValue(ProjectionPath path, ProjectionKey key) {
+        Projection projection = path.getProjection();
+        ProjectionKey[] keys = projection.getKeys();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key)
+                return CharSequenceUtil.toString(path.getValue(i));
+        }
+        return null;
+    }
+
+    /** @return true if projection has no keys other than Source and Destination (row covers all orders of a source on a destination) */
+    static boolean isSourceOrDestinationOnly(ProjectionPath path) {
+        for (ProjectionKey key : path.getProjection().getKeys()) {
+            if (key != ProjectionKey.Source && key != ProjectionKey.Destination)
+                return false;
+        }
+        return true;
+    }
+
+    /** @return hash code of projection keys and values of the path (garbage free, consistent with {@link #equals}) */
+    static int hash(ProjectionPath path) {
+        ProjectionKey[] keys = path.getProjection().getKeys();
+        int hash = keys.length;
+        for (int i = 0; i < keys.length; i++) {
+            hash = 31 * hash + keys[i].ordinal();
+            CharSequence value = path.getValue(i);
+            if (value != null) {
+                for (int j = 0; j < value.length(); j++)
+                    hash = 31 * hash + value.charAt(j);
+            }
+        }
+        return hash;
+    }
+
+    /** @return true if both paths have the same projection keys and values */
+    static boolean equals(ProjectionPath a, ProjectionPath b) {
+        if (a == b)
+            return true;
+
+        ProjectionKey[] keys = a.getProjection().getKeys();
+        if ( ! Arrays.equals(keys, b.getProjection().getKeys()))
+            return false;
+
+        for (int i = 0; i < keys.length; i++) {
+            CharSequence value = a.getValue(i);
+            CharSequence other = b.getValue(i);
+            if ((value == null) ? other != null : other == null || ! CharSequenceUtil.equals(value, other))
+                return false;
+        }
+        return true;
+    }
+
+    static boolean isWildcard(@Nullable CharSequence value) {
+        return value == null || CharSequenceUtil.equals(value, WILDCARD);
+    }
+}
@@ -0,0 +1,135 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.service.oms.position.ProjectionPath;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays table of MaxQuantity limits indexed by projection row.
+ *
+ * Used by compact mode of the factory: limit values of all projection rows live in primitive arrays,
+ * and each row is represented by a lightweight {@link CompactQuantityRiskRule} handle that only knows its row number.
+ * Per row table keeps limit in Decimal64 and {@link FixedPoint} forms and a reference to projection path (~30 bytes
+ * including index), and allocates nothing per row.
+ *
+ * Rows are keyed by projection path. Risk manager does not notify rules when they are removed, but it creates new rules
+ * when it re-creates a row (e.g. on risk table reload): factory then calls {@link #acquireRow(ProjectionPath)}, which
+ * explicitly releases the row from previous handle and gives it to the new one, so re-created rows reuse their table rows.
+ * Rows of paths deleted from risk table stay allocated until the same path is created again.
+ *
+ * Table also owns the breach reason shared by all handles (reason is consumed by risk observer
+ * before the next callback), so rule instances do not keep per-row formatting buffers either.
+ *
+ * This class is not thread-safe (risk rules are created and called from single OMS thread).
+ */
+public final class QuantityLimitTable {
+
+    @Decimal
+    private long[] maxQuantity;
+    private long[] maxQuantityFixed;
+    private ProjectionPath[] paths;
+    private int size;
+
+    private int[] index; // open addressing hash table of paths: row + 1 or 0 for empty slot
+    private int mask;
+
+    private final BreachReason breachReason = new BreachReason();
+
+    public QuantityLimitTable() {
+        this(1024);
+    }
+
+    public QuantityLimitTable(int initialCapacity) {
+        if (initialCapacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+
+        maxQuantity = new long[initialCapacity];
+        maxQuantityFixed = new long[initialCapacity];
+        paths = new ProjectionPath[initialCapacity];
+        index = new int[Integer.highestOneBit(initialCapacity) << 2]; // load factor is at most 1/2
+        mask = index.length - 1;
+    }
+
+    /** @return number of allocated rows */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Allocates row of given projection path with unlimited quantity. If path already has a row, the row is released from
+     * its previous handle and reused (limit is reset to unlimited until new handle receives its limits).
+     */
+    public int acquireRow(ProjectionPath path) {
+        int slot = ProjectionPathUtil.hash(path) & mask;
+        int entry;
+        while ((entry = index[slot]) != 0) {
+            int row = entry - 1;
+            if (ProjectionPathUtil.equals(paths[row], path)) {
+                paths[row] = path; // previous path object belongs to dropped row
+                setMaxQuantity(row, Decimal64Utils.NULL);
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == maxQuantity.length) {
+            grow();
+            return acquireRow(path);
+        }
+
+        final int row = size++;
+        index[slot] = row + 1;
+        paths[row] = path;
+        setMaxQuantity(row, Decimal64Utils.NULL);
+        return row;
+    }
+
+    /** @return maximum order quantity of given row or Decimal64 NULL if unlimited */
+    @Decimal
+    public long getMaxQuantity(int row) {
+        assert row < size;
+        return maxQuantity[row];
+    }
+
+    /** @param maxQuantity maximum order quantity or Decimal64 NULL if unlimited */
+    public void setMaxQuantity(int row, @Decimal long maxQuantity) {
+        assert row < size;
+        this.maxQuantity[row] = maxQuantity;
+        this.maxQuantityFixed[row] = FixedPoint.toFixed(maxQuantity);
+    }
+
+    /** @return true if given quantity exceeds maximum order quantity of given row (false if row is unlimited) */
+    boolean exceedsMaxQuantity(int row, @Decimal long quantity) {
+        assert row < size;
+        final long limitFixed = maxQuantityFixed[row];
+        final long fixedQuantity;
+        if (limitFixed != FixedPoint.NOT_FIXED && (fixedQuantity = FixedPoint.toFixed(quantity)) != FixedPoint.NOT_FIXED)
+            return fixedQuantity > limitFixed;
+
+        @Decimal long limit = maxQuantity[row];
+        return ! Decimal64Utils.isNull(limit) && Decimal64Utils.isGreater(quantity, limit);
+    }
+
+    /** @return breach reason shared by all rows */
+    BreachReason getBreachReason() {
+        return breachReason;
+    }
+
+    private void grow() {
+        final int capacity = size << 1;
+        maxQuantity = Arrays.copyOf(maxQuantity, capacity);
+        maxQuantityFixed = Arrays.copyOf(maxQuantityFixed, capacity);
+        paths = Arrays.copyOf(paths, capacity);
+
+        index = new int[index.length << 1];
+        mask = index.length - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = ProjectionPathUtil.hash(paths[row]) & mask;
+            while (index[slot] != 0)
+                slot = (slot + 1) & mask;
+            index[slot] = row + 1;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.anvil.util.timer.TimerCallback;
+import deltix.ember.service.oms.risk.api.RiskManagerContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Periodic checkpoint of {@link Checkpointable} rules in memory-mapped file.
+ *
+ * File contains two slots, checkpoints are written into them in turns. Each slot starts with header
+ * (magic, sequence, checkpoint time, length, CRC32) followed by entries (key, state length, message count,
+ * last message hash, state), where key is projection path and limit name of the rule. Restore picks valid slot
+ * with the highest sequence, so crash in the middle of checkpoint leaves the previous one intact.
+ *
+ * Message count is journal position of the rule (see {@link SampleRiskRule}): restored rule skips that many
+ * messages replayed during warm-up. Checkpoint time is informational only.
+ *
+ * Rule states are serialized into staging buffer by context Timer on OMS thread. Every checkpoint serializes all
+ * registered rules (a few dozen bytes each, no allocation), so OMS thread pauses for roughly 50-100 ns per rule
+ * once per checkpointInterval (~100 ms for 1M rules): choose the interval accordingly.
+ * Copying into mapped file and force() run on background thread. Checkpoint is skipped if previous one is still
+ * being written or staging buffer is too small.
+ *
+ * Risk manager does not notify rules when they are removed, so rules are referenced weakly: rules dropped by server
+ * are pruned by the next checkpoint. Rule registered again under the same key (re-created projection row) replaces
+ * the previous one, so each key is written once.
+ */
+final class RuleCheckpoint {
+    private static final Log LOGGER = LogFactory.getLog(RuleCheckpoint.class);
+
+    private static final int MAGIC = 0x52434B32;
+    static final int HEADER_SIZE = 4 + 8 + 8 + 4 + 4;
+
+    private final Path file;
+    private final int slotSize;
+    private final long interval;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> entriesByKey = new HashMap<>();
+
+    private final ByteBuffer staging;
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final Executor writer;
+    private final MappedByteBuffer mapped;
+    private final CRC32 crc = new CRC32(); // writer thread
+
+    private long sequence;
+    private final Map<String, byte[]> snapshot = new HashMap<>();
+    private long snapshotTime = Long.MIN_VALUE;
+    private boolean scheduled;
+
+    /**
+     * @param file checkpoint file (created if absent)
+     * @param size maximum size of checkpoint in bytes
+     * @param interval checkpoint interval in milliseconds
+     */
+    RuleCheckpoint(Path file, int size, long interval) {
+        this(file, size, interval, Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "risk-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /** @param writer executor that copies checkpoints into mapped file */
+    RuleCheckpoint(Path file, int size, long interval, Executor writer) {
+        this.file = file;
+        this.writer = writer;
+        this.slotSize = HEADER_SIZE + size;
+        this.interval = interval;
+        this.staging = ByteBuffer.allocateDirect(size);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map risk checkpoint file " + file, e);
+        }
+        load();
+    }
+
+    /**
+     * Registers rule for periodic checkpoints and restores its state from the latest checkpoint (if any).
+     * @param key unique key of the rule (projection path and limit name)
+     * @param rule rule that implements {@link Checkpointable}
+     */
+    void register(String key, SampleRiskRule rule, RiskManagerContext context) {
+        final Checkpointable checkpointable = (Checkpointable) rule;
+        byte[] state = snapshot.remove(key);
+        if (state != null) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(state);
+                long messageCount = buffer.getLong();
+                long lastMessageHash = buffer.getLong();
+                checkpointable.readCheckpoint(buffer);
+                rule.setCheckpointPosition(messageCount, lastMessageHash);
+            } catch (RuntimeException e) {
+                LOGGER.warn().append("Cannot restore ").append(key).append(" from checkpoint: ").append(e).commit();
+            }
+        }
+
+        rule.enablePositionTracking();
+        Entry entry = entriesByKey.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entriesByKey.put(key, entry);
+            entries.add(entry);
+        }
+        entry.rule = new WeakReference<>(rule);
+
+        if ( ! scheduled) {
+            TimerCallback<RuleCheckpoint> callback = (now, checkpoint) -> checkpoint.take(now);
+            context.getTimer().schedule(context.getClock().time() + interval, callback, this);
+            scheduled = true;
+        }
+    }
+
+    /**
+     * Serializes rules into staging buffer (OMS thread) and passes it to writer thread
+     * @return time of the next checkpoint
+     */
+    long take(long now) {
+        if ( ! writing.compareAndSet(false, true)) {
+            LOGGER.warn("Previous risk checkpoint is still being written, skipping");
+            return now + interval;
+        }
+
+        pruneDroppedRules();
+
+        staging.clear();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                SampleRiskRule rule = entry.rule.get();
+                if (rule == null)
+                    continue; // collected after pruning
+
+                staging.putShort((short) entry.key.length).put(entry.key);
+                int lengthPosition = staging.position();
+                staging.putInt(0);
+                staging.putLong(rule.getMessageCount()).putLong(rule.getLastMessageHash());
+                ((Checkpointable) rule).writeCheckpoint(staging);
+                staging.putInt(lengthPosition, staging.position() - lengthPosition - 4);
+            }
+        } catch (BufferOverflowException e) {
+            LOGGER.warn().append("Risk checkpoint exceeds ").append(staging.capacity()).append(" bytes, increase checkpointSize").commit();
+            writing.set(false);
+            return now + interval;
+        }
+        staging.flip();
+
+        final long checkpointSequence = ++sequence;
+        writer.execute(() -> persist(checkpointSequence, now));
+        return now + interval;
+    }
+
+    /** @return number of rules written by checkpoint (including dropped rules that are not pruned yet) */
+    int size() {
+        return entries.size();
+    }
+
+    /** Removes entries of rules garbage collected since the previous checkpoint */
+    private void pruneDroppedRules() {
+        int live = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.rule.get() != null)
+                entries.set(live++, entry);
+            else
+                entriesByKey.remove(entry.keyString);
+        }
+        if (live < entries.size())
+            entries.subList(live, entries.size()).clear();
+    }
+
+    /** Writes staged checkpoint into inactive slot of mapped file (writer thread) */
+    private void persist(long sequence, long time) {
+        try {
+            final int slot = (int) (sequence & 1) * slotSize;
+            final int length = staging.remaining();
+
+            crc.reset();
+            crc.update(staging.duplicate());
+
+            ByteBuffer target = mapped.duplicate();
+            target.position(slot + HEADER_SIZE);
+            target.put(staging);
+
+            mapped.putInt(slot, MAGIC);
+            mapped.putLong(slot + 4, sequence);
+            mapped.putLong(slot + 12, time);
+            mapped.putInt(slot + 20, length);
+            mapped.putInt(slot + 24, (int) crc.getValue());
+            mapped.force();
+        } catch (RuntimeException e) {
+            LOGGER.warn().append("Cannot write risk checkpoint ").append(file).append(": ").append(e).commit();
+        } finally {
+            writing.set(false);
+        }
+    }
+
+    /** Reads entries of the latest valid checkpoint */
+    private void load() {
+        int latest = -1;
+        for (int slot = 0; slot < 2 * slotSize; slot += slotSize) {
+            if (isValid(slot) && (latest < 0 || mapped.getLong(slot + 4) > mapped.getLong(latest + 4)))
+                latest = slot;
+        }
+        if (latest < 0)
+            return;
+
+        sequence = mapped.getLong(latest + 4);
+        snapshotTime = mapped.getLong(latest + 12);
+
+        ByteBuffer entries = mapped.duplicate();
+        entries.position(latest + HEADER_SIZE).limit(latest + HEADER_SIZE + mapped.getInt(latest + 20));
+        while (entries.hasRemaining()) {
+            byte[] key = new byte[entries.getShort()];
+            entries.get(key);
+            byte[] state = new byte[entries.getInt()];
+            entries.get(state);
+            snapshot.put(new String(key, StandardCharsets.UTF_8), state);
+        }
+        LOGGER.info().append("Loaded risk checkpoint of ").append(snapshot.size()).append(" rules taken at ").appendTimestamp(snapshotTime).commit();
+    }
+
+    private boolean isValid(int slot) {
+        if (mapped.getInt(slot) != MAGIC)
+            return false;
+
+        int length = mapped.getInt(slot + 20);
+        if (length < 0 || length > slotSize - HEADER_SIZE)
+            return false;
+
+        ByteBuffer entries = mapped.duplicate();
+        entries.position(slot + HEADER_SIZE).limit(slot + HEADER_SIZE + length);
+        CRC32 crc = new CRC32();
+        crc.update(entries);
+        return (int) crc.getValue() == mapped.getInt(slot + 24);
+    }
+
+    private static final class Entry {
+        final String keyString;
+        final byte[] key;
+        WeakReference<SampleRiskRule> rule;
+
+        Entry(String key) {
+            this.keyString = key;
+            this.key = key.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogEntry;
+
+/**
+ * Latency stats of risk rule callbacks for one limit (optionally, one limit of one projection row).
+ * Recorded and reported from OMS thread.
+ *
+ * Stats of a limit keep latency histograms of each callback (allocated on first record, ~9KB each).
+ * Stats of a projection row keep only count/total/max of each callback (a few dozen bytes per row)
+ * and forward every value to stats of their limit, which report percentiles.
+ */
+final class RuleLatencyStats {
+
+    private static final int NEW_ORDER_REQUEST = 0;
+    private static final int REPLACE_ORDER_REQUEST = 1;
+    private static final int ORDER_EVENT = 2;
+    private static final String[] CALLBACKS = {" onNewOrderRequest", " onReplaceOrderRequest", " onOrderEvent"};
+
+    private final String name;
+    private final RuleLatencyStats parent; // stats of the limit (null for stats of the limit itself)
+
+    private final LatencyHistogram[] histograms; // limit stats only, created on first record
+    private final long[] counts = new long[CALLBACKS.length];
+    private final long[] totals; // row stats only
+    private final long[] maxima; // row stats only
+
+    /** Stats of a limit (percentiles) */
+    RuleLatencyStats(String name) {
+        this(name, null);
+    }
+
+    /** Stats of a projection row (count/avg/max) that also record into stats of the limit */
+    RuleLatencyStats(String name, RuleLatencyStats parent) {
+        this.name = name;
+        this.parent = parent;
+        this.histograms = (parent == null) ? new LatencyHistogram[CALLBACKS.length] : null;
+        this.totals = (parent != null) ? new long[CALLBACKS.length] : null;
+        this.maxima = (parent != null) ? new long[CALLBACKS.length] : null;
+    }
+
+    void recordNewOrderRequest(long nanos) {
+        record(NEW_ORDER_REQUEST, nanos);
+    }
+
+    void recordReplaceOrderRequest(long nanos) {
+        record(REPLACE_ORDER_REQUEST, nanos);
+    }
+
+    void recordOrderEvent(long nanos) {
+        record(ORDER_EVENT, nanos);
+    }
+
+    private void record(int callback, long nanos) {
+        counts[callback]++;
+        if (parent == null) {
+            LatencyHistogram histogram = histograms[callback];
+            if (histogram == null)
+                histogram = histograms[callback] = new LatencyHistogram();
+            histogram.record(nanos);
+        } else {
+            totals[callback] += nanos;
+            if (nanos > maxima[callback])
+                maxima[callback] = nanos;
+            parent.record(callback, nanos);
+        }
+    }
+
+    /** Logs stats of each callback (garbage free) and resets them */
+    void report(Log log) {
+        if (counts[NEW_ORDER_REQUEST] + counts[REPLACE_ORDER_REQUEST] + counts[ORDER_EVENT] == 0)
+            return;
+
+        LogEntry entry = log.info().append("Risk rule latency (ns) of ").append(name);
+        for (int callback = 0; callback < CALLBACKS.length; callback++) {
+            if (counts[callback] != 0)
+                append(entry, callback);
+        }
+        entry.commit();
+
+        for (int callback = 0; callback < CALLBACKS.length; callback++) {
+            counts[callback] = 0;
+            if (parent == null) {
+                if (histograms[callback] != null)
+                    histograms[callback].reset();
+            } else {
+                totals[callback] = 0;
+                maxima[callback] = 0;
+            }
+        }
+    }
+
+    private void append(LogEntry entry, int callback) {
+        entry.append(CALLBACKS[callback]).append(" [count: ").append(counts[callback]);
+        if (parent == null) {
+            LatencyHistogram histogram = histograms[callback];
+            entry.append(" p50: ").append(histogram.getValueAtPercentile(50))
+                    .append(" p99: ").append(histogram.getValueAtPercentile(99))
+                    .append(" max: ").append(histogram.getMaxValue());
+        } else {
+            entry.append(" avg: ").append(totals[callback] / counts[callback])
+                    .append(" max: ").append(maxima[callback]);
+        }
+        entry.append(']');
+    }
+}
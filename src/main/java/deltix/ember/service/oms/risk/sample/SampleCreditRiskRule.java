@@ -0,0 +1,187 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * Sample credit (buying power) RiskRule implementation.
+ *
+ * Credit usage of the projection is notional of executed trades plus notional reserved by active orders.
+ * New order reserves its notional, replace adjusts the reservation (increase is reserved until venue confirms
+ * or rejects the replace), fills convert reserved notional into used credit at trade price, cancels and rejects
+ * release the reservation. Orders that would take usage above MaxCredit are rejected.
+ *
+ * Accounting is incremental (see {@link OpenNotionalBook}), so the check costs the same regardless of the number
+ * of open orders. Reservations are rebuilt from active orders of OMS when rule goes live, warm-up replay only
+ * restores used credit (checkpoint can save the replay, see {@link Checkpointable}). Credit is consumed by both sides (gross).
+ *
+ * Used credit is restored by {@link #resetUsedCredit()}: rules created by {@link SampleQuantityRiskRuleFactory} are
+ * reset daily at marketClosingTime. Without marketClosingTime custom code has to call {@link #resetUsedCredit()},
+ * otherwise used credit only grows.
+ */
+public class SampleCreditRiskRule extends SampleRiskRule implements Checkpointable, SessionResettable {
+
+    public static final String MaxCredit = "MaxCredit";
+
+    private final OpenNotionalBook reservations = new OpenNotionalBook(128);
+
+    private @Decimal long maxCredit = Decimal64Utils.NULL; // NULL if unlimited
+    private @Decimal long usedCredit = Decimal64Utils.ZERO;
+
+    public SampleCreditRiskRule() {
+        super("Credit Limits");
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxCredit((riskLimits == null) ? -1 : riskLimits.getDoubleLimit(MaxCredit, -1));
+    }
+
+    @Override
+    public Object getCurrentValue(String limitName) {
+        return getCreditUsage();
+    }
+
+    public double getMaxCredit() {
+        return Decimal64Utils.toDouble(maxCredit);
+    }
+
+    /** @param maxCredit negative if unlimited */
+    public void setMaxCredit(double maxCredit) {
+        this.maxCredit = (maxCredit >= 0) ? Decimal64Utils.fromDouble(maxCredit) : Decimal64Utils.NULL;
+    }
+
+    /** @param symbol instrument of this projection (price handle is resolved once). Null for projections not keyed by symbol */
+    public void setSymbol(String symbol) {
+        reservations.setSymbol(symbol);
+    }
+
+    /** @return notional of executed trades plus notional reserved by active orders */
+    public @Decimal long getCreditUsage() {
+        return Decimal64Utils.add(usedCredit, reservations.getOpenNotional());
+    }
+
+    /** Restores credit used by executed trades (reservations of active orders are kept) */
+    public void resetUsedCredit() {
+        usedCredit = Decimal64Utils.ZERO;
+    }
+
+    /** Restores used credit on session boundary */
+    @Override
+    public void resetSession() {
+        resetUsedCredit();
+    }
+
+    @Override
+    protected boolean isWarmStartRule() {
+        return true;
+    }
+
+    @Override
+    public void onLive(RiskManagerContext context) {
+        reservations.setContext(context);
+        if (isWarmStartSupported()) {
+            reservations.clear();
+            iterateActiveOrders(context, (order, book) -> book.addActive(order), reservations);
+        }
+    }
+
+    @Override
+    public void writeCheckpoint(ByteBuffer buffer) {
+        buffer.putLong(usedCredit);
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer buffer) {
+        usedCredit = buffer.getLong();
+    }
+
+    /**
+     * Process new order submission request before it goes to destination venue
+     * @param order order state
+     * @param request original order submission request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        final @Decimal long price = reservations.getPrice(request);
+        final @Decimal long notional = Decimal64Utils.multiply(request.getQuantity(), price);
+        if (observer != null && ! Decimal64Utils.isNull(maxCredit)) {
+            if (Decimal64Utils.isNaN(price)) {
+                observer.onBreach(getProjectionPath(), MaxCredit, 0, getBreachReason().set("Order notional cannot be estimated: no market price"));
+                return;
+            }
+
+            if (checkCredit(notional, observer))
+                return; // rejected orders do not reserve credit
+        }
+
+        if ( ! Decimal64Utils.isNaN(price) && (observer != null || ! isWarmStartSupported()))
+            reservations.add(order, price, notional);
+    }
+
+    /**
+     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * @param order current state of the order that will be modified
+     * @param request cancel/replace request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        if (observer == null && isWarmStartSupported())
+            return; // reservations are rebuilt on live
+
+        final @Decimal long price = reservations.getPrice(order, request);
+        if (Decimal64Utils.isNaN(price)) {
+            if (observer != null && ! Decimal64Utils.isNull(maxCredit))
+                observer.onBreach(getProjectionPath(), MaxCredit, 0, getBreachReason().set("Order notional cannot be estimated: no market price"));
+            return;
+        }
+
+        final @Decimal long notional = reservations.getReplaceNotional(order, request, price);
+        final @Decimal long increase = Decimal64Utils.subtract(notional, reservations.getOrderNotional(order));
+        if (Decimal64Utils.isPositive(increase)) {
+            if (observer != null && ! Decimal64Utils.isNull(maxCredit) && checkCredit(increase, observer))
+                return;
+
+            reservations.reserve(order, notional); // decrease is released when venue confirms the replace
+        }
+    }
+
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (event instanceof OrderTradeReportEvent && ! isCheckpointed(observer)) {
+            OrderTradeReportEvent trade = (OrderTradeReportEvent) event;
+            usedCredit = Decimal64Utils.add(usedCredit, Decimal64Utils.multiply(trade.getTradeQuantity(), trade.getTradePrice()));
+        }
+        if (observer != null || ! isWarmStartSupported())
+            reservations.onOrderEvent(order, event); // releases reservation of filled quantity, or entire reservation once order is final
+    }
+
+    /**
+     * @param increase increase of credit usage
+     * @return true if order was rejected
+     */
+    private boolean checkCredit(@Decimal long increase, RiskObserver observer) {
+        @Decimal long estimated = Decimal64Utils.add(getCreditUsage(), increase);
+        if (Decimal64Utils.isGreater(estimated, maxCredit)) {
+            observer.onBreach(getProjectionPath(), MaxCredit, 0, getBreachReason().set("Estimated credit usage ", estimated, " would exceed maximum ", maxCredit));
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Sample notional exposure RiskRule implementation.
+ *
+ * MaxNotional limits notional (quantity * price) of a single order, MaxOpenNotional limits total notional of
+ * active orders of the projection. Limit price is used when present, market orders are valued at the best available
+ * market price of PricingService. Orders that cannot be valued (no market data yet) are rejected.
+ *
+ * Open notional is maintained incrementally by {@link OpenNotionalBook}: fills, replaces and final states adjust
+ * the sum without iterating orders, price handles are resolved once per symbol. Replace that increases exposure
+ * reserves the new notional until venue confirms or rejects it. Active orders are rebuilt from OMS when rule goes live.
+ */
+public class SampleNotionalRiskRule extends SampleRiskRule {
+
+    public static final String MaxNotional = "MaxNotional";
+    public static final String MaxOpenNotional = "MaxOpenNotional";
+
+    private final String limitName;
+    private final boolean trackOpenNotional;
+    private final OpenNotionalBook book;
+
+    private @Decimal long maxNotional = Decimal64Utils.NULL; // NULL if unlimited
+
+    /** @param limitName {@link #MaxNotional} or {@link #MaxOpenNotional} */
+    public SampleNotionalRiskRule(String limitName) {
+        super("Notional Limits");
+        if ( ! MaxNotional.equals(limitName) && ! MaxOpenNotional.equals(limitName))
+            throw new IllegalArgumentException("Unknown risk limit: " + limitName);
+
+        this.limitName = limitName;
+        this.trackOpenNotional = MaxOpenNotional.equals(limitName);
+        this.book = new OpenNotionalBook(trackOpenNotional ? 128 : 1);
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxNotional((riskLimits == null) ? -1 : riskLimits.getDoubleLimit(limitName, -1));
+    }
+
+    @Override
+    public Object getCurrentValue(String limitName) {
+        return trackOpenNotional ? book.getOpenNotional() : null;
+    }
+
+    public double getMaxNotional() {
+        return Decimal64Utils.toDouble(maxNotional);
+    }
+
+    /** @param maxNotional negative if unlimited */
+    public void setMaxNotional(double maxNotional) {
+        this.maxNotional = (maxNotional >= 0) ? Decimal64Utils.fromDouble(maxNotional) : Decimal64Utils.NULL;
+    }
+
+    /** @param symbol instrument of this projection (price handle is resolved once). Null for projections not keyed by symbol */
+    public void setSymbol(String symbol) {
+        book.setSymbol(symbol);
+    }
+
+    @Override
+    protected boolean isWarmStartRule() {
+        return trackOpenNotional;
+    }
+
+    @Override
+    public void onLive(RiskManagerContext context) {
+        book.setContext(context);
+        if (trackOpenNotional && isWarmStartSupported()) {
+            book.clear();
+            iterateActiveOrders(context, (order, book) -> book.addActive(order), book);
+        }
+    }
+
+    /**
+     * Process new order submission request before it goes to destination venue
+     * @param order order state
+     * @param request original order submission request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        final @Decimal long price = book.getPrice(request);
+        final @Decimal long notional = Decimal64Utils.multiply(request.getQuantity(), price);
+        if (observer != null && ! Decimal64Utils.isNull(maxNotional)) {
+            if (Decimal64Utils.isNaN(price)) {
+                observer.onBreach(getProjectionPath(), limitName, 0, getBreachReason().set("Order notional cannot be estimated: no market price"));
+                return;
+            }
+
+            if (checkNotional(notional, notional, observer))
+                return; // rejected orders are not tracked
+        }
+
+        if (trackOpenNotional && ! Decimal64Utils.isNaN(price) && (observer != null || ! isWarmStartSupported()))
+            book.add(order, price, notional);
+    }
+
+    /**
+     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * @param order current state of the order that will be modified
+     * @param request cancel/replace request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        if (observer != null && ! Decimal64Utils.isNull(maxNotional)) {
+            final @Decimal long price = book.getPrice(order, request);
+            if (Decimal64Utils.isNaN(price)) {
+                observer.onBreach(getProjectionPath(), limitName, 0, getBreachReason().set("Order notional cannot be estimated: no market price"));
+                return;
+            }
+
+            @Decimal long notional = book.getReplaceNotional(order, request, price);
+            @Decimal long increase = Decimal64Utils.subtract(notional, book.getOrderNotional(order));
+            if (checkNotional(notional, increase, observer))
+                return;
+
+            if (trackOpenNotional && Decimal64Utils.isPositive(increase))
+                book.reserve(order, notional); // reserved until venue confirms or rejects the replace
+        }
+    }
+
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (trackOpenNotional && (observer != null || ! isWarmStartSupported()))
+            book.onOrderEvent(order, event);
+    }
+
+    /**
+     * @param notional open notional of the order
+     * @param increase increase of projection open notional
+     * @return true if order was rejected
+     */
+    private boolean checkNotional(@Decimal long notional, @Decimal long increase, RiskObserver observer) {
+        if ( ! trackOpenNotional) {
+            if (Decimal64Utils.isGreater(notional, maxNotional)) {
+                observer.onBreach(getProjectionPath(), MaxNotional, 0, getBreachReason().set("Order notional ", notional, " exceeds maximum ", maxNotional));
+                return true;
+            }
+        } else if (Decimal64Utils.isPositive(increase)) {
+            @Decimal long estimated = Decimal64Utils.add(book.getOpenNotional(), increase);
+            if (Decimal64Utils.isGreater(estimated, maxNotional)) {
+                observer.onBreach(getProjectionPath(), MaxOpenNotional, 0, getBreachReason().set("Estimated open notional ", estimated, " would exceed maximum ", maxNotional));
+                return true;
+            }
+        }
+        return false;
+    }
+}
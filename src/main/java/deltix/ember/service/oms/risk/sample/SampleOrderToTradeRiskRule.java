@@ -0,0 +1,157 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * Sample order-to-trade ratio (OTR) RiskRule implementation.
+ *
+ * Rule keeps rolling counts of order messages (new, replace and cancel requests) and fills of the projection
+ * in fixed-size time buckets (see {@link SlidingWindowCounter}) and rejects new orders once
+ * (orders + 1) / max(fills, 1) would exceed the value set in maxRatio. Ratio is not enforced until projection
+ * sends minOrders orders in the window, so that the first orders of the session are not rejected.
+ *
+ * Factory resets counters of all OTR rules on session boundaries (market closing time) via context Timer.
+ * During warm-up counters are restored from message timestamps (or from checkpoint and messages that follow it).
+ */
+public class SampleOrderToTradeRiskRule extends SampleRiskRule implements Checkpointable, SessionResettable {
+
+    public static final String MaxOrderToTradeRatio = "MaxOrderToTradeRatio";
+
+    private final SlidingWindowCounter orders;
+    private final SlidingWindowCounter fills;
+    private final long minOrders;
+
+    private double maxRatio = -1; // negative if unlimited
+    private RiskManagerContext context;
+
+    public SampleOrderToTradeRiskRule() {
+        this(24 * 60 * 60 * 1000, 96, 100);
+    }
+
+    /**
+     * @param window rolling window length in milliseconds
+     * @param bucketCount window precision (number of buckets)
+     * @param minOrders number of orders in the window before ratio is enforced
+     */
+    public SampleOrderToTradeRiskRule(long window, int bucketCount, long minOrders) {
+        super("Order To Trade Ratio");
+        this.orders = new SlidingWindowCounter(window, bucketCount);
+        this.fills = new SlidingWindowCounter(window, bucketCount);
+        this.minOrders = minOrders;
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxRatio((riskLimits == null) ? -1 : riskLimits.getDoubleLimit(MaxOrderToTradeRatio, -1));
+    }
+
+    @Override
+    public Object getCurrentValue(String limitName) {
+        if (context == null)
+            return null;
+
+        long now = context.getClock().time();
+        return Decimal64Utils.divide(Decimal64Utils.fromLong(orders.count(now)), Decimal64Utils.fromLong(Math.max(fills.count(now), 1)));
+    }
+
+    public double getMaxRatio() {
+        return maxRatio;
+    }
+
+    /** @param maxRatio maximum ratio of order messages to fills, negative if unlimited */
+    public void setMaxRatio(double maxRatio) {
+        this.maxRatio = maxRatio;
+    }
+
+    /** Resets counters (called on session boundary) */
+    @Override
+    public void resetSession() {
+        orders.clear();
+        fills.clear();
+    }
+
+    @Override
+    public void onLive(RiskManagerContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void writeCheckpoint(ByteBuffer buffer) {
+        orders.write(buffer);
+        fills.write(buffer);
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer buffer) {
+        orders.read(buffer);
+        fills.read(buffer);
+    }
+
+    /**
+     * Process new order submission request before it goes to destination venue
+     * @param order order state
+     * @param request original order submission request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        if (isCheckpointed(observer))
+            return;
+
+        final long now = time(request.getTimestamp(), observer);
+        if (observer != null && maxRatio >= 0) {
+            long orderCount = orders.count(now) + 1;
+            long fillCount = Math.max(fills.count(now), 1);
+            if (orderCount > minOrders && orderCount > maxRatio * fillCount) {
+                observer.onBreach(getProjectionPath(), MaxOrderToTradeRatio, 0, getBreachReason().set("Order to trade ratio ",
+                        Decimal64Utils.divide(Decimal64Utils.fromLong(orderCount), Decimal64Utils.fromLong(fillCount)),
+                        " would exceed maximum ", Decimal64Utils.fromDouble(maxRatio)));
+                return; // rejected orders do not reach exchange
+            }
+        }
+        orders.increment(now);
+    }
+
+    /**
+     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * @param order current state of the order that will be modified
+     * @param request cancel/replace request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        if ( ! isCheckpointed(observer))
+            orders.increment(time(request.getTimestamp(), observer));
+    }
+
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (isCheckpointed(observer))
+            return;
+
+        if (event instanceof OrderTradeReportEvent) {
+            fills.increment(time(event.getTimestamp(), observer));
+        } else if (event instanceof OrderPendingCancelEvent) {
+            orders.increment(time(event.getTimestamp(), observer)); // cancel requests do not reach risk rules
+        }
+    }
+
+    /** @return current time in live mode, message time during warm-up */
+    private long time(long messageTime, @Nullable RiskObserver observer) {
+        return (observer != null && context != null) ? context.getClock().time() : messageTime;
+    }
+}
@@ -2,36 +2,89 @@ package deltix.ember.service.oms.risk.sample;
 
 import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.CharSequenceUtil;
+import deltix.anvil.util.timer.TimerCallback;
+import deltix.ember.message.smd.InstrumentUpdate;
 import deltix.ember.message.trade.*;
 import deltix.ember.service.data.OrderState;
 import deltix.ember.service.oms.risk.api.*;
+import deltix.ember.service.price.api.PriceInfo;
 import com.epam.deltix.gflog.api.Log;
 import com.epam.deltix.gflog.api.LogFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 /**
  * Max Loss Risk Rule implementation.
  * Risk Rule checks realized P&L after every fill and cancels all active order when the loss exceeds
  * the value set in maxLoss. It will also reject new orders when the limit is breached.
+ *
+ * In {@link LossMode#TOTAL} mode rule also marks open position to market using prices of PricingService:
+ * total P&amp;L is realized P&amp;L (reported by PositionView, or tracked by the rule when projection has no positions)
+ * plus unrealized P&amp;L of open position at average cost. Position that existed before the rule went live (not seen in
+ * journal) is valued at market price of that moment. TOTAL mode requires projection keyed by Symbol (rule falls back
+ * to REALIZED mode otherwise). Instrument updates (dispatched by factory's {@link SymbolRuleIndex}) trigger
+ * re-evaluation, but evaluations are coalesced via context Timer: burst of updates causes at most one evaluation
+ * per markToMarketInterval.
+ *
+ * Once the limit is breached rule latches the breach: subsequent requests are rejected immediately with the cached
+ * reason, without re-evaluating P&amp;L. Latch is cleared when P&amp;L may change: on trade, on limit update
+ * and (in TOTAL mode) on mark-to-market evaluation.
+ *
+ * Active orders are rebuilt from OMS when rule goes live (warm start), warm-up replay only restores P&amp;L state
+ * (TOTAL mode state can also be restored from checkpoint).
  */
-public class SamplePnLRiskRule extends AbstractRiskRule {
+public class SamplePnLRiskRule extends SampleRiskRule implements PriceDrivenRule, Checkpointable, PositionRule {
     private static final Log LOGGER = LogFactory.getLog(SamplePnLRiskRule.class);
 
     public static final String MaxLoss = "MaxLoss";
+    /** Pseudo limit name for {@link #getCurrentValue(String)} that reports breach latch state (Boolean) */
+    public static final String MaxLossLatch = "MaxLoss.Latch";
+
+    public enum LossMode {
+        /** Realized loss reported by PositionView */
+        REALIZED,
+        /** Realized and unrealized loss, open position is marked to market */
+        TOTAL
+    }
 
     private @Decimal long maxLoss = Decimal64Utils.NULL; // NULL if unlimited
+    private long maxLossFixed = FixedPoint.NOT_FIXED;
+
+    private boolean breachLatched; // getBreachReason() holds the reason while latched
 
-    protected final List<RiskOrder> activeOrders = new ArrayList<>(128);
+    private LossMode lossMode = LossMode.REALIZED;
+    private long markToMarketInterval = 1000; // milliseconds
+
+    protected final ActiveOrderIndex activeOrders = new ActiveOrderIndex(128);
+    private final BreachCancelEmitter cancelEmitter;
 
     private RiskManagerContext context;
     private PositionView position;
+    private PositionView positionOverride; // set by offline tools
+
+    // Mark-to-market state (TOTAL mode): P&L = realizedPnL + netSize * markPrice - openCost
+    private @Decimal long netSize = Decimal64Utils.ZERO;
+    private @Decimal long openCost = Decimal64Utils.ZERO; // signed cost of open position at average price
+    private @Decimal long realizedPnL = Decimal64Utils.ZERO; // used when projection does not maintain positions
+    private boolean positionSynchronized; // position that predates the rule is accounted
+    private String symbol;
+    private PriceInfo prices;
+
+    private final TimerCallback<SamplePnLRiskRule> evaluationCallback = (now, rule) -> rule.onEvaluationTimer(now);
+    private boolean evaluationScheduled;
+    private long lastEvaluationTime;
 
     public SamplePnLRiskRule() {
+        this(new long[0]);
+    }
+
+    /** @param massCancelDestinations destinations that support mass cancel (used to cancel active orders on breach) */
+    public SamplePnLRiskRule(long[] massCancelDestinations) {
         super("PnL Limits");
+        this.cancelEmitter = new BreachCancelEmitter("MaxLoss limit breached", massCancelDestinations);
     }
 
     @Override
@@ -41,10 +94,35 @@ public class SamplePnLRiskRule extends AbstractRiskRule {
 
     @Override
     public Object getCurrentValue(String limitName) {
+        if (MaxLossLatch.equals(limitName))
+            return breachLatched;
+
+        if (lossMode == LossMode.TOTAL)
+            return Decimal64Utils.abs(Decimal64Utils.min(getTotalPnL(), Decimal64Utils.ZERO));
+
         return (position == null) ? null :
                 Decimal64Utils.abs(Decimal64Utils.min(position.getRealizedPnL(), Decimal64Utils.ZERO));
     }
 
+    public LossMode getLossMode() {
+        return lossMode;
+    }
+
+    public void setLossMode(LossMode lossMode) {
+        this.lossMode = lossMode;
+        this.breachLatched = false;
+    }
+
+    /** @param symbol instrument of this projection (used to mark open position, required in TOTAL mode) */
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /** @param markToMarketInterval minimum interval between price-driven evaluations (in milliseconds) */
+    public void setMarkToMarketInterval(long markToMarketInterval) {
+        this.markToMarketInterval = markToMarketInterval;
+    }
+
     public double getMaxLoss() {
         return Decimal64Utils.toDouble(maxLoss);
     }
@@ -52,14 +130,65 @@ public class SamplePnLRiskRule extends AbstractRiskRule {
     /** @param maxLoss not positive if unlimited */
     public void setMaxPosition(double maxLoss) {
         this.maxLoss = (maxLoss >= 0) ? Decimal64Utils.fromDouble(maxLoss) : Decimal64Utils.NULL;
+        this.maxLossFixed = FixedPoint.toFixed(this.maxLoss);
+        this.breachLatched = false;
+    }
+
+    public boolean isBreachLatched() {
+        return breachLatched;
+    }
+
+    @Override
+    protected boolean isWarmStartRule() {
+        return true;
     }
 
     @Override
     public void onLive(RiskManagerContext context) {
         this.context = context;
-        this.position = getParentGroup().getPositionView();
-        if (this.position == null)
+        this.position = lookupPositionView();
+        this.cancelEmitter.setProjectionPath(getProjectionPath());
+        if (lossMode == LossMode.TOTAL && symbol == null) {
+            LOGGER.error("MaxLoss TOTAL mode requires projection keyed by Symbol, using REALIZED mode");
+            setLossMode(LossMode.REALIZED);
+        }
+        if (this.position == null && lossMode == LossMode.REALIZED)
             LOGGER.error("MaxLoss limit must be defined on Position projection");
+        if (lossMode == LossMode.TOTAL)
+            synchronizePosition();
+
+        if (isWarmStartSupported()) {
+            activeOrders.clear();
+            iterateActiveOrders(context, (order, index) -> index.add(order), activeOrders);
+        }
+    }
+
+    @Override
+    public void writeCheckpoint(ByteBuffer buffer) {
+        buffer.putLong(netSize).putLong(openCost).putLong(realizedPnL);
+    }
+
+    @Override
+    public void readCheckpoint(ByteBuffer buffer) {
+        netSize = buffer.getLong();
+        openCost = buffer.getLong();
+        realizedPnL = buffer.getLong();
+    }
+
+    @Override
+    public void setPositionView(PositionView position) {
+        this.positionOverride = position;
+    }
+
+    /** @return PositionView of parent projection or null if projection does not maintain positions */
+    protected PositionView lookupPositionView() {
+        return (positionOverride != null) ? positionOverride : getParentGroup().getPositionView();
+    }
+
+    @Override
+    public void onPriceUpdate(InstrumentUpdate update) {
+        if (lossMode == LossMode.TOTAL && symbol != null && CharSequenceUtil.equals(symbol, update.getSymbol()))
+            scheduleEvaluation();
     }
 
     /**
@@ -69,8 +198,9 @@ public class SamplePnLRiskRule extends AbstractRiskRule {
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */
     @Override
-    public void onNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
-        activeOrders.add(order);
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        if (observer != null || ! isWarmStartSupported())
+            activeOrders.add(order);
         checkLimits(order, request, observer);
     }
 
@@ -81,7 +211,7 @@ public class SamplePnLRiskRule extends AbstractRiskRule {
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */
     @Override
-    public void onReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
         checkLimits(order, request, observer);
     }
 
@@ -92,23 +222,22 @@ public class SamplePnLRiskRule extends AbstractRiskRule {
      * @param previousState order state prior to this event
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */    @Override
-    public void onOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
-        if (activeOrders.size() > 0 && event instanceof OrderTradeReportEvent) {
-            if (observer != null && ! Decimal64Utils.isNull(maxLoss)) {
-                @Decimal long realizedPnL = position.getRealizedPnL();
-                if (Decimal64Utils.isNegative(realizedPnL) && Decimal64Utils.isGreater(Decimal64Utils.abs(realizedPnL), maxLoss)) {
-                    for (RiskOrder activeOrder : activeOrders) {
-                        MutableOrderCancelRequest request = new MutableOrderCancelRequest();
-                        request.setTimestamp(context.getClock().time());
-                        request.setRequestId("cancel_" + activeOrder.getOrderId());
-                        request.setSourceId(activeOrder.getSourceId());
-                        request.setOrderId(activeOrder.getOrderId());
-                        request.setDestinationId(activeOrder.getDestinationId());
-                        request.setReason("MaxLoss limit breached");
-
-                        context.sendCancelOrderRequest(request);
-                    }
-                }
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (event instanceof OrderTradeReportEvent) {
+            breachLatched = false; // P&L changes
+            if (lossMode == LossMode.TOTAL && ! isCheckpointed(observer))
+                onTrade(order, (OrderTradeReportEvent) event);
+        }
+
+        if (observer == null && isWarmStartSupported())
+            return; // active orders will be rebuilt on live
+
+        if (! activeOrders.isEmpty()) {
+            if (event instanceof OrderTradeReportEvent) {
+                if (observer != null && isLossLimitBreached())
+                    cancelEmitter.cancelAll(activeOrders, context);
+            } else if (event instanceof OrderCancelRejectEvent) {
+                cancelEmitter.onCancelRejected(activeOrders, order);
             }
         }
 
@@ -117,17 +246,137 @@ public class SamplePnLRiskRule extends AbstractRiskRule {
     }
 
     private void checkLimits(RiskOrder order, OrderEntryRequest request, RiskObserver observer) {
-        if (observer != null && ! Decimal64Utils.isNull(maxLoss)) {
-            @Decimal long realizedPnL = position.getRealizedPnL();
-            if (Decimal64Utils.isNegative(realizedPnL) && Decimal64Utils.isGreater(Decimal64Utils.abs(realizedPnL), maxLoss)) {
-                observer.onBreach(getProjectionPath(), MaxLoss, 0, formatMessage(realizedPnL, request));
+        if (observer != null && isLossLimitBreached())
+            observer.onBreach(getProjectionPath(), MaxLoss, 0, getBreachReason());
+    }
+
+    /** Evaluates the limit unless the breach is latched. Latches the breach along with its reason */
+    private boolean isLossLimitBreached() {
+        if (breachLatched)
+            return true;
+
+        if (Decimal64Utils.isNull(maxLoss))
+            return false;
+
+        @Decimal long pnl = getPnL();
+        if ( ! exceedsMaxLoss(pnl))
+            return false;
+
+        getBreachReason().set((lossMode == LossMode.TOTAL) ? "Total Loss " : "Realized Loss ", pnl, " exceeds maximum ", maxLoss);
+        breachLatched = true;
+        return true;
+    }
+
+    private boolean exceedsMaxLoss(@Decimal long pnl) {
+        final long fixedPnL;
+        if (maxLossFixed != FixedPoint.NOT_FIXED && (fixedPnL = FixedPoint.toFixed(pnl)) != FixedPoint.NOT_FIXED)
+            return fixedPnL < -maxLossFixed;
+
+        return Decimal64Utils.isNegative(pnl) && Decimal64Utils.isGreater(Decimal64Utils.abs(pnl), maxLoss);
+    }
+
+    /** @return P&L that is subject to MaxLoss limit in current mode */
+    private @Decimal long getPnL() {
+        if (lossMode == LossMode.TOTAL)
+            return getTotalPnL();
+        return (position != null) ? position.getRealizedPnL() : Decimal64Utils.ZERO;
+    }
+
+    /// region Mark-to-market
+
+    /** Average cost accounting of the open position */
+    private void onTrade(RiskOrder order, OrderTradeReportEvent event) {
+        final @Decimal long price = event.getTradePrice();
+        final @Decimal long quantity = (order.getSide() == Side.BUY) ? event.getTradeQuantity() : Decimal64Utils.negate(event.getTradeQuantity());
+        final @Decimal long newSize = Decimal64Utils.add(netSize, quantity);
+
+        if (Decimal64Utils.isZero(netSize) || Decimal64Utils.isNegative(netSize) == Decimal64Utils.isNegative(quantity)) {
+            openCost = Decimal64Utils.add(openCost, Decimal64Utils.multiply(quantity, price)); // position grows
+        } else {
+            final @Decimal long averagePrice = Decimal64Utils.divide(openCost, netSize);
+            final @Decimal long priceChange = Decimal64Utils.subtract(price, averagePrice);
+            if (Decimal64Utils.isZero(newSize) || Decimal64Utils.isNegative(newSize) == Decimal64Utils.isNegative(netSize)) {
+                realizedPnL = Decimal64Utils.subtract(realizedPnL, Decimal64Utils.multiply(quantity, priceChange)); // position shrinks
+                openCost = Decimal64Utils.multiply(newSize, averagePrice);
+            } else {
+                realizedPnL = Decimal64Utils.add(realizedPnL, Decimal64Utils.multiply(netSize, priceChange)); // position flips
+                openCost = Decimal64Utils.multiply(newSize, price);
             }
         }
+        netSize = newSize;
     }
 
-    private CharSequence formatMessage(@Decimal long actualPosition, OrderEntryRequest request) {
-        return getCleanBuffer()
-                .append("Realized Loss ").appendDecimal64(actualPosition)
-                .append(" exceeds maximum ").appendDecimal64(maxLoss);
+    /** @return realized and unrealized P&amp;L, open position is valued at the price we could close it */
+    private @Decimal long getTotalPnL() {
+        final @Decimal long realized = (position != null) ? position.getRealizedPnL() : realizedPnL;
+        if ( ! positionSynchronized)
+            synchronizePosition();
+        if (Decimal64Utils.isZero(netSize))
+            return realized;
+
+        final @Decimal long markPrice = getMarkPrice();
+        if (Decimal64Utils.isNaN(markPrice))
+            return realized; // no market data: open position is not marked
+
+        return Decimal64Utils.add(realized, Decimal64Utils.subtract(Decimal64Utils.multiply(netSize, markPrice), openCost));
     }
+
+    /** Accounts position that predates the rule (not seen in journal) at current market price */
+    private void synchronizePosition() {
+        if (position == null) {
+            positionSynchronized = true;
+            return;
+        }
+
+        final @Decimal long missingSize = Decimal64Utils.subtract(position.getActualPositionSize(), netSize);
+        if (Decimal64Utils.isZero(missingSize)) {
+            positionSynchronized = true;
+            return;
+        }
+
+        final @Decimal long markPrice = getMarkPrice(missingSize);
+        if ( ! Decimal64Utils.isNaN(markPrice)) {
+            netSize = Decimal64Utils.add(netSize, missingSize);
+            openCost = Decimal64Utils.add(openCost, Decimal64Utils.multiply(missingSize, markPrice));
+            positionSynchronized = true;
+        }
+    }
+
+    private @Decimal long getMarkPrice() {
+        return getMarkPrice(netSize);
+    }
+
+    /** @return price we could close given position at (NaN if unknown) */
+    private @Decimal long getMarkPrice(@Decimal long size) {
+        if (prices == null) {
+            if (context == null || symbol == null)
+                return Decimal64Utils.NaN;
+            prices = context.getPricingService().getInstrumentPrices(symbol); // resolve once, price handle is live
+            if (prices == null)
+                return Decimal64Utils.NaN; // unknown symbol
+        }
+        return prices.getBestAvailableMarketPrice(Decimal64Utils.isNegative(size));
+    }
+
+    /** Evaluation is needed to cancel active orders on breach, or to clear latched breach when prices recover */
+    private void scheduleEvaluation() {
+        if ( ! evaluationScheduled && context != null && ( ! activeOrders.isEmpty() || breachLatched) && ! Decimal64Utils.isNull(maxLoss)) {
+            long time = Math.max(context.getClock().time(), lastEvaluationTime + markToMarketInterval);
+            context.getTimer().schedule(time, evaluationCallback, this);
+            evaluationScheduled = true;
+        }
+    }
+
+    private long onEvaluationTimer(long now) {
+        evaluationScheduled = false;
+        lastEvaluationTime = now;
+        breachLatched = false; // market prices changed
+
+        if (context.isLive() && ! activeOrders.isEmpty() && isLossLimitBreached())
+            cancelEmitter.cancelAll(activeOrders, context);
+
+        return TimerCallback.DO_NOT_RESCHEDULE;
+    }
+
+    /// endregion
 }
\ No newline at end of file
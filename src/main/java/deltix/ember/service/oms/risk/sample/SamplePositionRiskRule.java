@@ -2,10 +2,12 @@ package deltix.ember.service.oms.risk.sample;
 
 import com.epam.deltix.dfp.Decimal;
 import com.epam.deltix.dfp.Decimal64Utils;
-import deltix.ember.message.trade.OrderEntryRequest;
+import deltix.ember.message.trade.OrderEvent;
 import deltix.ember.message.trade.OrderNewRequest;
 import deltix.ember.message.trade.OrderReplaceRequest;
 import deltix.ember.message.trade.Side;
+import deltix.ember.service.data.OrderEntry;
+import deltix.ember.service.data.OrderState;
 import deltix.ember.service.oms.risk.api.*;
 import com.epam.deltix.gflog.api.Log;
 import com.epam.deltix.gflog.api.LogFactory;
@@ -18,16 +20,34 @@ import javax.annotation.Nullable;
  * Rejects new order when estimated LONG or SHORT position exceeds the value set in maxPosition.
  * This RiskRule is using PositionView API which is available to risk rules defined
  * at position projections: Symbol, Currency or RootSymbol
+ *
+ * Rule keeps LONG and SHORT headroom (distance of estimated position to the limit) between requests.
+ * Headroom is recomputed from PositionView only after order events (fills, cancels, rejects) or limit changes,
+ * in between each request just consumes headroom by its quantity (or quantity delta of replacement).
+ * When headroom is recomputed, PositionView open sizes already include the request being checked.
+ * Headroom is kept in {@link FixedPoint} form while position, open sizes and limit fit it (Decimal64 otherwise).
  */
-public class SamplePositionRiskRule extends AbstractRiskRule {
+public class SamplePositionRiskRule extends SampleRiskRule implements PositionRule {
 
     public static final String MaxPosition = "MaxPosition";
 
     private static final Log LOGGER = LogFactory.getLog(SamplePositionRiskRule.class);
 
     private PositionView position;
+    private PositionView positionOverride; // set by offline tools
 
     private @Decimal long maxPosition = Decimal64Utils.NULL; // NULL if unlimited
+    private long maxPositionFixed = FixedPoint.NOT_FIXED;
+
+    // maxPosition less estimated LONG/SHORT position, valid unless dirty
+    private @Decimal long longHeadroom;
+    private @Decimal long shortHeadroom;
+    private boolean dirty = true;
+
+    // the same in fixed-point form, valid if fixed
+    private long longHeadroomFixed;
+    private long shortHeadroomFixed;
+    private boolean fixed;
 
     public SamplePositionRiskRule() {
         super("Max Position");
@@ -38,10 +58,14 @@ public class SamplePositionRiskRule extends AbstractRiskRule {
         setMaxPosition((riskLimits == null) ? -1 : riskLimits.getDoubleLimit(MaxPosition, -1));
     }
 
+    /** Monitoring read: computes estimated net position from PositionView without touching cached headroom */
     @Override
     public Object getCurrentValue(String limitName) {
-        return (position == null) ? null :
-            Decimal64Utils.abs(Decimal64Utils.add(position.getActualPositionSize(), Decimal64Utils.subtract(position.getOpenBuySize(), position.getOpenSellSize())));
+        if (position == null)
+            return null;
+
+        @Decimal long netPosition = Decimal64Utils.add(position.getActualPositionSize(), Decimal64Utils.subtract(position.getOpenBuySize(), position.getOpenSellSize()));
+        return Decimal64Utils.abs(netPosition);
     }
 
     public double getMaxPosition() {
@@ -49,19 +73,32 @@ public class SamplePositionRiskRule extends AbstractRiskRule {
     }
 
     // negative maxPosition or unlimited
-    public void setMaxPosition(double maxPositon) {
-        this.maxPosition = (maxPositon >= 0) ? Decimal64Utils.fromDouble(maxPosition) : Decimal64Utils.NULL;
+    public void setMaxPosition(double maxPosition) {
+        this.maxPosition = (maxPosition >= 0) ? Decimal64Utils.fromDouble(maxPosition) : Decimal64Utils.NULL;
+        this.maxPositionFixed = FixedPoint.toFixed(this.maxPosition);
+        this.dirty = true;
     }
 
     @Override
     public void onLive(RiskManagerContext context) {
         // Initialize PositionView. getPositionView() can return null
         // if risk rule was not defined in position projection
-        this.position = getParentGroup().getPositionView();
+        this.position = lookupPositionView();
+        this.dirty = true;
         if (this.position == null)
            LOGGER.error("MaxPosition limit must be defined on Position projection");
     }
 
+    @Override
+    public void setPositionView(PositionView position) {
+        this.positionOverride = position;
+    }
+
+    /** @return PositionView of parent projection or null if projection does not maintain positions */
+    protected PositionView lookupPositionView() {
+        return (positionOverride != null) ? positionOverride : getParentGroup().getPositionView();
+    }
+
     /**
      * Process new order submission request before it goes to destination venue
      * @param order order state
@@ -69,35 +106,104 @@ public class SamplePositionRiskRule extends AbstractRiskRule {
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */
     @Override
-    public void onNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
-        checkLimits(order, request, observer);
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        checkLimits(order.getSide() == Side.BUY, request.getQuantity(), observer);
     }
 
     /**
-     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * Process order replacement (cancel/replace) request before it goes out to destination venue.
+     * Only quantity increase is checked: shrinking an order never increases estimated position.
      * @param order current state of the order that will be modified
      * @param request cancel/replace request
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */
     @Override
-    public void onReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
-        checkLimits(order, request, observer);
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        OrderEntry workingOrder = order.getWorkingOrder();
+        @Decimal long quantityDelta = (workingOrder != null) ?
+                Decimal64Utils.subtract(request.getQuantity(), workingOrder.getQuantity()) :
+                request.getQuantity();
+
+        if (Decimal64Utils.isPositive(quantityDelta)) {
+            checkLimits(order.getSide() == Side.BUY, quantityDelta, observer);
+        } else {
+            dirty = true; // open size shrinks when replacement is acknowledged
+        }
     }
 
-    private void checkLimits(RiskOrder order, OrderEntryRequest request, RiskObserver observer) {
-        if (observer != null && ! Decimal64Utils.isNull(maxPosition)) {
-            boolean isBuyOrder = (order.getSide() == Side.BUY);
-            @Decimal long positionSize = isBuyOrder ?
-                    Decimal64Utils.add(position.getActualPositionSize(), position.getOpenBuySize()) :
-                    Decimal64Utils.subtract(position.getOpenSellSize(), position.getActualPositionSize());
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        dirty = true; // fills, cancels and rejects change position and open sizes
+    }
 
-            if (Decimal64Utils.isGreater(positionSize, maxPosition)) {
-                CharSequence message = getCleanBuffer()
-                        .append("Estimated ").append(isBuyOrder ? "LONG" : "SHORT").append(" position ").appendDecimal64(positionSize)
-                        .append(" would exceed maximum limit ").appendDecimal64(maxPosition);
+    /** @param quantity quantity that request adds to open buy (or sell) size */
+    private void checkLimits(boolean isBuyOrder, @Decimal long quantity, RiskObserver observer) {
+        if (observer == null || Decimal64Utils.isNull(maxPosition) || position == null) {
+            dirty = true;
+            return;
+        }
 
-                observer.onBreach(getProjectionPath(), MaxPosition, DeltixRiskCodes.MAX_NET_POSITION_SIZE.ordinal(), message);
+        final long fixedQuantity;
+        if (dirty) {
+            refresh(); // position view already includes this request
+        } else if (fixed) {
+            if ((fixedQuantity = FixedPoint.toFixed(quantity)) == FixedPoint.NOT_FIXED) {
+                refresh();
+            } else if (isBuyOrder) {
+                longHeadroomFixed -= fixedQuantity;
+            } else {
+                shortHeadroomFixed -= fixedQuantity;
             }
+        } else if (isBuyOrder) {
+            longHeadroom = Decimal64Utils.subtract(longHeadroom, quantity);
+        } else {
+            shortHeadroom = Decimal64Utils.subtract(shortHeadroom, quantity);
+        }
+
+        if (fixed) {
+            long headroom = isBuyOrder ? longHeadroomFixed : shortHeadroomFixed;
+            if (headroom < 0)
+                reportBreach(isBuyOrder, FixedPoint.toDecimal(maxPositionFixed - headroom), observer);
+        } else {
+            @Decimal long headroom = isBuyOrder ? longHeadroom : shortHeadroom;
+            if (Decimal64Utils.isNegative(headroom))
+                reportBreach(isBuyOrder, Decimal64Utils.subtract(maxPosition, headroom), observer);
+        }
+    }
+
+    private void reportBreach(boolean isBuyOrder, @Decimal long positionSize, RiskObserver observer) {
+        dirty = true; // rejected request will not be added to open size
+        BreachReason reason = getBreachReason()
+                .set(isBuyOrder ? "Estimated LONG position " : "Estimated SHORT position ", positionSize, " would exceed maximum limit ", maxPosition);
+
+        observer.onBreach(getProjectionPath(), MaxPosition, DeltixRiskCodes.MAX_NET_POSITION_SIZE.ordinal(), reason);
+    }
+
+    private void refresh() {
+        @Decimal long actualPositionSize = position.getActualPositionSize();
+        @Decimal long openBuySize = position.getOpenBuySize();
+        @Decimal long openSellSize = position.getOpenSellSize();
+
+        long actualFixed = FixedPoint.toFixed(actualPositionSize);
+        long openBuyFixed = FixedPoint.toFixed(openBuySize);
+        long openSellFixed = FixedPoint.toFixed(openSellSize);
+        fixed = maxPositionFixed != FixedPoint.NOT_FIXED && actualFixed != FixedPoint.NOT_FIXED &&
+                openBuyFixed != FixedPoint.NOT_FIXED && openSellFixed != FixedPoint.NOT_FIXED;
+
+        if (fixed) {
+            longHeadroomFixed = maxPositionFixed - (actualFixed + openBuyFixed);
+            shortHeadroomFixed = maxPositionFixed - (openSellFixed - actualFixed);
+        } else if ( ! Decimal64Utils.isNull(maxPosition)) {
+            longHeadroom = Decimal64Utils.subtract(maxPosition, Decimal64Utils.add(actualPositionSize, openBuySize));
+            shortHeadroom = Decimal64Utils.subtract(maxPosition, Decimal64Utils.subtract(openSellSize, actualPositionSize));
         }
+        dirty = false;
     }
 }
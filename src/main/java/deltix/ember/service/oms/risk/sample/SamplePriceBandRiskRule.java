@@ -0,0 +1,252 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.smd.InstrumentUpdate;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.*;
+import deltix.ember.service.price.api.PriceInfo;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Sample fat-finger price band RiskRule implementation.
+ *
+ * Rule rejects limit orders priced outside of [bid - deviation, ask + deviation] band around the best available
+ * market prices of the projection instrument. Deviation (MaxPriceDeviation limit) is expressed in percent of
+ * the price, or in ticks for instrument types configured by factory (see priceBandTicks setting).
+ *
+ * Rule reads bid/ask from live PriceInfo handle of the symbol and recomputes the band only when they change
+ * (or when limit or tick size changes). Band is kept in fixed-point form, so the per-order check in steady market
+ * is two price reads and two primitive comparisons. Tick size and instrument type come from instrument updates
+ * (dispatched by factory's {@link SymbolRuleIndex}).
+ *
+ * PricingService does not expose time of the last price update, so optional staleness check (maxPriceAge) rejects
+ * orders when bid/ask observed by the rule did not change for maxPriceAge milliseconds. Besides orders, factory samples
+ * prices of these rules by timer (see {@link #samplePrices(long)}), so staleness is measured from the last market
+ * change observed by sampling rather than from order arrival. A feed that was already frozen when rule went live
+ * is considered fresh for maxPriceAge. Use it only for instruments that normally tick more often than maxPriceAge.
+ *
+ * Market orders are not checked. Rule must be defined on projection keyed by Symbol.
+ */
+public class SamplePriceBandRiskRule extends SampleRiskRule implements PriceDrivenRule {
+    private static final Log LOGGER = LogFactory.getLog(SamplePriceBandRiskRule.class);
+
+    public static final String MaxPriceDeviation = "MaxPriceDeviation";
+
+    private static final @Decimal long ONE_PERCENT = Decimal64Utils.fromDouble(0.01);
+
+    private final Set<InstrumentType> tickInstrumentTypes;
+    private final long maxPriceAge;
+
+    private @Decimal long maxDeviation = Decimal64Utils.NULL; // NULL if unlimited
+    private String symbol;
+    private InstrumentType instrumentType;
+    private @Decimal long tickSize = Decimal64Utils.NaN;
+
+    private RiskManagerContext context;
+    private PriceInfo prices;
+
+    // Market prices the band was computed from
+    private @Decimal long bid = Decimal64Utils.NaN;
+    private @Decimal long ask = Decimal64Utils.NaN;
+    private long priceChangeTime;
+
+    // Precomputed band
+    private boolean bandDefined;
+    private @Decimal long low;
+    private @Decimal long high;
+    private long lowFixed = FixedPoint.NOT_FIXED;
+    private long highFixed = FixedPoint.NOT_FIXED;
+
+    public SamplePriceBandRiskRule() {
+        this(EnumSet.noneOf(InstrumentType.class), 0);
+    }
+
+    /**
+     * @param tickInstrumentTypes instrument types whose deviation is expressed in ticks (others use percent)
+     * @param maxPriceAge orders are rejected when market prices did not change for this number of milliseconds (0 - no check)
+     */
+    public SamplePriceBandRiskRule(Set<InstrumentType> tickInstrumentTypes, long maxPriceAge) {
+        super("Price Band");
+        this.tickInstrumentTypes = tickInstrumentTypes;
+        this.maxPriceAge = maxPriceAge;
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxDeviation((riskLimits == null) ? -1 : riskLimits.getDoubleLimit(MaxPriceDeviation, -1));
+    }
+
+    @Override
+    public Object getCurrentValue(String limitName) {
+        return null;
+    }
+
+    public double getMaxDeviation() {
+        return Decimal64Utils.toDouble(maxDeviation);
+    }
+
+    /** @param maxDeviation maximum deviation from market price in percent (or ticks), negative if unlimited */
+    public void setMaxDeviation(double maxDeviation) {
+        this.maxDeviation = (maxDeviation >= 0) ? Decimal64Utils.fromDouble(maxDeviation) : Decimal64Utils.NULL;
+        computeBand();
+    }
+
+    /** @param symbol instrument of this projection */
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    @Override
+    public void onLive(RiskManagerContext context) {
+        this.context = context;
+        if (symbol == null)
+            LOGGER.error("MaxPriceDeviation limit must be defined on Symbol projection");
+    }
+
+    /**
+     * Reads current market prices, called by factory timer every maxPriceAge / 4 milliseconds when staleness check is enabled
+     * @param now current time
+     */
+    void samplePrices(long now) {
+        if (context != null)
+            refreshBand(now);
+    }
+
+    @Override
+    public void onPriceUpdate(InstrumentUpdate update) {
+        instrumentType = update.getInstrumentType();
+        tickSize = update.getTickSize();
+        computeBand();
+    }
+
+    /**
+     * Process new order submission request before it goes to destination venue
+     * @param order order state
+     * @param request original order submission request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        checkPrice(request, observer);
+    }
+
+    /**
+     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * @param order current state of the order that will be modified
+     * @param request cancel/replace request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        checkPrice(request, observer);
+    }
+
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        // stateless
+    }
+
+    private void checkPrice(OrderEntryRequest request, @Nullable RiskObserver observer) {
+        if (observer == null || Decimal64Utils.isNull(maxDeviation))
+            return;
+
+        final @Decimal long price = request.getLimitPrice();
+        if (Decimal64Utils.isNaN(price))
+            return; // market order
+
+        if (instrumentType == null) {
+            instrumentType = request.getInstrumentType(); // no instrument updates yet
+            computeBand();
+        }
+
+        final long now = context.getClock().time();
+        if ( ! refreshBand(now)) {
+            observer.onBreach(getProjectionPath(), MaxPriceDeviation, 0, getBreachReason().set(isTickDeviation() && Decimal64Utils.isNaN(tickSize) ? "No tick size to check limit price" : "No market price to check limit price"));
+        } else if (maxPriceAge > 0 && now - priceChangeTime > maxPriceAge) {
+            observer.onBreach(getProjectionPath(), MaxPriceDeviation, 0, getBreachReason().set("Market price is stale"));
+        } else {
+            final long priceFixed;
+            if (lowFixed != FixedPoint.NOT_FIXED && highFixed != FixedPoint.NOT_FIXED && (priceFixed = FixedPoint.toFixed(price)) != FixedPoint.NOT_FIXED) {
+                if (priceFixed < lowFixed)
+                    reportBreach(price, " is below price band low ", low, observer);
+                else if (priceFixed > highFixed)
+                    reportBreach(price, " is above price band high ", high, observer);
+            } else {
+                if (Decimal64Utils.isLess(price, low))
+                    reportBreach(price, " is below price band low ", low, observer);
+                else if (Decimal64Utils.isGreater(price, high))
+                    reportBreach(price, " is above price band high ", high, observer);
+            }
+        }
+    }
+
+    private void reportBreach(@Decimal long price, String infix, @Decimal long bound, RiskObserver observer) {
+        observer.onBreach(getProjectionPath(), MaxPriceDeviation, 0, getBreachReason().set("Limit price ", price, infix, bound));
+    }
+
+    /**
+     * Reads current market prices and recomputes the band if they changed
+     * @return false if band is undefined (no market prices or tick size)
+     */
+    private boolean refreshBand(long now) {
+        if (prices == null) {
+            if (symbol == null)
+                return false;
+            prices = context.getPricingService().getInstrumentPrices(symbol); // resolve once, price handle is live
+            if (prices == null)
+                return false; // unknown symbol
+        }
+
+        final @Decimal long bid = prices.getBestAvailableMarketPrice(false);
+        final @Decimal long ask = prices.getBestAvailableMarketPrice(true);
+        if (bid != this.bid || ask != this.ask) {
+            this.bid = bid;
+            this.ask = ask;
+            priceChangeTime = now;
+            computeBand();
+        }
+        return bandDefined;
+    }
+
+    private boolean isTickDeviation() {
+        return instrumentType != null && tickInstrumentTypes.contains(instrumentType);
+    }
+
+    /** Recomputes band from last known market prices */
+    private void computeBand() {
+        bandDefined = false;
+        if (Decimal64Utils.isNull(maxDeviation) || Decimal64Utils.isNaN(bid) || Decimal64Utils.isNaN(ask))
+            return;
+
+        if (isTickDeviation()) {
+            if (Decimal64Utils.isNaN(tickSize))
+                return;
+            @Decimal long deviation = Decimal64Utils.multiply(maxDeviation, tickSize);
+            low = Decimal64Utils.subtract(bid, deviation);
+            high = Decimal64Utils.add(ask, deviation);
+        } else {
+            @Decimal long ratio = Decimal64Utils.multiply(maxDeviation, ONE_PERCENT);
+            low = Decimal64Utils.subtract(bid, Decimal64Utils.multiply(bid, ratio));
+            high = Decimal64Utils.add(ask, Decimal64Utils.multiply(ask, ratio));
+        }
+        lowFixed = FixedPoint.toFixed(low);
+        highFixed = FixedPoint.toFixed(high);
+        bandDefined = true;
+    }
+}
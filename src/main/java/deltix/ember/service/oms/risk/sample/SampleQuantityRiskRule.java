@@ -14,11 +14,12 @@ import javax.annotation.Nullable;
  * Sample Max Order Quantity RiskRule implementation.
  * Limits the quantity of the Order to the value set in maxQuantity.
  */
-public class SampleQuantityRiskRule extends AbstractRiskRule {
+public class SampleQuantityRiskRule extends SampleRiskRule {
     public static final String MaxQuantity = "MaxQuantity";
 
     @Decimal
     private long maxQuantity = Decimal64Utils.NULL; // NULL if unlimited
+    private long maxQuantityFixed = FixedPoint.NOT_FIXED;
 
     public SampleQuantityRiskRule() {
         super("Max Order Quantity");
@@ -36,6 +37,7 @@ public class SampleQuantityRiskRule extends AbstractRiskRule {
     // negative maxQuantity for unlimited
     public void setMaxQuantity(long maxQuantity) {
         this.maxQuantity = (maxQuantity >= 0) ? Decimal64Utils.fromLong(maxQuantity) : Decimal64Utils.NULL;
+        this.maxQuantityFixed = FixedPoint.toFixed(this.maxQuantity);
     }
 
     /**
@@ -45,7 +47,7 @@ public class SampleQuantityRiskRule extends AbstractRiskRule {
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */
     @Override
-    public void onNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
         validateQuantity(request, observer);
     }
 
@@ -56,18 +58,21 @@ public class SampleQuantityRiskRule extends AbstractRiskRule {
      * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
      */
     @Override
-    public void onReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
         validateQuantity(request, observer);
     }
 
     private void validateQuantity(@Nonnull OrderEntryRequest request, @Nullable RiskObserver observer) {
-        if (observer != null && !Decimal64Utils.isNull(maxQuantity) && Decimal64Utils.isGreater(request.getQuantity(), maxQuantity))
-            observer.onBreach(getProjectionPath(), MaxQuantity, DeltixRiskCodes.MAX_ORDER_SIZE.ordinal(), formatMessage(request));
+        if (observer != null && !Decimal64Utils.isNull(maxQuantity) && exceedsMaxQuantity(request.getQuantity()))
+            observer.onBreach(getProjectionPath(), MaxQuantity, DeltixRiskCodes.MAX_ORDER_SIZE.ordinal(),
+                    getBreachReason().set("Order quantity ", request.getQuantity(), " exceeds maximum ", maxQuantity));
     }
 
-    private CharSequence formatMessage(OrderEntryRequest request) {
-        return getCleanBuffer()
-                .append("Order quantity ").appendDecimal64(request.getQuantity())
-                .append(" exceeds maximum ").appendDecimal64(maxQuantity);
+    private boolean exceedsMaxQuantity(@Decimal long quantity) {
+        final long fixedQuantity;
+        if (maxQuantityFixed != FixedPoint.NOT_FIXED && (fixedQuantity = FixedPoint.toFixed(quantity)) != FixedPoint.NOT_FIXED)
+            return fixedQuantity > maxQuantityFixed;
+
+        return Decimal64Utils.isGreater(quantity, maxQuantity);
     }
 }
\ No newline at end of file
@@ -1,5 +1,11 @@
 package deltix.ember.service.oms.risk.sample;
 
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.anvil.util.timer.TimerCallback;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
 import deltix.ember.service.oms.position.ProjectionPath;
 import deltix.ember.service.oms.risk.api.CustomRiskRuleFactory;
 import deltix.ember.service.oms.risk.api.RiskLimitDefinition;
@@ -7,13 +13,32 @@ import deltix.ember.service.oms.risk.api.RiskManagerContext;
 import deltix.ember.service.oms.risk.api.RiskRule;
 
 import javax.annotation.Nonnull;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static deltix.ember.service.oms.risk.sample.SampleCreditRiskRule.MaxCredit;
+import static deltix.ember.service.oms.risk.sample.SampleNotionalRiskRule.MaxNotional;
+import static deltix.ember.service.oms.risk.sample.SampleNotionalRiskRule.MaxOpenNotional;
+import static deltix.ember.service.oms.risk.sample.SampleOrderToTradeRiskRule.MaxOrderToTradeRatio;
 import static deltix.ember.service.oms.risk.sample.SamplePnLRiskRule.MaxLoss;
 import static deltix.ember.service.oms.risk.sample.SamplePositionRiskRule.MaxPosition;
+import static deltix.ember.service.oms.risk.sample.SamplePriceBandRiskRule.MaxPriceDeviation;
 import static deltix.ember.service.oms.risk.sample.SampleQuantityRiskRule.MaxQuantity;
+import static deltix.ember.service.oms.risk.sample.SampleRateRiskRule.MaxMessagesPerSecond;
+import static deltix.ember.service.oms.risk.sample.SampleRateRiskRule.MaxOrdersPerSecond;
 
 /**
  * Sample implementation of RiskRulesFactory
@@ -22,7 +47,9 @@ import static deltix.ember.service.oms.risk.sample.SampleQuantityRiskRule.MaxQua
  */
 public class SampleQuantityRiskRuleFactory implements CustomRiskRuleFactory
 {
-    private static final List<String> limitNames = Collections.unmodifiableList(Arrays.asList(MaxQuantity, MaxPosition, MaxLoss));
+    private static final Log LOGGER = LogFactory.getLog(SampleQuantityRiskRuleFactory.class);
+
+    private static final List<String> limitNames = Collections.unmodifiableList(Arrays.asList(MaxQuantity, MaxPosition, MaxLoss, MaxOrdersPerSecond, MaxMessagesPerSecond, MaxOrderToTradeRatio, MaxNotional, MaxOpenNotional, MaxPriceDeviation, MaxCredit));
 
 
     // Examples of parameters custom risk rule may take from config
@@ -37,6 +64,94 @@ public class SampleQuantityRiskRuleFactory implements CustomRiskRuleFactory
     private String marketClosingTime;
     private String timeZone;
 
+    // Destinations that support OrderMassCancelRequest. MaxLoss rule of Source/Destination projection groups breach
+    // cancels for these destinations into a single mass cancel per source (other projections cancel orders one by one):
+    //       massCancelDestinations = [SIM]
+    private long[] massCancelDestinations = new long[0];
+
+    // MaxLoss mode: REALIZED (default) or TOTAL (open position is marked to market, Symbol projections only).
+    // In TOTAL mode price updates re-evaluate the loss at most once per markToMarketInterval (milliseconds):
+    //       maxLossMode = TOTAL
+    //       markToMarketInterval = 250
+    private SamplePnLRiskRule.LossMode maxLossMode = SamplePnLRiskRule.LossMode.REALIZED;
+    private long markToMarketInterval = 1000;
+
+    // Price-driven rules of all projections, keyed by projection symbol/root symbol
+    private final SymbolRuleIndex symbolRuleIndex = new SymbolRuleIndex();
+    private boolean symbolRuleIndexRegistered;
+
+    // Latency instrumentation of rule callbacks (disabled by default). Percentiles are aggregated per limit name,
+    // latencyPerProjection additionally logs count/avg/max of each projection row. Stats are logged every
+    // latencyReportInterval milliseconds:
+    //       latencyInstrumentation = true
+    //       latencyPerProjection = false
+    //       latencyReportInterval = 60000
+    private boolean latencyInstrumentation;
+    private boolean latencyPerProjection;
+    private long latencyReportInterval = 60000;
+    private final Map<String, RuleLatencyStats> latencyStatsByLimit = new HashMap<>();
+    private final List<RuleLatencyStats> latencyStats = new ArrayList<>();
+    private boolean latencyReportScheduled;
+
+    // Compact mode keeps MaxQuantity limits of all projection rows in a single primitive table, rows are represented
+    // by minimal rule handles that are not latency instrumented (for projections with very large number of rows, e.g. Trader/Symbol):
+    //       compactLimits = true
+    private boolean compactLimits;
+    private final QuantityLimitTable quantityLimits = new QuantityLimitTable();
+
+    // Fused mode evaluates MaxQuantity, MaxPosition and (REALIZED) MaxLoss limits of a projection row by single rule.
+    // Takes precedence over compact mode for MaxQuantity:
+    //       fusedLimits = true
+    private boolean fusedLimits;
+    private final Map<String, FusedRuleReference> fusedRules = new HashMap<>(); // incomplete fused rules by projection row
+    private final ReferenceQueue<FusedSampleRiskRule> droppedFusedRules = new ReferenceQueue<>();
+
+    // Active orders of OMS grouped by projection row: rules that go live together rebuild active orders in a single pass
+    private final WarmStartIndex warmStartIndex = new WarmStartIndex();
+
+    // Sliding window of MaxOrdersPerSecond/MaxMessagesPerSecond limits (milliseconds) and its precision (number of buckets).
+    // Window must be a multiple of bucket count:
+    //       rateWindow = 1000
+    //       rateBuckets = 10
+    private long rateWindow = 1000;
+    private int rateBuckets = 10;
+
+    // Rolling window of MaxOrderToTradeRatio limit (milliseconds), its precision (number of buckets) and
+    // number of orders in the window before ratio is enforced. Counters are also reset daily at marketClosingTime:
+    //       otrWindow = 86400000
+    //       otrBuckets = 96
+    //       otrMinOrders = 100
+    private long otrWindow = 24 * 60 * 60 * 1000;
+    private int otrBuckets = 96;
+    private long otrMinOrders = 100;
+
+    // OTR counters and used credit of MaxCredit rules are reset daily at marketClosingTime (see SessionResettable)
+    private final List<WeakReference<SessionResettable>> sessionRules = new ArrayList<>(); // rules dropped by server are pruned on reset
+    private boolean sessionResetScheduled;
+    private boolean sessionResetWarned;
+
+    // MaxPriceDeviation is expressed in ticks for these instrument types (in percent for others).
+    // Optionally orders are rejected when bid/ask did not change for priceBandMaxAge milliseconds (disabled by default).
+    // Prices of MaxPriceDeviation rules are then sampled by timer every priceBandMaxAge / 4 milliseconds:
+    //       priceBandTicks = [FUTURE, OPTION]
+    //       priceBandMaxAge = 5000
+    private final Set<InstrumentType> priceBandTicks = EnumSet.noneOf(InstrumentType.class);
+    private long priceBandMaxAge = 0;
+    private final List<WeakReference<SamplePriceBandRiskRule>> priceBandRules = new ArrayList<>(); // rules dropped by server are pruned on sampling
+    private boolean priceSamplingScheduled;
+
+    // Periodic checkpoint of rule state (OTR counters, used credit, marked-to-market P&L) into memory-mapped
+    // file under ember home (disabled by default). On restart rules restore from the latest checkpoint and apply
+    // only journal messages that follow it (by message count of each rule). Each checkpoint serializes all rules on
+    // OMS thread (roughly 50-100 ns per rule), so keep the interval long for projections with millions of rows:
+    //       checkpointInterval = 10000
+    //       checkpointSize = 16777216
+    //       checkpointFile = "risk-checkpoint.dat"
+    private long checkpointInterval;
+    private int checkpointSize = 16 * 1024 * 1024;
+    private String checkpointFile = "risk-checkpoint.dat";
+    private RuleCheckpoint checkpoint;
+
     public void setMarketClosingTime(String marketClosingTime) {
         this.marketClosingTime = marketClosingTime;
     }
@@ -45,6 +160,82 @@ public class SampleQuantityRiskRuleFactory implements CustomRiskRuleFactory
         this.timeZone = timeZone;
     }
 
+    public void setMassCancelDestinations(List<String> massCancelDestinations) {
+        this.massCancelDestinations = new long[massCancelDestinations.size()];
+        for (int i = 0; i < massCancelDestinations.size(); i++)
+            this.massCancelDestinations[i] = AlphanumericCodec.encode(massCancelDestinations.get(i));
+    }
+
+    public void setMaxLossMode(String maxLossMode) {
+        this.maxLossMode = SamplePnLRiskRule.LossMode.valueOf(maxLossMode);
+    }
+
+    public void setMarkToMarketInterval(long markToMarketInterval) {
+        this.markToMarketInterval = markToMarketInterval;
+    }
+
+    public void setCompactLimits(boolean compactLimits) {
+        this.compactLimits = compactLimits;
+    }
+
+    public void setFusedLimits(boolean fusedLimits) {
+        this.fusedLimits = fusedLimits;
+    }
+
+    public void setRateWindow(long rateWindow) {
+        this.rateWindow = rateWindow;
+    }
+
+    public void setRateBuckets(int rateBuckets) {
+        this.rateBuckets = rateBuckets;
+    }
+
+    public void setOtrWindow(long otrWindow) {
+        this.otrWindow = otrWindow;
+    }
+
+    public void setOtrBuckets(int otrBuckets) {
+        this.otrBuckets = otrBuckets;
+    }
+
+    public void setOtrMinOrders(long otrMinOrders) {
+        this.otrMinOrders = otrMinOrders;
+    }
+
+    public void setPriceBandTicks(List<String> priceBandTicks) {
+        this.priceBandTicks.clear();
+        for (int i = 0; i < priceBandTicks.size(); i++)
+            this.priceBandTicks.add(InstrumentType.valueOf(priceBandTicks.get(i)));
+    }
+
+    public void setPriceBandMaxAge(long priceBandMaxAge) {
+        this.priceBandMaxAge = priceBandMaxAge;
+    }
+
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public void setCheckpointSize(int checkpointSize) {
+        this.checkpointSize = checkpointSize;
+    }
+
+    public void setCheckpointFile(String checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public void setLatencyInstrumentation(boolean latencyInstrumentation) {
+        this.latencyInstrumentation = latencyInstrumentation;
+    }
+
+    public void setLatencyPerProjection(boolean latencyPerProjection) {
+        this.latencyPerProjection = latencyPerProjection;
+    }
+
+    public void setLatencyReportInterval(long latencyReportInterval) {
+        this.latencyReportInterval = latencyReportInterval;
+    }
+
     /**
      * @return Supported limit names
      */
@@ -63,21 +254,243 @@ public class SampleQuantityRiskRuleFactory implements CustomRiskRuleFactory
      */
     @Override
     public RiskRule create(String limitName, ProjectionPath path, RiskManagerContext context) {
+        RiskRule rule = createRule(limitName, path, context);
+        if (rule instanceof SampleRiskRule && ((SampleRiskRule) rule).isWarmStartRule())
+            ((SampleRiskRule) rule).setWarmStartIndex(warmStartIndex);
+        if (latencyInstrumentation && rule instanceof SampleRiskRule)
+            ((SampleRiskRule) rule).setLatencyStats(getLatencyStats(limitName, path, context));
+        if (checkpointInterval > 0 && rule instanceof Checkpointable)
+            getCheckpoint().register(path + "/" + limitName, (SampleRiskRule) rule, context);
+        return rule;
+    }
 
-        // Here we can use initialization parameters if we need to
-        //Calendar timerCalendar = Calendar.getInstance(TimeZone.getTimeZone(timeZone));
-        //long closingTimeOfDay = OrderAttributesParser.parseDuration(marketClosingTime);
+    private RiskRule createRule(String limitName, ProjectionPath path, RiskManagerContext context) {
+
+        if (fusedLimits && isFusable(limitName))
+            return createFusedRule(limitName, path);
 
         if (MaxQuantity.equals(limitName)) {
+            if (compactLimits)
+                return new CompactQuantityRiskRule(quantityLimits, path);
             return new SampleQuantityRiskRule();
         } else if (MaxPosition.equals(limitName)) {
             return new SamplePositionRiskRule();
         } else if (MaxLoss.equals(limitName)) {
-            return new SamplePnLRiskRule();
+            SamplePnLRiskRule rule = new SamplePnLRiskRule(massCancelDestinations);
+            rule.setMarkToMarketInterval(markToMarketInterval);
+            if (maxLossMode == SamplePnLRiskRule.LossMode.TOTAL) {
+                if (ProjectionPathUtil.isWildcard(ProjectionPathUtil.getValue(path, ProjectionKey.Symbol))) {
+                    LOGGER.warn().append("MaxLoss TOTAL mode requires projection keyed by Symbol, using REALIZED mode for ").append(path).commit();
+                } else {
+                    rule.setLossMode(maxLossMode);
+                    rule.setSymbol(registerPriceDrivenRule(rule, path, context));
+                }
+            }
+            return rule;
+        } else if (MaxOrdersPerSecond.equals(limitName) || MaxMessagesPerSecond.equals(limitName)) {
+            return new SampleRateRiskRule(limitName, rateWindow, rateBuckets);
+        } else if (MaxOrderToTradeRatio.equals(limitName)) {
+            SampleOrderToTradeRiskRule rule = new SampleOrderToTradeRiskRule(otrWindow, otrBuckets, otrMinOrders);
+            if (scheduleSessionReset(context))
+                sessionRules.add(new WeakReference<>(rule));
+            return rule;
+        } else if (MaxNotional.equals(limitName) || MaxOpenNotional.equals(limitName)) {
+            SampleNotionalRiskRule rule = new SampleNotionalRiskRule(limitName);
+            String symbol = ProjectionPathUtil.getValue(path, ProjectionKey.Symbol);
+            if ( ! ProjectionPathUtil.isWildcard(symbol))
+                rule.setSymbol(symbol);
+            return rule;
+        } else if (MaxCredit.equals(limitName)) {
+            SampleCreditRiskRule rule = new SampleCreditRiskRule();
+            String symbol = ProjectionPathUtil.getValue(path, ProjectionKey.Symbol);
+            if ( ! ProjectionPathUtil.isWildcard(symbol))
+                rule.setSymbol(symbol);
+            if (scheduleSessionReset(context))
+                sessionRules.add(new WeakReference<>(rule));
+            return rule;
+        } else if (MaxPriceDeviation.equals(limitName)) {
+            SamplePriceBandRiskRule rule = new SamplePriceBandRiskRule(priceBandTicks, priceBandMaxAge);
+            rule.setSymbol(registerPriceDrivenRule(rule, path, context));
+            if (priceBandMaxAge > 0) {
+                schedulePriceSampling(context);
+                priceBandRules.add(new WeakReference<>(rule));
+            }
+            return rule;
         }
         throw new IllegalArgumentException("Unknown risk limit: " + limitName);
     }
 
+    /**
+     * Resets session state (OTR counters, used credit) of all projections at market closing time every day (scheduled once)
+     * @return false if marketClosingTime is not configured (OTR counters are only limited by the rolling window, used credit only grows)
+     */
+    private boolean scheduleSessionReset(RiskManagerContext context) {
+        if (sessionResetScheduled)
+            return true;
+
+        if (marketClosingTime == null) {
+            if ( ! sessionResetWarned) {
+                LOGGER.warn("marketClosingTime is not configured: MaxOrderToTradeRatio counters and MaxCredit usage will not be reset on session boundary");
+                sessionResetWarned = true;
+            }
+            return false;
+        }
+
+        final LocalTime closingTime = LocalTime.parse(marketClosingTime);
+        final ZoneId zone = (timeZone != null) ? ZoneId.of(timeZone) : ZoneId.systemDefault();
+        TimerCallback<List<WeakReference<SessionResettable>>> sessionReset = (now, rules) -> {
+            int live = 0;
+            for (int i = 0; i < rules.size(); i++) {
+                SessionResettable rule = rules.get(i).get();
+                if (rule != null) {
+                    rule.resetSession();
+                    rules.set(live++, rules.get(i));
+                }
+            }
+            rules.subList(live, rules.size()).clear();
+            LOGGER.info().append("Session boundary: reset session state of ").append(live).append(" rules").commit();
+            return nextSessionBoundary(now, closingTime, zone);
+        };
+        context.getTimer().schedule(nextSessionBoundary(context.getClock().time(), closingTime, zone), sessionReset, sessionRules);
+        sessionResetScheduled = true;
+        return true;
+    }
+
+    /** Samples market prices of MaxPriceDeviation rules every priceBandMaxAge / 4 milliseconds (scheduled once) */
+    private void schedulePriceSampling(RiskManagerContext context) {
+        if (priceSamplingScheduled)
+            return;
+
+        final long interval = Math.max(1, priceBandMaxAge / 4);
+        TimerCallback<List<WeakReference<SamplePriceBandRiskRule>>> sampling = (now, rules) -> {
+            int live = 0;
+            for (int i = 0; i < rules.size(); i++) {
+                SamplePriceBandRiskRule rule = rules.get(i).get();
+                if (rule != null) {
+                    rule.samplePrices(now);
+                    rules.set(live++, rules.get(i));
+                }
+            }
+            rules.subList(live, rules.size()).clear();
+            return now + interval;
+        };
+        context.getTimer().schedule(context.getClock().time() + interval, sampling, priceBandRules);
+        priceSamplingScheduled = true;
+    }
+
+    /** @return next occurrence of given time of day (strictly after given time) */
+    static long nextSessionBoundary(long now, LocalTime closingTime, ZoneId zone) {
+        ZonedDateTime boundary = Instant.ofEpochMilli(now).atZone(zone).with(closingTime);
+        if (boundary.toInstant().toEpochMilli() <= now)
+            boundary = boundary.plusDays(1).with(closingTime);
+        return boundary.toInstant().toEpochMilli();
+    }
+
+    private boolean isFusable(String limitName) {
+        return MaxQuantity.equals(limitName) || MaxPosition.equals(limitName) ||
+                (MaxLoss.equals(limitName) && maxLossMode == SamplePnLRiskRule.LossMode.REALIZED);
+    }
+
+    /**
+     * Fused rule already created for another limit of the same projection row (if any) evaluates this limit too,
+     * and the limit itself gets a no-op alias. Rows are looked up by projection path, so limits of a row may be
+     * created in any order. Rule is forgotten once all fusable limits of its row are created. Rows may configure only
+     * some of the limits, so incomplete rules are referenced weakly and forgotten once server drops them.
+     */
+    private SampleRiskRule createFusedRule(String limitName, ProjectionPath path) {
+        pruneDroppedFusedRules();
+
+        final String rowKey = path.toString();
+        final FusedRuleReference reference = fusedRules.get(rowKey);
+        FusedSampleRiskRule rule = (reference != null) ? reference.get() : null;
+        SampleRiskRule result;
+        if (rule != null && ! rule.isEnabled(limitName)) {
+            rule.enable(limitName);
+            result = new FusedSampleRiskRule.Alias(limitName, rule);
+        } else {
+            rule = new FusedSampleRiskRule(massCancelDestinations);
+            rule.enable(limitName);
+            result = rule;
+        }
+        if (MaxLoss.equals(limitName))
+            rule.setWarmStartIndex(warmStartIndex); // only MaxLoss tracks active orders
+
+        if (isFusionComplete(rule))
+            fusedRules.remove(rowKey);
+        else if (reference == null || reference.get() != rule)
+            fusedRules.put(rowKey, new FusedRuleReference(rowKey, rule, droppedFusedRules));
+        return result;
+    }
+
+    private void pruneDroppedFusedRules() {
+        FusedRuleReference reference;
+        while ((reference = (FusedRuleReference) droppedFusedRules.poll()) != null)
+            fusedRules.remove(reference.rowKey, reference); // row may already refer to a newer rule
+    }
+
+    private static final class FusedRuleReference extends WeakReference<FusedSampleRiskRule> {
+        final String rowKey;
+
+        FusedRuleReference(String rowKey, FusedSampleRiskRule rule, ReferenceQueue<FusedSampleRiskRule> queue) {
+            super(rule, queue);
+            this.rowKey = rowKey;
+        }
+    }
+
+    private boolean isFusionComplete(FusedSampleRiskRule rule) {
+        return rule.isEnabled(MaxQuantity) && rule.isEnabled(MaxPosition) && (rule.isEnabled(MaxLoss) || ! isFusable(MaxLoss));
+    }
+
+    private RuleCheckpoint getCheckpoint() {
+        if (checkpoint == null)
+            checkpoint = new RuleCheckpoint(Paths.get(System.getProperty("ember.home", "."), checkpointFile), checkpointSize, checkpointInterval);
+        return checkpoint;
+    }
+
+    private RuleLatencyStats getLatencyStats(String limitName, ProjectionPath path, RiskManagerContext context) {
+        if ( ! latencyReportScheduled) {
+            TimerCallback<List<RuleLatencyStats>> reporter = (now, stats) -> {
+                for (int i = 0; i < stats.size(); i++)
+                    stats.get(i).report(LOGGER);
+                return now + latencyReportInterval;
+            };
+            context.getTimer().schedule(context.getClock().time() + latencyReportInterval, reporter, latencyStats);
+            latencyReportScheduled = true;
+        }
+
+        RuleLatencyStats limitStats = latencyStatsByLimit.computeIfAbsent(limitName, name -> {
+            RuleLatencyStats result = new RuleLatencyStats(name);
+            latencyStats.add(result);
+            return result;
+        });
+        if (latencyPerProjection) {
+            RuleLatencyStats result = new RuleLatencyStats(limitName + " @ " + path, limitStats);
+            latencyStats.add(result);
+            return result;
+        }
+        return limitStats;
+    }
+
+    /**
+     * Registers rule in symbol reverse index, so that instrument updates reach only rules that depend on them
+     * @return symbol of rule projection (null if projection is not keyed by symbol)
+     */
+    private String registerPriceDrivenRule(PriceDrivenRule rule, ProjectionPath path, RiskManagerContext context) {
+        if ( ! symbolRuleIndexRegistered) {
+            context.addInstrumentUpdateListener(symbolRuleIndex);
+            symbolRuleIndexRegistered = true;
+        }
+
+        String symbol = ProjectionPathUtil.getValue(path, ProjectionKey.Symbol);
+        String rootSymbol = ProjectionPathUtil.getValue(path, ProjectionKey.RootSymbol);
+        if (rootSymbol != null && ProjectionPathUtil.isWildcard(symbol)) {
+            symbolRuleIndex.registerRootSymbol(rootSymbol, rule);
+        } else {
+            symbolRuleIndex.registerSymbol(symbol, rule);
+        }
+        return ProjectionPathUtil.isWildcard(symbol) ? null : symbol;
+    }
+
     /**
      * @param limitName Name of the limit handled by this factory
      * @return RiskLimitDefinition of the limit specified by limitName parameter
@@ -91,7 +504,21 @@ public class SampleQuantityRiskRuleFactory implements CustomRiskRuleFactory
         } else if (MaxPosition.equals(limitName)) {
             return new RiskLimitDefinition(MaxPosition, RiskLimitDefinition.ValueType.DOUBLE, SampleQuantityRiskRule.class, "Maximum Symbol Position", this, null, "Limits LONG and SHORT position");
         } else if (MaxLoss.equals(limitName)) {
-            return new RiskLimitDefinition(MaxLoss, RiskLimitDefinition.ValueType.DOUBLE, SamplePnLRiskRule.class, "Maximum Loss", this, null, "Limits realized loss");
+            return new RiskLimitDefinition(MaxLoss, RiskLimitDefinition.ValueType.DOUBLE, SamplePnLRiskRule.class, "Maximum Loss", this, null, "Limits realized (or total, when marked to market) loss");
+        } else if (MaxOrderToTradeRatio.equals(limitName)) {
+            return new RiskLimitDefinition(MaxOrderToTradeRatio, RiskLimitDefinition.ValueType.DOUBLE, SampleOrderToTradeRiskRule.class, "Maximum Order to Trade Ratio", this, null, "Limits ratio of order messages to fills");
+        } else if (MaxNotional.equals(limitName)) {
+            return new RiskLimitDefinition(MaxNotional, RiskLimitDefinition.ValueType.DOUBLE, SampleNotionalRiskRule.class, "Maximum Order Notional", this, null, "Limits quantity * price of an order");
+        } else if (MaxOpenNotional.equals(limitName)) {
+            return new RiskLimitDefinition(MaxOpenNotional, RiskLimitDefinition.ValueType.DOUBLE, SampleNotionalRiskRule.class, "Maximum Open Notional", this, null, "Limits total notional of active orders");
+        } else if (MaxCredit.equals(limitName)) {
+            return new RiskLimitDefinition(MaxCredit, RiskLimitDefinition.ValueType.DOUBLE, SampleCreditRiskRule.class, "Maximum Credit", this, null, "Limits traded notional plus notional reserved by active orders");
+        } else if (MaxPriceDeviation.equals(limitName)) {
+            return new RiskLimitDefinition(MaxPriceDeviation, RiskLimitDefinition.ValueType.DOUBLE, SamplePriceBandRiskRule.class, "Maximum Price Deviation", this, null, "Limits deviation of limit price from market (percent or ticks)");
+        } else if (MaxOrdersPerSecond.equals(limitName)) {
+            return new RiskLimitDefinition(MaxOrdersPerSecond, RiskLimitDefinition.ValueType.INT, SampleRateRiskRule.class, "Maximum Orders per Second", this, null, "Limits rate of new orders");
+        } else if (MaxMessagesPerSecond.equals(limitName)) {
+            return new RiskLimitDefinition(MaxMessagesPerSecond, RiskLimitDefinition.ValueType.INT, SampleRateRiskRule.class, "Maximum Messages per Second", this, null, "Limits rate of new, replace and cancel requests");
         }
         throw new IllegalArgumentException("Unknown risk limit: " + limitName);
     }
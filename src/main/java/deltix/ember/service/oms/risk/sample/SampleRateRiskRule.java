@@ -0,0 +1,127 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.OrderEvent;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderPendingCancelEvent;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Sample order rate RiskRule implementation (throughput protection).
+ *
+ * MaxOrdersPerSecond counts new order requests, MaxMessagesPerSecond counts new, replace and cancel requests
+ * of the projection over sliding window (one second by default, see factory settings). Requests that would exceed
+ * the limit are rejected and are not counted. Cancel requests do not reach risk rules: they are counted when OMS
+ * reports pending cancel and are never rejected (but consume the budget of subsequent requests).
+ *
+ * Limit is expressed per second: window of W milliseconds admits limit * W / 1000 requests.
+ * Counters are not restored on restart (nor from warm-up replay): window is short and refills from live traffic.
+ */
+public class SampleRateRiskRule extends SampleRiskRule {
+
+    public static final String MaxOrdersPerSecond = "MaxOrdersPerSecond";
+    public static final String MaxMessagesPerSecond = "MaxMessagesPerSecond";
+
+    private final String limitName;
+    private final boolean countAllMessages;
+    private final SlidingWindowCounter counter;
+    private final String breachInfix;
+
+    private long maxCount = -1; // negative if unlimited
+    private RiskManagerContext context;
+
+    public SampleRateRiskRule(String limitName) {
+        this(limitName, 1000, 10);
+    }
+
+    /**
+     * @param limitName {@link #MaxOrdersPerSecond} or {@link #MaxMessagesPerSecond}
+     * @param window sliding window length in milliseconds
+     * @param bucketCount window precision (number of buckets)
+     */
+    public SampleRateRiskRule(String limitName, long window, int bucketCount) {
+        super("Order Rate");
+        if ( ! MaxOrdersPerSecond.equals(limitName) && ! MaxMessagesPerSecond.equals(limitName))
+            throw new IllegalArgumentException("Unknown risk limit: " + limitName);
+
+        this.limitName = limitName;
+        this.countAllMessages = MaxMessagesPerSecond.equals(limitName);
+        this.counter = new SlidingWindowCounter(window, bucketCount);
+        this.breachInfix = " per " + window + " ms reached maximum ";
+    }
+
+    @Override
+    public void setLimits(RiskLimits riskLimits) {
+        setMaxRate((riskLimits == null) ? -1 : riskLimits.getIntLimit(limitName, -1));
+    }
+
+    @Override
+    public Object getCurrentValue(String limitName) {
+        return (context == null) ? null : Decimal64Utils.fromLong(counter.count(context.getClock().time()));
+    }
+
+    /**
+     * @param maxRate maximum number of requests per second, negative if unlimited. Allowed count per window is rounded up,
+     *                so that a positive rate never blocks all requests of a short window
+     */
+    public void setMaxRate(long maxRate) {
+        this.maxCount = (maxRate >= 0) ? (maxRate * counter.getWindow() + 999) / 1000 : -1;
+    }
+
+    @Override
+    public void onLive(RiskManagerContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Process new order submission request before it goes to destination venue
+     * @param order order state
+     * @param request original order submission request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        checkRate(observer);
+    }
+
+    /**
+     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * @param order current state of the order that will be modified
+     * @param request cancel/replace request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        if (countAllMessages)
+            checkRate(observer);
+    }
+
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    @Override
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (countAllMessages && observer != null && maxCount >= 0 && event instanceof OrderPendingCancelEvent)
+            counter.increment(context.getClock().time());
+    }
+
+    private void checkRate(@Nullable RiskObserver observer) {
+        if (observer == null || maxCount < 0)
+            return;
+
+        final long now = context.getClock().time();
+        if ( ! counter.tryIncrement(now, maxCount)) {
+            observer.onBreach(getProjectionPath(), limitName, 0,
+                    getBreachReason().set("Request rate ", Decimal64Utils.fromLong(counter.count(now)), breachInfix, Decimal64Utils.fromLong(maxCount)));
+        }
+    }
+}
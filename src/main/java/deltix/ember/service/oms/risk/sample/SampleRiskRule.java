@@ -0,0 +1,244 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.gflog.api.Log;
+import com.epam.deltix.gflog.api.LogFactory;
+import deltix.ember.message.trade.OrderEvent;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.position.ProjectionPath;
+import deltix.ember.service.oms.risk.api.AbstractRiskRule;
+import deltix.ember.service.oms.risk.api.RiskManagerContext;
+import deltix.ember.service.oms.risk.api.RiskObserver;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
+
+/**
+ * Base class of sample risk rules.
+ *
+ * When factory enables latency instrumentation, every callback is timed and recorded into {@link RuleLatencyStats}.
+ * Disabled instrumentation costs a single (well predicted) null check per callback.
+ * Subclasses implement handleXXX() methods instead of RiskRule callbacks. RiskRule callbacks remain overridable
+ * (existing subclasses of sample rules keep compiling), but overrides must call super: it maintains instrumentation,
+ * checkpoint position and warm start bookkeeping, and invokes handleXXX().
+ *
+ * Rules report breaches with {@link #getBreachReason()}: reject text is rendered only if observer reads it.
+ *
+ * Rules that track active orders may rebuild them in onLive() using {@link #iterateActiveOrders} (warm start)
+ * instead of replaying every journaled order event during warm-up. Factory shares single pass over active orders
+ * of OMS among such rules (see {@link WarmStartIndex}).
+ *
+ * When rule state is checkpointed (see {@link RuleCheckpoint}) rule counts messages it receives: message count is
+ * position of the rule in the journal, which (unlike message timestamps) is the same during warm-up replay.
+ * Restored rule skips the first N replayed messages already reflected in checkpoint (see {@link #isCheckpointed}).
+ */
+public abstract class SampleRiskRule extends AbstractRiskRule {
+    private static final Log LOGGER = LogFactory.getLog(SampleRiskRule.class);
+
+    private static final int NEW_ORDER_REQUEST = 1;
+    private static final int REPLACE_ORDER_REQUEST = 2;
+    private static final int ORDER_EVENT = 3;
+
+    private RuleLatencyStats latencyStats; // null unless instrumentation is enabled
+    private BreachReason breachReason; // created on first breach
+    private ProjectionOrderFilter orderFilter; // created on first use
+    private WarmStartIndex warmStart; // set by factory until rule takes its active orders
+    private long warmStartTicket;
+
+    // journal position (maintained only when rule state is checkpointed)
+    private boolean positionTracking;
+    private long messageCount; // messages received by this rule
+    private long lastMessageHash; // hash of the last received message
+    private boolean checkpointRestored; // state was restored from checkpoint
+    private long checkpointMessageCount; // messages reflected in restored checkpoint
+    private long checkpointMessageHash;
+
+    protected SampleRiskRule(String name) {
+        super(name);
+    }
+
+    void setLatencyStats(RuleLatencyStats latencyStats) {
+        this.latencyStats = latencyStats;
+    }
+
+    /** @return reusable reason of this rule breaches (valid until the next breach) */
+    protected BreachReason getBreachReason() {
+        if (breachReason == null)
+            breachReason = new BreachReason();
+        return breachReason;
+    }
+
+    /** Called by factory: {@link #iterateActiveOrders} will take orders of this row from index shared by all rows */
+    void setWarmStartIndex(WarmStartIndex warmStart) {
+        this.warmStart = warmStart;
+        this.warmStartTicket = warmStart.register();
+    }
+
+    /** @return true if rule rebuilds active orders in onLive() using {@link #iterateActiveOrders} */
+    protected boolean isWarmStartRule() {
+        return false;
+    }
+
+    /** Called by {@link RuleCheckpoint} when rule is registered for checkpoints (before warm-up) */
+    void enablePositionTracking() {
+        positionTracking = true;
+    }
+
+    /** @return number of messages received by this rule (position in the journal) */
+    long getMessageCount() {
+        return messageCount;
+    }
+
+    long getLastMessageHash() {
+        return lastMessageHash;
+    }
+
+    /**
+     * Called by {@link RuleCheckpoint} when rule state is restored
+     * @param messageCount number of messages reflected in restored state
+     * @param lastMessageHash hash of the last of them (to verify that replayed journal matches checkpoint)
+     */
+    void setCheckpointPosition(long messageCount, long lastMessageHash) {
+        this.checkpointRestored = true;
+        this.checkpointMessageCount = messageCount;
+        this.checkpointMessageHash = lastMessageHash;
+    }
+
+    /**
+     * @return true if message replayed during warm-up is already reflected in restored checkpoint
+     * (always false unless rule state was actually restored from checkpoint)
+     */
+    protected final boolean isCheckpointed(@Nullable RiskObserver observer) {
+        return observer == null && checkpointRestored && messageCount <= checkpointMessageCount;
+    }
+
+    /**
+     * @return true if active orders of this projection row can be rebuilt by {@link #iterateActiveOrders} when rule
+     * goes live, so that warm-up replay may skip per-order bookkeeping
+     */
+    protected final boolean isWarmStartSupported() {
+        return getOrderFilter().isSupported();
+    }
+
+    /** Visits active orders of this projection row (taken from factory's {@link WarmStartIndex} when available) */
+    protected final <Cookie> void iterateActiveOrders(RiskManagerContext context, BiConsumer<RiskOrder, Cookie> visitor, Cookie cookie) {
+        final ProjectionOrderFilter filter = getOrderFilter();
+        final WarmStartIndex index = warmStart;
+        if (index != null && filter.isSupported()) {
+            warmStart = null;
+            index.iterate(warmStartTicket, filter, context, visitor, cookie);
+            return;
+        }
+
+        context.iterateActiveOrders((order, c) -> {
+            if (filter.matches(order))
+                visitor.accept(order, c);
+            return true;
+        }, cookie);
+    }
+
+    private ProjectionOrderFilter getOrderFilter() {
+        if (orderFilter == null) {
+            ProjectionPath path = getProjectionPath();
+            orderFilter = (path != null) ? new ProjectionOrderFilter(path) : ProjectionOrderFilter.UNSUPPORTED;
+        }
+        return orderFilter;
+    }
+
+    @Override
+    public void onNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+        if (positionTracking)
+            trackMessage(hash(NEW_ORDER_REQUEST, request.getTimestamp(), request.getSourceId(), request.getOrderId(), request.getQuantity()));
+        if (warmStart != null)
+            warmStart.invalidate(); // active orders of this row change before rule goes live
+
+        final RuleLatencyStats stats = latencyStats;
+        if (stats == null) {
+            handleNewOrderRequest(order, request, observer);
+        } else {
+            final long start = System.nanoTime();
+            handleNewOrderRequest(order, request, observer);
+            stats.recordNewOrderRequest(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void onReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+        if (positionTracking)
+            trackMessage(hash(REPLACE_ORDER_REQUEST, request.getTimestamp(), request.getSourceId(), request.getOrderId(), request.getQuantity()));
+        if (warmStart != null)
+            warmStart.invalidate(); // active orders of this row change before rule goes live
+
+        final RuleLatencyStats stats = latencyStats;
+        if (stats == null) {
+            handleReplaceOrderRequest(order, request, observer);
+        } else {
+            final long start = System.nanoTime();
+            handleReplaceOrderRequest(order, request, observer);
+            stats.recordReplaceOrderRequest(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void onOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+        if (positionTracking)
+            trackMessage(hash(ORDER_EVENT, event.getTimestamp(), order.getSourceId(), event.getOrderId(), order.getCumulativeQuantity()));
+        if (warmStart != null)
+            warmStart.invalidate(); // active orders of this row change before rule goes live
+
+        final RuleLatencyStats stats = latencyStats;
+        if (stats == null) {
+            handleOrderEvent(order, event, previousState, observer);
+        } else {
+            final long start = System.nanoTime();
+            handleOrderEvent(order, event, previousState, observer);
+            stats.recordOrderEvent(System.nanoTime() - start);
+        }
+    }
+
+    private void trackMessage(long hash) {
+        messageCount++;
+        lastMessageHash = hash;
+        if (messageCount == checkpointMessageCount && hash != checkpointMessageHash)
+            LOGGER.warn().append("Journal does not match risk checkpoint of ").append(getProjectionPath()).append(" at message ").append(messageCount).commit();
+    }
+
+    private static long hash(int type, long timestamp, long sourceId, CharSequence orderId, long quantity) {
+        long hash = 31L * type + timestamp;
+        hash = 31 * hash + sourceId;
+        for (int i = 0; i < orderId.length(); i++)
+            hash = 31 * hash + orderId.charAt(i);
+        return 31 * hash + quantity;
+    }
+
+    /**
+     * Process new order submission request before it goes to destination venue
+     * @param order order state
+     * @param request original order submission request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    protected void handleNewOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderNewRequest request, @Nullable RiskObserver observer) {
+    }
+
+    /**
+     * Process order replacement (cancel/replace) request before it goes out to destination venue
+     * @param order current state of the order that will be modified
+     * @param request cancel/replace request
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    protected void handleReplaceOrderRequest(@Nonnull RiskOrder order, @Nonnull OrderReplaceRequest request, @Nullable RiskObserver observer) {
+    }
+
+    /**
+     * Process order state event after it was processed by OMS
+     * @param order current state of the order (the event already applied)
+     * @param event event that needs to be processed
+     * @param previousState order state prior to this event
+     * @param observer veto/halt callback. Will be <code>NULL</code> during warm-up mode.
+     */
+    protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+    }
+}
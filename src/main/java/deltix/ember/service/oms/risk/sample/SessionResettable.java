@@ -0,0 +1,11 @@
+package deltix.ember.service.oms.risk.sample;
+
+/**
+ * Risk rule which state accumulated during trading session is cleared at session boundary (daily at marketClosingTime,
+ * see {@link SampleQuantityRiskRuleFactory}). Factory holds rules weakly, rules dropped by server are pruned on reset.
+ */
+public interface SessionResettable {
+
+    /** Clears session state. Called from OMS thread */
+    void resetSession();
+}
@@ -0,0 +1,116 @@
+package deltix.ember.service.oms.risk.sample;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Number of events over sliding time window, approximated by a ring of fixed-width buckets.
+ *
+ * Window of W milliseconds is split into N buckets of W/N milliseconds each. Events older than the window
+ * expire a bucket at a time, so the count may include events up to W/N milliseconds older than the window.
+ * Both update and query are O(1) amortized (each bucket is cleared at most once per its lifetime) and garbage free.
+ *
+ * Time is supplied by the caller (e.g. RiskManagerContext.getClock()). Time going backwards is treated as current bucket.
+ * This class is not thread-safe.
+ */
+public final class SlidingWindowCounter {
+
+    private final int[] counts;
+    private final long bucketWidth;
+    private long currentBucket = Long.MIN_VALUE;
+    private int currentIndex;
+    private long total;
+
+    /**
+     * @param window window length in milliseconds
+     * @param bucketCount number of buckets (window precision)
+     */
+    public SlidingWindowCounter(long window, int bucketCount) {
+        if (bucketCount < 1)
+            throw new IllegalArgumentException("Bucket count must be positive: " + bucketCount);
+        if (window < bucketCount || window % bucketCount != 0)
+            throw new IllegalArgumentException("Window " + window + " must be a multiple of bucket count " + bucketCount);
+
+        this.counts = new int[bucketCount];
+        this.bucketWidth = window / bucketCount;
+    }
+
+    public long getWindow() {
+        return bucketWidth * counts.length;
+    }
+
+    /** @return number of events in the window that ends at given time */
+    public long count(long now) {
+        advance(now);
+        return total;
+    }
+
+    /** Records one event at given time */
+    public void increment(long now) {
+        advance(now);
+        counts[currentIndex]++;
+        total++;
+    }
+
+    /**
+     * Records one event at given time unless the window already contains maxCount events
+     * @return false if event was not recorded
+     */
+    public boolean tryIncrement(long now, long maxCount) {
+        advance(now);
+        if (total >= maxCount)
+            return false;
+
+        counts[currentIndex]++;
+        total++;
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = 0;
+        total = 0;
+        currentBucket = Long.MIN_VALUE;
+    }
+
+    /** Writes counter state (see {@link #read(ByteBuffer)}) */
+    public void write(ByteBuffer buffer) {
+        buffer.putLong(bucketWidth).putInt(counts.length).putLong(currentBucket).putInt(currentIndex).putLong(total);
+        for (int i = 0; i < counts.length; i++)
+            buffer.putInt(counts[i]);
+    }
+
+    /** Restores counter state written by {@link #write(ByteBuffer)}. State of differently configured counter is discarded */
+    public void read(ByteBuffer buffer) {
+        long bucketWidth = buffer.getLong();
+        int bucketCount = buffer.getInt();
+        if (bucketWidth != this.bucketWidth || bucketCount != counts.length) {
+            buffer.position(buffer.position() + 8 + 4 + 8 + 4 * bucketCount);
+            clear();
+            return;
+        }
+
+        currentBucket = buffer.getLong();
+        currentIndex = buffer.getInt();
+        total = buffer.getLong();
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = buffer.getInt();
+    }
+
+    private void advance(long now) {
+        final long bucket = Math.floorDiv(now, bucketWidth);
+        if (bucket <= currentBucket)
+            return;
+
+        if (currentBucket == Long.MIN_VALUE || bucket - currentBucket >= counts.length) {
+            clear(); // whole window expired
+            currentIndex = (int) Math.floorMod(bucket, (long) counts.length);
+        } else {
+            for (long b = currentBucket + 1; b <= bucket; b++) {
+                currentIndex = (currentIndex + 1 == counts.length) ? 0 : currentIndex + 1;
+                total -= counts[currentIndex];
+                counts[currentIndex] = 0;
+            }
+        }
+        currentBucket = bucket;
+    }
+}
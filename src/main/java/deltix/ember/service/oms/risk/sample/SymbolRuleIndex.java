@@ -0,0 +1,107 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.smd.FutureUpdate;
+import deltix.ember.message.smd.InstrumentUpdate;
+import deltix.util.collections.CharSequenceToObjectMapQuick;
+
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Reverse index of price-driven rule instances keyed by symbol (or root symbol) of their projection.
+ *
+ * Single instance of this index is registered as instrument update listener by the factory.
+ * Each update is dispatched only to the rules of affected symbol (plus rules of projections that are not keyed by symbol),
+ * so the cost of an update does not depend on total number of projection rows.
+ *
+ * Risk manager does not notify rules when they are removed, so index references rules weakly:
+ * rules dropped by the server (e.g. deleted projection rows) are pruned by the next update of their symbol.
+ */
+public final class SymbolRuleIndex extends InstrumentUpdateAdapter {
+
+    private final CharSequenceToObjectMapQuick<Subscribers> symbolRules = new CharSequenceToObjectMapQuick<>();
+    private final CharSequenceToObjectMapQuick<Subscribers> rootSymbolRules = new CharSequenceToObjectMapQuick<>();
+    private final Subscribers anySymbolRules = new Subscribers();
+    private int size;
+
+    /** @param symbol instrument symbol of rule projection or null if projection is not keyed by symbol */
+    public void registerSymbol(@Nullable String symbol, PriceDrivenRule rule) {
+        register(symbolRules, symbol, rule);
+    }
+
+    /** @param rootSymbol root symbol of rule projection or null if projection is not keyed by root symbol */
+    public void registerRootSymbol(@Nullable String rootSymbol, PriceDrivenRule rule) {
+        register(rootSymbolRules, rootSymbol, rule);
+    }
+
+    /** @return total number of registered rules (including dropped rules that are not pruned yet) */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected void onInstrumentUpdate(InstrumentUpdate update) {
+        dispatch(symbolRules, update.getSymbol(), update);
+        size -= anySymbolRules.dispatch(update);
+    }
+
+    @Override
+    public void onFutureUpdate(FutureUpdate update) {
+        super.onFutureUpdate(update);
+        dispatch(rootSymbolRules, update.getRootSymbol(), update);
+    }
+
+    private void register(CharSequenceToObjectMapQuick<Subscribers> index, @Nullable String key, PriceDrivenRule rule) {
+        Subscribers subscribers;
+        if (ProjectionPathUtil.isWildcard(key)) {
+            subscribers = anySymbolRules;
+        } else {
+            subscribers = index.get(key, null);
+            if (subscribers == null) {
+                subscribers = new Subscribers();
+                index.put(key, subscribers);
+            }
+        }
+        subscribers.add(rule);
+        size++;
+    }
+
+    private void dispatch(CharSequenceToObjectMapQuick<Subscribers> index, @Nullable CharSequence key, InstrumentUpdate update) {
+        if (key != null) {
+            Subscribers subscribers = index.get(key, null);
+            if (subscribers != null)
+                size -= subscribers.dispatch(update);
+        }
+    }
+
+    private static final class Subscribers {
+        @SuppressWarnings("unchecked")
+        private WeakReference<PriceDrivenRule>[] rules = new WeakReference[4];
+        private int size;
+
+        void add(PriceDrivenRule rule) {
+            if (size == rules.length)
+                rules = Arrays.copyOf(rules, size << 1);
+            rules[size++] = new WeakReference<>(rule);
+        }
+
+        /** @return number of pruned (garbage collected) rules */
+        int dispatch(InstrumentUpdate update) {
+            int live = 0;
+            for (int i = 0; i < size; i++) {
+                PriceDrivenRule rule = rules[i].get();
+                if (rule != null) {
+                    rules[live++] = rules[i];
+                    rule.onPriceUpdate(update);
+                }
+            }
+            int pruned = size - live;
+            if (pruned != 0) {
+                Arrays.fill(rules, live, size, null);
+                size = live;
+            }
+            return pruned;
+        }
+    }
+}
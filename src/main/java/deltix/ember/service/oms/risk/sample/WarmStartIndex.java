@@ -0,0 +1,78 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.service.oms.risk.api.RiskManagerContext;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Active orders of OMS grouped by projection row, shared by warm start of all rules created by the factory.
+ *
+ * Each rule that rebuilds active orders in onLive() would otherwise scan all active orders of OMS,
+ * which is O(rules x orders) when all rules go live. Instead, the first rule that goes live scans active orders
+ * once and dispatches every order to rows of all known row patterns (see {@link ProjectionOrderFilter#getPattern()}),
+ * other rules take their orders by row key. New pattern (first rule of another projection) triggers one more scan.
+ *
+ * Index is valid while active orders of waiting rules do not change: any message received by a registered rule
+ * that did not go live yet {@link #invalidate() invalidates} it, rules registered after the scan trigger a new one.
+ * Index is released once all registered rules took their orders.
+ *
+ * This class is not thread-safe (risk rules are created and called from single OMS thread).
+ */
+final class WarmStartIndex {
+
+    private final Map<String, ProjectionOrderFilter> patterns = new HashMap<>();
+    private Map<String, List<RiskOrder>> ordersByRow; // null unless built
+    private long registrations;
+    private long indexedRegistrations; // rules registered before the index was built
+    private int waitingRules;
+    private int scans;
+
+    /** @return ticket of registered rule (passed back to {@link #iterate}) */
+    long register() {
+        waitingRules++;
+        return ++registrations;
+    }
+
+    /** Called when active orders may have changed */
+    void invalidate() {
+        ordersByRow = null;
+    }
+
+    /** @return number of scans over active orders of OMS (for tests) */
+    int getScans() {
+        return scans;
+    }
+
+    /** Visits active orders of the row given by filter, called once per registered rule */
+    <Cookie> void iterate(long ticket, ProjectionOrderFilter filter, RiskManagerContext context, BiConsumer<RiskOrder, Cookie> visitor, Cookie cookie) {
+        if (patterns.putIfAbsent(filter.getPattern(), filter) == null || ordersByRow == null || ticket > indexedRegistrations)
+            build(context);
+
+        final List<RiskOrder> orders = ordersByRow.get(filter.getRowKey());
+        if (orders != null) {
+            for (int i = 0; i < orders.size(); i++)
+                visitor.accept(orders.get(i), cookie);
+        }
+
+        if (--waitingRules == 0)
+            ordersByRow = null;
+    }
+
+    private void build(RiskManagerContext context) {
+        final Map<String, List<RiskOrder>> result = new HashMap<>();
+        context.iterateActiveOrders((order, rows) -> {
+            for (ProjectionOrderFilter pattern : patterns.values())
+                rows.computeIfAbsent(pattern.getRowKey(order), key -> new ArrayList<>()).add(order);
+            return true;
+        }, result);
+
+        ordersByRow = result;
+        indexedRegistrations = registrations;
+        scans++;
+    }
+}
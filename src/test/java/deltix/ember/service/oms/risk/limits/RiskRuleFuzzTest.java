@@ -0,0 +1,506 @@
+package deltix.ember.service.oms.risk.limits;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.position.ConstProjectionPath;
+import deltix.ember.service.oms.risk.api.RiskObserver;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.api.RiskRule;
+import deltix.ember.service.oms.util.FixedPositionView;
+
+import java.util.function.BiPredicate;
+
+import static org.junit.Assert.fail;
+
+/**
+ * RiskRuleTest that drives the rule by seeded random order lifecycles instead of hand-written scenarios.
+ *
+ * Each of {@link #SLOTS} slots holds one order that goes through NEW -&gt; (partial fill | REPLACE | cancel reject)* -&gt;
+ * complete fill, cancel or reject, across {@link #SYMBOLS} symbols. Rejects of the rule itself are part of the flow.
+ * Requests and events are preallocated and reused, so long runs are cheap enough for CI.
+ *
+ * Generator maintains simple reference model of the flow: position as OMS would report it (open sizes include pending
+ * requests, see {@link #getModelPosition()}), traded notional and number of active orders. After every step it checks
+ * that active orders of OMS cache agree with the model and calls {@link #checkInvariants()}. Every {@link #DRAIN_INTERVAL}
+ * steps all orders are closed and {@link #checkDrained()} is called.
+ *
+ * Run starts in warm-up mode, as after restart: the first steps are replayed with <code>NULL</code> observer (rule cannot
+ * reject them), then the rule goes live (onLive) while some orders are still active and the run continues live.
+ * Hooks are called only in live mode, starting right after the switch, so state rule restored from warm-up replay
+ * is verified against the model of the whole run. Tests must not call init(): fuzz() switches the rule live.
+ *
+ * Failure message includes seed and step, run fuzz() with the same seed to reproduce (-Dfuzz.seed, -Dfuzz.steps, -Dfuzz.warmup).
+ */
+public abstract class RiskRuleFuzzTest<R extends RiskRule> extends RiskRuleTestEx<R> {
+
+    protected static final int SLOTS = 32;
+    protected static final int SYMBOLS = 50;
+    protected static final int MAX_QUANTITY = 100;
+    protected static final int DRAIN_INTERVAL = 1000;
+
+    private static final long SOURCE_ID = AlphanumericCodec.encode("FUZZ");
+    private static final long DESTINATION_ID = AlphanumericCodec.encode("VENUE");
+
+    // slot states
+    private static final int FREE = 0;
+    private static final int NEW_SENT = 1;
+    private static final int OPEN = 2;
+    private static final int REPLACE_SENT = 3;
+
+    private final Slot[] slots = new Slot[SLOTS];
+    private final String[] symbols = new String[SYMBOLS];
+    private final ManualClock fuzzClock = new ManualClock(1_700_000_000_000L);
+
+    // reference model
+    private final FixedPositionView modelPosition = new FixedPositionView();
+    private long actualPosition;
+    private long openBuySize;
+    private long openSellSize;
+    private @Decimal long tradedNotional = Decimal64Utils.ZERO;
+    private int activeOrders;
+
+    // reusable events
+    private final MutableOrderNewEvent newEvent = new MutableOrderNewEvent();
+    private final MutableOrderRejectEvent rejectEvent = new MutableOrderRejectEvent();
+    private final MutableOrderCancelEvent cancelEvent = new MutableOrderCancelEvent();
+    private final MutableOrderReplaceEvent replaceEvent = new MutableOrderReplaceEvent();
+    private final MutableOrderCancelRejectEvent cancelRejectEvent = new MutableOrderCancelRejectEvent();
+    private final MutableOrderTradeReportEvent tradeEvent = new MutableOrderTradeReportEvent();
+    private final StringBuilder eventId = new StringBuilder(16);
+
+    private final DecisionObserver observer = new DecisionObserver();
+    private final BiPredicate<RiskOrder, RiskRuleFuzzTest<?>> cacheCounter = (order, test) -> {
+        test.cacheActiveOrders++;
+        return true;
+    };
+    private int cacheActiveOrders;
+
+    private long seed;
+    private long step;
+    private long random;
+    private long orderSequence;
+    private long eventSequence;
+
+    protected RiskRuleFuzzTest() {
+        clock = fuzzClock;
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbols[i] = "FZ" + i;
+            addInstrument(symbols[i], InstrumentType.EQUITY, 10 + i);
+        }
+        for (int i = 0; i < SLOTS; i++)
+            slots[i] = new Slot();
+    }
+
+    /// region Hooks
+
+    /** Called after every live step and when rule goes live: verify rule state against reference model */
+    protected void checkInvariants() {
+    }
+
+    /** Called after all orders were closed (in live mode) */
+    protected void checkDrained() {
+    }
+
+    /**
+     * Called after rule checked a request in live mode, model position already includes the request
+     * @param isBuy side of the order
+     * @param increase quantity that request adds to open size (zero or negative for replacement that does not increase the order)
+     * @param rejected true if rule rejected the request
+     */
+    protected void checkDecision(boolean isBuy, long increase, boolean rejected) {
+    }
+
+    /** @return position of generated orders as OMS would report it (open sizes include pending requests) */
+    protected FixedPositionView getModelPosition() {
+        return modelPosition;
+    }
+
+    protected long getActualPosition() {
+        return actualPosition;
+    }
+
+    protected long getOpenBuySize() {
+        return openBuySize;
+    }
+
+    protected long getOpenSellSize() {
+        return openSellSize;
+    }
+
+    /** @return sum of trade quantity * trade price of all fills */
+    protected @Decimal long getTradedNotional() {
+        return tradedNotional;
+    }
+
+    protected int getActiveOrderCount() {
+        return activeOrders;
+    }
+
+    /** Fails with seed and step of the run. Message is a constant to keep passing checks allocation free */
+    protected void assertInvariant(boolean condition, String message) {
+        if ( ! condition)
+            fail("Invariant violated (seed " + seed + ", step " + step + "): " + message);
+    }
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    /// endregion
+
+    /**
+     * Runs fuzz.steps (default 1000000) steps with fuzz.seed (default 42), the first fuzz.warmup steps (default quarter
+     * of the run, switched in the middle of drain interval) are replayed in warm-up mode
+     */
+    protected void fuzz() {
+        final int steps = Integer.getInteger("fuzz.steps", 1_000_000);
+        fuzz(Long.getLong("fuzz.seed", 42), steps, Integer.getInteger("fuzz.warmup", steps / 4 + DRAIN_INTERVAL / 2));
+    }
+
+    /** @param warmupSteps number of steps replayed before the rule goes live (zero to start live) */
+    protected void fuzz(long seed, int steps, int warmupSteps) {
+        if (isLive)
+            throw new IllegalStateException("Rule is already live: fuzz() switches it live after warm-up");
+
+        this.seed = seed;
+        this.random = (seed * 0x9E3779B97F4A7C15L) | 1; // xorshift state must not be zero
+
+        for (step = 0; step < steps; step++) {
+            if (step == warmupSteps)
+                goLive();
+
+            fuzzClock.time++;
+
+            Slot slot = slots[nextRandom(SLOTS)];
+            switch (slot.state) {
+                case FREE:
+                    placeOrder(slot);
+                    break;
+                case NEW_SENT:
+                    if (nextRandom(10) == 0)
+                        rejectOrder(slot);
+                    else
+                        confirmOrder(slot);
+                    break;
+                case OPEN:
+                    onOpenOrder(slot);
+                    break;
+                case REPLACE_SENT:
+                    if (nextRandom(5) == 0)
+                        rejectReplace(slot);
+                    else
+                        confirmReplace(slot);
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+            checkModel();
+            if (isLive)
+                checkInvariants();
+
+            if ((step + 1) % DRAIN_INTERVAL == 0) {
+                drain();
+                checkModel();
+                if (isLive)
+                    checkDrained();
+            }
+        }
+        if ( ! isLive)
+            goLive();
+    }
+
+    /** Ends warm-up: state rule restored from replay must agree with the model right away */
+    private void goLive() {
+        onLive(rule);
+        checkModel();
+        checkInvariants();
+    }
+
+    /// region Order lifecycle
+
+    /** Order in one of the slots */
+    private static final class Slot {
+        final MutableOrderNewRequest newRequest = new MutableOrderNewRequest();
+        final MutableOrderReplaceRequest replaceRequest = new MutableOrderReplaceRequest();
+        StringBuilder orderId = new StringBuilder(16);
+        StringBuilder replaceOrderId = new StringBuilder(16);
+
+        int state = FREE;
+        RiskOrder order;
+        Side side;
+        int symbol;
+        long quantity;
+        long cumQuantity;
+        @Decimal long price;
+        long pendingQuantity;
+        @Decimal long pendingPrice;
+
+        Slot() {
+            newRequest.setSourceId(SOURCE_ID);
+            newRequest.setDestinationId(DESTINATION_ID);
+            newRequest.setInstrumentType(InstrumentType.EQUITY);
+            newRequest.setOrderType(OrderType.LIMIT);
+            newRequest.setTimeInForce(TimeInForce.DAY);
+            replaceRequest.setSourceId(SOURCE_ID);
+            replaceRequest.setDestinationId(DESTINATION_ID);
+            replaceRequest.setInstrumentType(InstrumentType.EQUITY);
+            replaceRequest.setOrderType(OrderType.LIMIT);
+            replaceRequest.setTimeInForce(TimeInForce.DAY);
+        }
+    }
+
+    /** Partial fill, complete fill, cancel or replace */
+    private void onOpenOrder(Slot slot) {
+        final long remaining = slot.quantity - slot.cumQuantity;
+        final int action = nextRandom(100);
+        if (action < 30 && remaining > 1)
+            fillOrder(slot, 1 + nextRandom((int) remaining - 1));
+        else if (action < 45)
+            fillOrder(slot, remaining);
+        else if (action < 60)
+            cancelOrder(slot);
+        else
+            replaceOrder(slot);
+    }
+
+    private void placeOrder(Slot slot) {
+        int symbol = nextRandom(SYMBOLS);
+        slot.side = (nextRandom(2) == 0) ? Side.BUY : Side.SELL;
+        slot.symbol = symbol;
+        slot.quantity = 1 + nextRandom(MAX_QUANTITY);
+        slot.cumQuantity = 0;
+        slot.price = nextPrice(symbol);
+
+        MutableOrderNewRequest request = slot.newRequest;
+        request.setOrderId(nextId(slot.orderId, ++orderSequence));
+        request.setSymbol(symbols[symbol]);
+        request.setSide(slot.side);
+        request.setQuantity(Decimal64Utils.fromLong(slot.quantity));
+        request.setLimitPrice(slot.price);
+        request.setTimestamp(fuzzClock.time);
+
+        RiskOrder order = processor.placeOrder(request);
+        cache.add(order.getLastOrder());
+        slot.order = order;
+        slot.state = NEW_SENT;
+        activeOrders++;
+        addOpenSize(slot.side, slot.quantity);
+
+        if ( ! isLive) {
+            rule.onNewOrderRequest(order, request, null); // replayed request was accepted
+            return;
+        }
+
+        observer.breached = false;
+        rule.onNewOrderRequest(order, request, observer);
+        checkDecision(slot.side == Side.BUY, slot.quantity, observer.breached);
+        if (observer.breached)
+            rejectOrder(slot);
+    }
+
+    private void confirmOrder(Slot slot) {
+        OrderState previousState = slot.order.getState();
+        processor.onOrderNew(slot.order, prepare(newEvent, slot.orderId));
+        onOrderEvent(slot, newEvent, previousState);
+        slot.state = OPEN;
+    }
+
+    /** Rejected by venue or by the rule */
+    private void rejectOrder(Slot slot) {
+        addOpenSize(slot.side, -slot.quantity);
+
+        OrderState previousState = slot.order.getState();
+        prepare(rejectEvent, slot.orderId).setReason("Rejected");
+        processor.onOrderReject(slot.order, rejectEvent);
+        onOrderEvent(slot, rejectEvent, previousState);
+        close(slot);
+    }
+
+    private void fillOrder(Slot slot, long quantity) {
+        slot.cumQuantity += quantity;
+        addOpenSize(slot.side, -quantity);
+        actualPosition += (slot.side == Side.BUY) ? quantity : -quantity;
+        modelPosition.setActualPositionSize(Decimal64Utils.fromLong(actualPosition));
+        tradedNotional = Decimal64Utils.add(tradedNotional, Decimal64Utils.multiply(Decimal64Utils.fromLong(quantity), slot.price));
+
+        OrderState previousState = slot.order.getState();
+        prepare(tradeEvent, slot.orderId);
+        tradeEvent.setTradeQuantity(Decimal64Utils.fromLong(quantity));
+        tradeEvent.setTradePrice(slot.price);
+        processor.onTradeReport(slot.order, tradeEvent);
+        onOrderEvent(slot, tradeEvent, previousState);
+        if (slot.cumQuantity == slot.quantity)
+            close(slot);
+    }
+
+    private void cancelOrder(Slot slot) {
+        addOpenSize(slot.side, slot.cumQuantity - slot.quantity);
+
+        OrderState previousState = slot.order.getState();
+        prepare(cancelEvent, slot.orderId).setReason("Canceled");
+        processor.onOrderCancel(slot.order, cancelEvent);
+        onOrderEvent(slot, cancelEvent, previousState);
+        close(slot);
+    }
+
+    private void replaceOrder(Slot slot) {
+        slot.pendingQuantity = slot.cumQuantity + 1 + nextRandom(MAX_QUANTITY);
+        slot.pendingPrice = nextPrice(slot.symbol);
+
+        MutableOrderReplaceRequest request = slot.replaceRequest;
+        request.setOrderId(nextId(slot.replaceOrderId, ++orderSequence));
+        request.setOriginalOrderId(slot.orderId);
+        request.setSymbol(symbols[slot.symbol]);
+        request.setSide(slot.side);
+        request.setQuantity(Decimal64Utils.fromLong(slot.pendingQuantity));
+        request.setLimitPrice(slot.pendingPrice);
+        request.setTimestamp(fuzzClock.time);
+
+        processor.replaceOrder(slot.order, request);
+        cache.add(slot.order.getLastOrder());
+        slot.state = REPLACE_SENT;
+
+        final long increase = slot.pendingQuantity - slot.quantity;
+        if (increase > 0)
+            addOpenSize(slot.side, increase);
+
+        if ( ! isLive) {
+            rule.onReplaceOrderRequest(slot.order, request, null); // replayed request was accepted
+            return;
+        }
+
+        observer.breached = false;
+        rule.onReplaceOrderRequest(slot.order, request, observer);
+        checkDecision(slot.side == Side.BUY, increase, observer.breached);
+        if (observer.breached)
+            rejectReplace(slot);
+    }
+
+    private void confirmReplace(Slot slot) {
+        final long increase = slot.pendingQuantity - slot.quantity;
+        if (increase < 0)
+            addOpenSize(slot.side, increase); // decrease takes effect once venue confirms it
+
+        OrderState previousState = slot.order.getState();
+        prepare(replaceEvent, slot.replaceOrderId).setOriginalOrderId(slot.orderId);
+        processor.onOrderReplace(slot.order, replaceEvent);
+
+        StringBuilder orderId = slot.orderId;
+        slot.orderId = slot.replaceOrderId;
+        slot.replaceOrderId = orderId;
+        slot.quantity = slot.pendingQuantity;
+        slot.price = slot.pendingPrice;
+        slot.state = OPEN;
+        onOrderEvent(slot, replaceEvent, previousState);
+    }
+
+    /** Replacement rejected by venue or by the rule */
+    private void rejectReplace(Slot slot) {
+        final long increase = slot.pendingQuantity - slot.quantity;
+        if (increase > 0)
+            addOpenSize(slot.side, -increase);
+
+        OrderState previousState = slot.order.getState();
+        prepare(cancelRejectEvent, slot.replaceOrderId).setReason("Rejected");
+        processor.onOrderCancelReject(slot.order, cancelRejectEvent);
+        slot.state = OPEN;
+        onOrderEvent(slot, cancelRejectEvent, previousState);
+    }
+
+    /** Closes all orders */
+    private void drain() {
+        for (Slot slot : slots) {
+            switch (slot.state) {
+                case NEW_SENT:
+                    rejectOrder(slot);
+                    break;
+                case REPLACE_SENT:
+                    rejectReplace(slot);
+                    cancelOrder(slot);
+                    break;
+                case OPEN:
+                    cancelOrder(slot);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void onOrderEvent(Slot slot, OrderEvent event, OrderState previousState) {
+        rule.onOrderEvent(slot.order, event, previousState, isLive ? observer : null);
+    }
+
+    private void close(Slot slot) {
+        slot.state = FREE;
+        slot.order = null;
+        activeOrders--;
+    }
+
+    private <E extends MutableOrderEvent> E prepare(E event, CharSequence orderId) {
+        event.setSourceId(DESTINATION_ID);
+        event.setDestinationId(SOURCE_ID);
+        event.setOrderId(orderId);
+        event.setTimestamp(fuzzClock.time);
+        event.setEventId(nextId(eventId, ++eventSequence));
+        return event;
+    }
+
+    /// endregion
+
+    /// region Model
+
+    private void addOpenSize(Side side, long quantity) {
+        if (side == Side.BUY) {
+            openBuySize += quantity;
+            modelPosition.setOpenBuySize(Decimal64Utils.fromLong(openBuySize));
+        } else {
+            openSellSize += quantity;
+            modelPosition.setOpenSellSize(Decimal64Utils.fromLong(openSellSize));
+        }
+    }
+
+    private void checkModel() {
+        cacheActiveOrders = 0;
+        cache.iterateActive(cacheCounter, this);
+        assertInvariant(cacheActiveOrders == activeOrders, "active orders of OMS cache differ from the model");
+        assertInvariant(openBuySize >= 0 && openSellSize >= 0, "negative open size");
+    }
+
+    /** Breaches of requests reject them, breaches of events are ignored */
+    private static final class DecisionObserver implements RiskObserver {
+        boolean breached;
+
+        @Override
+        public void onBreach(ConstProjectionPath path, String limitName, int rejectCode, CharSequence reason) {
+            breached = true;
+        }
+    }
+
+    /// endregion
+
+    /** @return limit price within 5% of instrument price, in cents */
+    private @Decimal long nextPrice(int symbol) {
+        long cents = (10 + symbol) * 100L;
+        return Decimal64Utils.fromFixedPoint(cents - cents / 20 + nextRandom((int) (cents / 10) + 1), 2);
+    }
+
+    private static StringBuilder nextId(StringBuilder id, long sequence) {
+        id.setLength(0);
+        return id.append(sequence);
+    }
+
+    /** xorshift random in [0, bound) */
+    private int nextRandom(int bound) {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) ((random >>> 1) % bound);
+    }
+}
@@ -31,6 +31,7 @@ import deltix.ember.service.valid.OrderRequestValidator;
 import deltix.ember.service.valid.ValidationSettings;
 import org.junit.Assert;
 
+import java.lang.management.ManagementFactory;
 import java.util.regex.Pattern;
 
 import static org.junit.Assert.*;
@@ -170,7 +171,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
 
         OrderState previousState = order.getState();
         processor.onOrderPendingNew(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return newOrderSingle;
     }
 
@@ -194,7 +195,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
 
         OrderState previousState = order.getState();
         processor.onOrderNew(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return newOrderSingle;
     }
 
@@ -219,7 +220,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
 
         OrderState previousState = order.getState();
         processor.onOrderReplace(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return cancelReplace;
     }
 
@@ -245,7 +246,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
         OrderState previousState = order.getState();
 
         processor.onOrderReject(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return newOrderSingle;
     }
 
@@ -271,7 +272,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
         OrderState previousState = order.getState();
 
         processor.onOrderCancel(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return orderRequest;
     }
 
@@ -297,7 +298,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
 
         OrderState previousState = order.getState();
         processor.onTradeReport(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return orderRequest;
     }
 
@@ -323,7 +324,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
 
         OrderState previousState = order.getState();
         processor.onTradeReport(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return orderRequest;
     }
 
@@ -361,7 +362,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
         OrderState previousState = order.getState();
 
         processor.onOrderCancelReject(order, event);
-        rule.onOrderEvent(order, event, previousState, riskObserver);
+        trackedOnOrderEvent(order, event, previousState, riskObserver);
         return cancelReplace;
     }
 
@@ -380,7 +381,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
         cache.add(order.getLastOrder());
 
 
-        rule.onNewOrderRequest(order, newOrderSingle, observer);
+        trackedOnNewOrderRequest(order, newOrderSingle, observer);
 
         return newOrderSingle;
     }
@@ -396,7 +397,7 @@ public abstract class RiskRuleTest<R extends RiskRule> {
         cache.add(order.getLastOrder());
 
 
-        rule.onReplaceOrderRequest(order, cancelReplace, observer);
+        trackedOnReplaceOrderRequest(order, cancelReplace, observer);
 
         return cancelReplace;
     }
@@ -447,6 +448,68 @@ public abstract class RiskRuleTest<R extends RiskRule> {
 
     /// endregion
 
+    /// region Allocation tracking
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private boolean allocationTracking;
+    private int allocationWarmUpCallbacks;
+
+    /**
+     * Declares that risk rule callbacks invoked by assertValid() and event helpers (e.g. passing onNewOrderRequest
+     * or onOrderEvent without breach) must not allocate memory. Test fails if rule allocates inside such callback.
+     * assertInvalid() is not tracked (test harness uses exception to capture rejection).
+     * Note that breach handling of custom observers passed to event helpers is measured as well.
+     *
+     * @param warmUpCallbacks number of initial callbacks that are not checked (class loading, lazy initialization, etc.)
+     */
+    protected void enableAllocationTracking(int warmUpCallbacks) {
+        if ( ! THREAD_MX_BEAN.isThreadAllocatedMemorySupported())
+            throw new UnsupportedOperationException("JVM does not support thread allocated memory measurement");
+
+        THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+        allocationTracking = true;
+        allocationWarmUpCallbacks = warmUpCallbacks;
+    }
+
+    protected void disableAllocationTracking() {
+        allocationTracking = false;
+    }
+
+    private void trackedOnNewOrderRequest(RiskOrder order, OrderNewRequest request, RiskObserver observer) {
+        long allocatedBefore = allocatedBytes();
+        rule.onNewOrderRequest(order, request, observer);
+        checkAllocations("onNewOrderRequest", allocatedBefore);
+    }
+
+    private void trackedOnReplaceOrderRequest(RiskOrder order, OrderReplaceRequest request, RiskObserver observer) {
+        long allocatedBefore = allocatedBytes();
+        rule.onReplaceOrderRequest(order, request, observer);
+        checkAllocations("onReplaceOrderRequest", allocatedBefore);
+    }
+
+    private void trackedOnOrderEvent(RiskOrder order, OrderEvent event, OrderState previousState, RiskObserver observer) {
+        long allocatedBefore = allocatedBytes();
+        rule.onOrderEvent(order, event, previousState, observer);
+        checkAllocations("onOrderEvent", allocatedBefore);
+    }
+
+    private long allocatedBytes() {
+        return allocationTracking ? THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private void checkAllocations(String callback, long allocatedBefore) {
+        if (allocationTracking) {
+            long allocated = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            if (allocationWarmUpCallbacks > 0)
+                allocationWarmUpCallbacks--;
+            else if (allocated > 0)
+                fail("Risk rule allocated " + allocated + " bytes in " + callback);
+        }
+    }
+
+    /// endregion
+
     public class HaltTradingRiskObserver implements RiskObserver {
 
         private String haltTradingReason;
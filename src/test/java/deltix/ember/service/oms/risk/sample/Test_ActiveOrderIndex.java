@@ -0,0 +1,165 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.MutableOrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.api.RiskRule;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Test_ActiveOrderIndex extends RiskRuleTestEx<RiskRule> {
+
+    private static int nextId = 1;
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+    }
+
+    @Test
+    public void addRemoveReAdd() {
+        ActiveOrderIndex index = new ActiveOrderIndex(8, 1);
+        RiskOrder a = placeOrder(nextOrderId());
+        RiskOrder b = placeOrder(nextOrderId());
+        RiskOrder c = placeOrder(nextOrderId());
+
+        assertTrue(index.add(a));
+        assertTrue(index.add(b));
+        assertTrue(index.add(c));
+        assertFalse(index.add(b));
+        assertEquals(3, index.size());
+
+        index.setCancelRequested(index.indexOf(b.getSourceId(), b.getOrderId()), true);
+        index.setAttachment(index.indexOf(b.getSourceId(), b.getOrderId()), 0, 42);
+        index.setAttachment(index.indexOf(c.getSourceId(), c.getOrderId()), 0, 7);
+
+        assertTrue(index.remove(b));
+        assertFalse(index.remove(b));
+        assertEquals(2, index.size());
+        assertFalse(index.contains(b));
+        assertFalse(index.isCancelRequestedForAll());
+
+        int position = index.indexOf(c.getSourceId(), c.getOrderId()); // last order moved into freed position
+        assertEquals(1, position);
+        assertSame(c, index.get(position));
+        assertEquals(7, index.getAttachment(position, 0));
+        assertSame(a, index.find(a.getSourceId(), a.getOrderId()));
+
+        assertTrue(index.add(b));
+        position = index.indexOf(b.getSourceId(), b.getOrderId());
+        assertEquals(2, position);
+        assertFalse(index.isCancelRequested(position)); // re-added order starts clean
+        assertEquals(0, index.getAttachment(position, 0));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void collisionChainDeletion() {
+        ActiveOrderIndex index = new ActiveOrderIndex(4); // hash table of 8 slots
+        List<RiskOrder> chain = new ArrayList<>();
+        for (String orderId : collidingOrderIds(4, 7))
+            chain.add(placeOrder(orderId));
+        for (RiskOrder order : chain)
+            assertTrue(index.add(order));
+
+        assertTrue(index.remove(chain.get(0))); // head of the probe chain
+        assertNull(index.find(chain.get(0).getSourceId(), chain.get(0).getOrderId()));
+        for (int i = 1; i < chain.size(); i++)
+            assertSame(chain.get(i), index.find(chain.get(i).getSourceId(), chain.get(i).getOrderId()));
+
+        assertTrue(index.remove(chain.get(2))); // middle of the chain
+        assertSame(chain.get(1), index.find(chain.get(1).getSourceId(), chain.get(1).getOrderId()));
+        assertSame(chain.get(3), index.find(chain.get(3).getSourceId(), chain.get(3).getOrderId()));
+
+        assertTrue(index.add(chain.get(0)));
+        assertTrue(index.add(chain.get(2)));
+        assertEquals(4, index.size());
+        for (RiskOrder order : chain) {
+            assertTrue(index.contains(order));
+            assertFalse(index.add(order));
+        }
+    }
+
+    @Test
+    public void growPreservesOrdersAndAttachments() {
+        ActiveOrderIndex index = new ActiveOrderIndex(2, 2);
+        List<RiskOrder> orders = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            RiskOrder order = placeOrder(nextOrderId());
+            orders.add(order);
+            int position = index.addOrGet(order);
+            assertEquals(i, position);
+            index.setAttachment(position, 0, i);
+            index.setAttachment(position, 1, -i);
+            index.setCancelRequested(position, true);
+        }
+
+        assertEquals(100, index.size());
+        assertTrue(index.isCancelRequestedForAll());
+        for (int i = 0; i < orders.size(); i++) {
+            RiskOrder order = orders.get(i);
+            int position = index.indexOf(order.getSourceId(), order.getOrderId());
+            assertSame(order, index.get(position));
+            assertEquals(i, index.getAttachment(position, 0));
+            assertEquals(-i, index.getAttachment(position, 1));
+        }
+
+        for (int i = 0; i < orders.size(); i += 2)
+            assertTrue(index.remove(orders.get(i)));
+        assertEquals(50, index.size());
+        assertTrue(index.isCancelRequestedForAll());
+        for (int i = 1; i < orders.size(); i += 2)
+            assertEquals(i, index.getAttachment(index.indexOf(orders.get(i).getSourceId(), orders.get(i).getOrderId()), 0));
+
+        index.clear();
+        assertTrue(index.isEmpty());
+        assertFalse(index.contains(orders.get(1)));
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private RiskOrder placeOrder(String orderId) {
+        MutableOrderNewRequest request = newOrder(Side.BUY, 10, "MSFT", 25);
+        request.setOrderId(orderId);
+        RiskOrder order = processor.placeOrder(request);
+        cache.add(order.getLastOrder());
+        return order;
+    }
+
+    /** @return order IDs that share the same home slot of hash table with given mask */
+    private List<String> collidingOrderIds(int count, int mask) {
+        long sourceId = newOrder(Side.BUY, 10, "MSFT").getSourceId();
+        List<String> result = new ArrayList<>();
+        int home = -1;
+        while (result.size() < count) {
+            String orderId = nextOrderId();
+            int slot = ActiveOrderIndex.hash(sourceId, orderId) & mask;
+            if (home == -1)
+                home = slot;
+            if (slot == home)
+                result.add(orderId);
+        }
+        return result;
+    }
+
+    private static String nextOrderId() {
+        return "AOI" + nextId++;
+    }
+}
@@ -0,0 +1,101 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static deltix.ember.service.oms.risk.sample.FixedPoint.NOT_FIXED;
+import static deltix.ember.service.oms.risk.sample.FixedPoint.SCALE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Test_FixedPoint {
+
+    private static final long MAX_EXACT_COEFFICIENT = 1L << 53; // larger coefficients use special BID64 encoding
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long fixed = random.nextLong() % MAX_EXACT_COEFFICIENT;
+            @Decimal long value = FixedPoint.toDecimal(fixed);
+            assertTrue(Decimal64Utils.isEqual(Decimal64Utils.fromFixedPoint(fixed, SCALE), value));
+            assertEquals(fixed, FixedPoint.toFixed(value));
+            assertEquals(Decimal64Utils.toFixedPoint(value, SCALE), FixedPoint.toFixed(value));
+        }
+    }
+
+    @Test
+    public void agreesWithDecimal64Utils() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            @Decimal long value = Decimal64Utils.fromFixedPoint(random.nextLong() % 10_000_000_000L, random.nextInt(12));
+            assertAgrees(value);
+            assertAgrees(Decimal64Utils.fromDouble(random.nextGaussian() * 1e6));
+        }
+    }
+
+    @Test
+    public void specialValuesAreNotFixed() {
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.NULL));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.NaN));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.POSITIVE_INFINITY));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void zeroAndNegativeValues() {
+        assertEquals(0, FixedPoint.toFixed(Decimal64Utils.ZERO));
+        assertEquals(0, FixedPoint.toFixed(Decimal64Utils.negate(Decimal64Utils.ZERO)));
+        assertEquals(0, FixedPoint.toFixed(Decimal64Utils.parse("0E-20")));
+        assertEquals(-1_250_000_000L, FixedPoint.toFixed(Decimal64Utils.parse("-12.5")));
+        assertEquals(-1L, FixedPoint.toFixed(Decimal64Utils.parse("-0.00000001")));
+        assertTrue(Decimal64Utils.isEqual(Decimal64Utils.parse("-12.5"), FixedPoint.toDecimal(-1_250_000_000L)));
+    }
+
+    @Test
+    public void largeExponents() {
+        assertEquals(1_000_000_000_000_000_000L, FixedPoint.toFixed(Decimal64Utils.parse("1E10")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("1E11")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("1E300")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("-1E300")));
+        assertEquals(0, FixedPoint.toFixed(Decimal64Utils.parse("0E300")));
+    }
+
+    @Test
+    public void valuesBeyondMaxFixedAreNotFixed() {
+        final long maxFixed = Long.MAX_VALUE >> 2;
+        assertEquals(2_300_000_000_000_000_000L, FixedPoint.toFixed(Decimal64Utils.parse("23000000000")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("24000000000")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("-24000000000")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.fromLong(Long.MAX_VALUE)));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(FixedPoint.toDecimal(maxFixed + 1)));
+    }
+
+    @Test
+    public void valuesFinerThanScaleAreNotFixed() {
+        assertEquals(1, FixedPoint.toFixed(Decimal64Utils.parse("0.00000001")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("0.000000001")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("1.000000001")));
+        assertEquals(NOT_FIXED, FixedPoint.toFixed(Decimal64Utils.parse("1E-300")));
+        assertEquals(110_000_000L, FixedPoint.toFixed(Decimal64Utils.parse("1.100000000"))); // trailing zeros are fine
+    }
+
+    // helpers
+
+    /** Fixed value (if any) must be exact, NOT_FIXED only for values that have no exact fixed-point form */
+    private static void assertAgrees(@Decimal long value) {
+        long fixed = FixedPoint.toFixed(value);
+        if (fixed != NOT_FIXED) {
+            assertEquals(Decimal64Utils.toFixedPoint(value, SCALE), fixed);
+            assertTrue(Decimal64Utils.isEqual(value, FixedPoint.toDecimal(fixed)));
+        } else {
+            boolean finerThanScale = ! Decimal64Utils.isEqual(value, FixedPoint.toDecimal(Decimal64Utils.toFixedPoint(value, SCALE)));
+            boolean tooLarge = Decimal64Utils.isGreater(Decimal64Utils.abs(value), Decimal64Utils.parse("2.3E10"));
+            boolean largeCoefficient = (value & 0x6000000000000000L) == 0x6000000000000000L; // special BID64 encoding
+            assertTrue(Decimal64Utils.toString(value), finerThanScale || tooLarge || largeCoefficient);
+        }
+    }
+}
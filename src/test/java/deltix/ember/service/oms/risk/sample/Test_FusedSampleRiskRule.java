@@ -0,0 +1,159 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.position.ProjectionPath;
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.api.RiskRule;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import deltix.ember.service.oms.util.FixedPositionView;
+import org.junit.Before;
+import org.junit.Test;
+
+import static deltix.ember.service.oms.risk.sample.SamplePnLRiskRule.MaxLoss;
+import static deltix.ember.service.oms.risk.sample.SamplePositionRiskRule.MaxPosition;
+import static deltix.ember.service.oms.risk.sample.SampleQuantityRiskRule.MaxQuantity;
+import static org.junit.Assert.*;
+
+public class Test_FusedSampleRiskRule extends RiskRuleTestEx<FusedSampleRiskRule> {
+
+    private final FixedPositionView position = new FixedPositionView();
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+    }
+
+    @Test
+    public void quantityBreach() {
+        rule = newRiskRule(MaxQuantity, MaxPosition, MaxLoss);
+        assertValid(newOrder(Side.BUY, 15, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 20, "MSFT", 25), "Order quantity 20 exceeds maximum 15");
+    }
+
+    @Test
+    public void positionBreach() {
+        rule = newRiskRule(MaxQuantity, MaxPosition, MaxLoss);
+        position.setActualPositionSize(Decimal64Utils.fromInt(20));
+        position.setOpenBuySize(Decimal64Utils.fromInt(10));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Estimated LONG position 30 would exceed maximum limit 25");
+        assertValid(newOrder(Side.SELL, 10, "MSFT", 25));
+    }
+
+    @Test
+    public void replaceMatchesStandaloneRule() {
+        rule = newRiskRule(MaxQuantity, MaxPosition, MaxLoss);
+        SamplePositionRiskRule standalone = new SamplePositionRiskRule();
+        standalone.setPositionView(position);
+        standalone.setMaxPosition(25);
+        standalone.onLive(this);
+
+        OrderNewRequest shrinking = assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        OrderNewRequest growing = assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        position.setActualPositionSize(Decimal64Utils.fromInt(20));
+        position.setOpenBuySize(Decimal64Utils.fromInt(20)); // estimated LONG position 40 is above the limit
+
+        assertSameDecision(cancelReplaceOrder(shrinking, 5), standalone, null);
+        assertSameDecision(cancelReplaceOrder(growing, 12), standalone, "Estimated LONG position 40 would exceed maximum limit 25");
+    }
+
+    @Test
+    public void lossBreach() {
+        rule = newRiskRule(MaxQuantity, MaxPosition, MaxLoss);
+        position.setRealizedPnL(Decimal64Utils.fromInt(-150));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Realized Loss -150 exceeds maximum 100");
+    }
+
+    @Test
+    public void disabledLimitsAreNotEvaluated() {
+        rule = newRiskRule(MaxQuantity);
+        position.setActualPositionSize(Decimal64Utils.fromInt(20));
+        position.setOpenBuySize(Decimal64Utils.fromInt(10));
+        position.setRealizedPnL(Decimal64Utils.fromInt(-150));
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertNull("active orders are tracked only for MaxLoss", rule.activeOrders);
+    }
+
+    @Test
+    public void aliasDelegatesToFusedRule() {
+        rule = newRiskRule(MaxQuantity, MaxPosition, MaxLoss);
+        position.setRealizedPnL(Decimal64Utils.fromInt(-150));
+
+        FusedSampleRiskRule.Alias alias = new FusedSampleRiskRule.Alias(MaxLoss, rule);
+        assertSame(rule, alias.getTarget());
+        assertEquals(150, Decimal64Utils.toDouble((Long) alias.getCurrentValue(MaxLoss)), 1e-9);
+    }
+
+    @Test
+    public void factoryFusesLimitsOfSameRow() {
+        SampleQuantityRiskRuleFactory factory = new SampleQuantityRiskRuleFactory();
+        factory.setFusedLimits(true);
+
+        ProjectionPath rowA = makeProjectionPath(ProjectionKey.Trader, "A");
+        ProjectionPath rowB = makeProjectionPath(ProjectionKey.Trader, "B");
+
+        RiskRule quantityA = factory.create(MaxQuantity, rowA, this);
+        RiskRule quantityB = factory.create(MaxQuantity, rowB, this); // rows are interleaved
+        RiskRule positionA = factory.create(MaxPosition, rowA, this);
+        RiskRule lossB = factory.create(MaxLoss, rowB, this);
+
+        assertTrue(quantityA instanceof FusedSampleRiskRule);
+        assertTrue(quantityB instanceof FusedSampleRiskRule);
+        assertSame(quantityA, ((FusedSampleRiskRule.Alias) positionA).getTarget());
+        assertSame(quantityB, ((FusedSampleRiskRule.Alias) lossB).getTarget());
+        assertTrue(((FusedSampleRiskRule) quantityA).isEnabled(MaxPosition));
+        assertFalse(((FusedSampleRiskRule) quantityA).isEnabled(MaxLoss));
+
+        RiskRule lossA = factory.create(MaxLoss, rowA, this);
+        assertSame(quantityA, ((FusedSampleRiskRule.Alias) lossA).getTarget());
+
+        RiskRule quantityA2 = factory.create(MaxQuantity, rowA, this); // row is recreated
+        assertTrue(quantityA2 instanceof FusedSampleRiskRule);
+        assertNotSame(quantityA, quantityA2);
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Replaces the order and expects the same decision from fused and standalone rule (null reason if request is valid) */
+    private void assertSameDecision(OrderReplaceRequest replace, RiskRule standalone, String expectedReason) {
+        RiskOrder order = cache.get(replace.getSourceId(), replace.getOriginalOrderId());
+        assertNotNull(order);
+        processor.replaceOrder(order, replace);
+        cache.add(order.getLastOrder());
+
+        assertEquals("fused rule", expectedReason, getBreachReason(rule, order, replace));
+        assertEquals("standalone rule", expectedReason, getBreachReason(standalone, order, replace));
+    }
+
+    private static String getBreachReason(RiskRule rule, RiskOrder order, OrderReplaceRequest replace) {
+        StringBuilder result = new StringBuilder();
+        rule.onReplaceOrderRequest(order, replace, (path, limitName, rejectCode, reason) -> result.append(reason));
+        return (result.length() > 0) ? result.toString() : null;
+    }
+
+    private FusedSampleRiskRule newRiskRule(String... limitNames) {
+        rule = new FusedSampleRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return position;
+            }
+        };
+        for (String limitName : limitNames)
+            rule.enable(limitName);
+        rule.setMaxQuantity(15);
+        rule.setMaxPosition(25);
+        rule.setMaxLoss(100);
+        return init(rule);
+    }
+}
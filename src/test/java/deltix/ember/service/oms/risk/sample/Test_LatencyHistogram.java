@@ -0,0 +1,91 @@
+package deltix.ember.service.oms.risk.sample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Test_LatencyHistogram {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogram() {
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getMaxValue());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int value = 0; value < LatencyHistogram.SUB_BUCKET_COUNT; value++)
+            histogram.record(value);
+
+        assertEquals(LatencyHistogram.SUB_BUCKET_COUNT, histogram.getTotalCount());
+        assertEquals(LatencyHistogram.SUB_BUCKET_COUNT - 1, histogram.getMaxValue());
+        assertEquals(15, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(LatencyHistogram.SUB_BUCKET_COUNT - 1, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void bucketsCoverValuesWithinPrecision() {
+        int lastIndex = -1;
+        for (long value = 1; value < 1L << 40; value += 1 + value / 7) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue("Index is monotonic at " + value, index >= lastIndex);
+            assertTrue("Value " + value + " is within bucket ending at " + highest, value <= highest);
+            assertTrue("Bucket of " + value + " is too wide: " + highest, highest - value <= value / LatencyHistogram.SUB_BUCKET_COUNT);
+            if (index > 0)
+                assertTrue("Value " + value + " belongs to previous bucket", value > LatencyHistogram.highestEquivalentValue(index - 1));
+            lastIndex = index;
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        for (int value = 1; value <= 10000; value++)
+            histogram.record(value * 1000L);
+
+        assertEquals(10000, histogram.getTotalCount());
+        assertEquals(10_000_000, histogram.getMaxValue());
+        assertWithinPrecision(5_000_000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(9_900_000, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(9_990_000, histogram.getValueAtPercentile(99.9));
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100)); // capped by max value
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(100));
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getTotalCount());
+        assertTrue(histogram.getMaxValue() > 0);
+        assertEquals(histogram.getMaxValue(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void addAndReset() {
+        LatencyHistogram other = new LatencyHistogram();
+        histogram.record(100);
+        other.record(200);
+        other.record(300_000);
+
+        histogram.add(other);
+        assertEquals(3, histogram.getTotalCount());
+        assertEquals(300_000, histogram.getMaxValue());
+        assertWithinPrecision(200, histogram.getValueAtPercentile(50));
+
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getMaxValue());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+}
@@ -0,0 +1,97 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.MutableOrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Test_ProjectionOrderFilter extends RiskRuleTestEx<SampleRiskRule> {
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        addInstrument("IBM", InstrumentType.EQUITY, 150);
+    }
+
+    @Test
+    public void symbol() {
+        ProjectionOrderFilter filter = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, "MSFT"));
+        assertTrue(filter.isSupported());
+        assertMatches(filter, placeOrder("MSFT", null));
+        assertDoesNotMatch(filter, placeOrder("IBM", null));
+    }
+
+    @Test
+    public void trader() {
+        ProjectionOrderFilter filter = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Trader, "A"));
+        assertMatches(filter, placeOrder("MSFT", "A"));
+        assertDoesNotMatch(filter, placeOrder("MSFT", "B"));
+        assertDoesNotMatch(filter, placeOrder("MSFT", null));
+    }
+
+    @Test
+    public void source() {
+        ProjectionOrderFilter filter = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Source, "SOURCE"));
+        assertMatches(filter, placeOrder("MSFT", null));
+
+        filter = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Source, "OTHER"));
+        assertDoesNotMatch(filter, placeOrder("MSFT", null));
+    }
+
+    @Test
+    public void wildcardMatchesAnyValue() {
+        ProjectionOrderFilter filter = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, ProjectionPathUtil.WILDCARD));
+        assertEquals("*Symbol", filter.getPattern());
+        assertMatches(filter, placeOrder("MSFT", null));
+        assertMatches(filter, placeOrder("IBM", null));
+    }
+
+    @Test
+    public void rowsOfSameProjectionSharePattern() {
+        ProjectionOrderFilter msft = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, "MSFT"));
+        ProjectionOrderFilter ibm = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, "IBM"));
+        ProjectionOrderFilter trader = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Trader, "MSFT"));
+
+        assertEquals(msft.getPattern(), ibm.getPattern());
+        assertNotEquals(msft.getRowKey(), ibm.getRowKey());
+        assertNotEquals(msft.getPattern(), trader.getPattern());
+        assertNotEquals(msft.getRowKey(), trader.getRowKey());
+    }
+
+    @Test
+    public void unknownProjectionIsNotSupported() {
+        assertFalse(ProjectionOrderFilter.UNSUPPORTED.isSupported());
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private RiskOrder placeOrder(String symbol, String trader) {
+        MutableOrderNewRequest request = newOrder(Side.BUY, 10, symbol, 25);
+        request.setTraderId(trader);
+        RiskOrder order = processor.placeOrder(request);
+        cache.add(order.getLastOrder());
+        return order;
+    }
+
+    private static void assertMatches(ProjectionOrderFilter filter, RiskOrder order) {
+        assertTrue(filter.matches(order));
+        assertEquals(filter.getRowKey(), filter.getRowKey(order));
+    }
+
+    private static void assertDoesNotMatch(ProjectionOrderFilter filter, RiskOrder order) {
+        assertFalse(filter.matches(order));
+        assertNotEquals(filter.getRowKey(), filter.getRowKey(order));
+    }
+}
@@ -0,0 +1,68 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.service.oms.position.ConstProjectionPath;
+import deltix.ember.service.oms.position.Projection;
+import deltix.ember.service.oms.position.ProjectionPath;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Test_QuantityLimitTable {
+
+    private final QuantityLimitTable table = new QuantityLimitTable(2);
+
+    @Test
+    public void reCreatedPathReusesRow() {
+        int rowA = table.acquireRow(path(ProjectionKey.Trader, "A"));
+        int rowB = table.acquireRow(path(ProjectionKey.Trader, "B"));
+        int rowC = table.acquireRow(path(ProjectionKey.Symbol, "A")); // same value, different projection
+        assertEquals(3, table.size());
+        assertNotEquals(rowA, rowB);
+        assertNotEquals(rowA, rowC);
+
+        table.setMaxQuantity(rowA, Decimal64Utils.fromLong(100));
+        assertEquals(rowA, table.acquireRow(path(ProjectionKey.Trader, "A")));
+        assertTrue("re-acquired row starts unlimited", Decimal64Utils.isNull(table.getMaxQuantity(rowA)));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void growPreservesRows() {
+        int[] rows = new int[1000];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = table.acquireRow(path(ProjectionKey.Trader, "T" + i));
+            table.setMaxQuantity(rows[i], Decimal64Utils.fromLong(i));
+        }
+        assertEquals(rows.length, table.size());
+
+        for (int i = 0; i < rows.length; i++)
+            assertEquals(Decimal64Utils.fromLong(i), table.getMaxQuantity(rows[i]));
+        for (int i = 0; i < rows.length; i++)
+            assertEquals(rows[i], table.acquireRow(path(ProjectionKey.Trader, "T" + i)));
+        assertEquals(rows.length, table.size());
+    }
+
+    @Test
+    public void exceedsMaxQuantity() {
+        int row = table.acquireRow(path(ProjectionKey.Trader, "A"));
+        assertFalse("unlimited", table.exceedsMaxQuantity(row, Decimal64Utils.fromLong(1_000_000)));
+
+        table.setMaxQuantity(row, Decimal64Utils.fromLong(100));
+        assertFalse(table.exceedsMaxQuantity(row, Decimal64Utils.fromLong(100)));
+        assertTrue(table.exceedsMaxQuantity(row, Decimal64Utils.parse("100.00000001")));
+        assertTrue("not fixed quantity", table.exceedsMaxQuantity(row, Decimal64Utils.parse("1E20")));
+        assertFalse("not fixed quantity", table.exceedsMaxQuantity(row, Decimal64Utils.parse("0.000000000001")));
+
+        table.setMaxQuantity(row, Decimal64Utils.parse("1E20")); // not fixed limit
+        assertFalse(table.exceedsMaxQuantity(row, Decimal64Utils.fromLong(100)));
+        assertTrue(table.exceedsMaxQuantity(row, Decimal64Utils.parse("2E20")));
+    }
+
+    // helpers
+
+    private static ProjectionPath path(ProjectionKey key, String value) {
+        return new ConstProjectionPath(new Projection(key), new String[]{value});
+    }
+}
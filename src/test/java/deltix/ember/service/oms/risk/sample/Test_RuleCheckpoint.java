@@ -0,0 +1,238 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.MutableOrderTradeReportEvent;
+import deltix.ember.message.trade.OrderEvent;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderTradeReportEvent;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.risk.api.RiskLimits;
+import deltix.ember.service.oms.risk.api.RiskObserver;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class Test_RuleCheckpoint extends RiskRuleTestEx<Test_RuleCheckpoint.TradeCountingRule> {
+
+    private static final int SIZE = 1024;
+    private static final String KEY = "Trader[jdoe]/TradeCount";
+
+    private final RiskObserver liveObserver = (path, limitName, rejectCode, reason) -> {};
+    private final List<OrderEvent> journal = new ArrayList<>();
+    private Path file;
+    private RiskOrder order;
+
+    @Before
+    public void init() throws IOException {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        setClock(1_700_000_000_000L);
+        file = Files.createTempFile("risk-checkpoint", ".dat");
+
+        rule = new TradeCountingRule();
+        OrderNewRequest request = assertValid(newOrder(Side.BUY, 100, "MSFT", 25));
+        order = cache.get(request.getSourceId(), request.getOrderId());
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void restoredRuleSkipsCheckpointedMessages() {
+        RuleCheckpoint checkpoint = newCheckpoint();
+        TradeCountingRule live = register(checkpoint);
+        trade(live, 3);
+        checkpoint.take(clock.time());
+        trade(live, 2);
+        assertEquals(5, live.trades);
+
+        // restart: replay of the whole journal must not count checkpointed trades twice
+        TradeCountingRule restored = register(newCheckpoint());
+        assertEquals(3, restored.trades);
+        replay(restored);
+        assertEquals(5, restored.trades);
+
+        trade(restored, 1);
+        assertEquals(6, restored.trades);
+    }
+
+    @Test
+    public void eventTimestampsDoNotAffectRestore() {
+        RuleCheckpoint checkpoint = newCheckpoint();
+        TradeCountingRule live = register(checkpoint);
+        trade(live, 2);
+        checkpoint.take(clock.time());
+
+        // venue timestamps of later trades precede checkpoint time
+        setClock(clock.time() - 60_000);
+        trade(live, 2);
+
+        TradeCountingRule restored = register(newCheckpoint());
+        replay(restored);
+        assertEquals(4, restored.trades);
+    }
+
+    @Test
+    public void tornSlotFallsBackToPreviousCheckpoint() throws IOException {
+        RuleCheckpoint checkpoint = newCheckpoint();
+        TradeCountingRule live = register(checkpoint);
+        trade(live, 3);
+        checkpoint.take(clock.time()); // sequence 1 goes to slot 1
+        trade(live, 4);
+        checkpoint.take(clock.time()); // sequence 2 goes to slot 0
+
+        corrupt(RuleCheckpoint.HEADER_SIZE + KEY.length()); // crash while slot 0 was written
+
+        TradeCountingRule restored = register(newCheckpoint());
+        assertEquals(3, restored.trades);
+        replay(restored);
+        assertEquals(7, restored.trades);
+    }
+
+    @Test
+    public void ruleWithoutCheckpointReplaysEverything() throws IOException {
+        corrupt(0);
+
+        TradeCountingRule restored = register(newCheckpoint());
+        assertEquals(0, restored.trades);
+        trade(null, 2);
+        replay(restored);
+        assertEquals(2, restored.trades);
+    }
+
+    @Test
+    public void ruleWithoutCheckpointingReplaysEverything() {
+        trade(null, 3);
+
+        TradeCountingRule rule = new TradeCountingRule(); // checkpointing is disabled
+        replay(rule);
+        assertEquals(3, rule.trades);
+
+        trade(rule, 1);
+        assertEquals(4, rule.trades);
+    }
+
+    @Test
+    public void reRegisteredRuleReplacesPreviousOne() {
+        RuleCheckpoint checkpoint = newCheckpoint();
+        TradeCountingRule first = register(checkpoint);
+        trade(first, 2);
+        TradeCountingRule second = register(checkpoint); // projection row re-created by server
+        trade(second, 1);
+        checkpoint.take(clock.time());
+        assertEquals(1, checkpoint.size());
+
+        TradeCountingRule restored = register(newCheckpoint());
+        assertEquals(1, restored.trades);
+    }
+
+    @Test
+    public void unknownRulesAreIgnored() {
+        RuleCheckpoint checkpoint = newCheckpoint();
+        TradeCountingRule live = register(checkpoint);
+        trade(live, 2);
+        checkpoint.take(clock.time());
+
+        RuleCheckpoint restart = newCheckpoint();
+        TradeCountingRule other = new TradeCountingRule();
+        restart.register("Trader[other]/TradeCount", other, this);
+        assertEquals(0, other.trades);
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** @return checkpoint that writes synchronously */
+    private RuleCheckpoint newCheckpoint() {
+        return new RuleCheckpoint(file, SIZE, 1000, Runnable::run);
+    }
+
+    private TradeCountingRule register(RuleCheckpoint checkpoint) {
+        TradeCountingRule result = new TradeCountingRule();
+        checkpoint.register(KEY, result, this);
+        return result;
+    }
+
+    /** Appends trades to the journal and sends them to live rule (if any) */
+    private void trade(@Nullable TradeCountingRule rule, int count) {
+        for (int i = 0; i < count; i++) {
+            MutableOrderTradeReportEvent event = new MutableOrderTradeReportEvent();
+            event.setOrderId(order.getOrderId());
+            event.setTimestamp(clock.time());
+            event.setTradeQuantity(Decimal64Utils.fromLong(1));
+            event.setTradePrice(Decimal64Utils.fromLong(25));
+            journal.add(event);
+            if (rule != null)
+                rule.onOrderEvent(order, event, order.getState(), liveObserver);
+        }
+    }
+
+    /** Warm-up replay of the whole journal */
+    private void replay(TradeCountingRule rule) {
+        for (OrderEvent event : journal)
+            rule.onOrderEvent(order, event, order.getState(), null);
+    }
+
+    private void corrupt(int offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}), offset);
+        }
+    }
+
+    /** Counts trades, state is checkpointed */
+    static final class TradeCountingRule extends SampleRiskRule implements Checkpointable {
+        long trades;
+
+        TradeCountingRule() {
+            super("Trade Count");
+        }
+
+        @Override
+        public void setLimits(RiskLimits riskLimits) {
+        }
+
+        @Override
+        public Object getCurrentValue(String limitName) {
+            return trades;
+        }
+
+        @Override
+        public void writeCheckpoint(ByteBuffer buffer) {
+            buffer.putLong(trades);
+        }
+
+        @Override
+        public void readCheckpoint(ByteBuffer buffer) {
+            trades = buffer.getLong();
+        }
+
+        @Override
+        protected void handleOrderEvent(@Nonnull RiskOrder order, @Nonnull OrderEvent event, @Nonnull OrderState previousState, @Nullable RiskObserver observer) {
+            if (event instanceof OrderTradeReportEvent && ! isCheckpointed(observer))
+                trades++;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static deltix.ember.service.oms.risk.sample.SampleCreditRiskRule.MaxCredit;
+import static org.junit.Assert.assertEquals;
+
+public class Test_SampleCreditRiskRule extends RiskRuleTestEx<SampleCreditRiskRule> {
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+    }
+
+    @Test
+    public void newOrdersReserveCredit() {
+        rule = newRiskRule(1000);
+        assertValid(newOrder(Side.BUY, 30, "MSFT", 25));
+        assertInvalid(newOrder(Side.SELL, 11, "MSFT", 25), "Estimated credit usage 1025 would exceed maximum 1000");
+        assertValid(newOrder(Side.SELL, 10, "MSFT", 25));
+        assertCreditUsage(1000);
+    }
+
+    @Test
+    public void fillsConvertAndCancelsReleaseReservation() {
+        rule = newRiskRule(1000);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 20, "MSFT", 25));
+        openEvent(ackEvent(order));
+        assertCreditUsage(500);
+
+        partialFillEvent(order, 8);
+        assertCreditUsage(500);
+
+        cancelEvent(order);
+        assertCreditUsage(200);
+
+        assertValid(newOrder(Side.BUY, 32, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 1, "MSFT", 25), "would exceed maximum 1000");
+    }
+
+    @Test
+    public void rejectReleasesReservation() {
+        rule = newRiskRule(1000);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 40, "MSFT", 25));
+        rejectEvent(order);
+        assertCreditUsage(0);
+    }
+
+    @Test
+    public void warmUpRestoresUsedCredit() {
+        rule = new SampleCreditRiskRule(); // checkpointing is disabled
+        rule.setMaxCredit(1000);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 20, "MSFT", 25), null);
+        openEvent(ackEvent(order, null), null);
+        partialFillEvent(order, 8, null);
+
+        rule = init(rule);
+        assertCreditUsage(500);
+        assertInvalid(newOrder(Side.BUY, 21, "MSFT", 25), "Estimated credit usage 1025 would exceed maximum 1000");
+    }
+
+    @Test
+    public void factoryResetsUsedCreditAtMarketClose() {
+        setClock("2026-10-19 16:00:00.000 UTC");
+        SampleQuantityRiskRuleFactory factory = new SampleQuantityRiskRuleFactory();
+        factory.setMarketClosingTime("17:00:00");
+        factory.setTimeZone("UTC");
+
+        rule = (SampleCreditRiskRule) factory.create(MaxCredit, makeProjectionPath(ProjectionKey.Trader, "A"), this);
+        rule.setMaxCredit(1000);
+        rule = init(rule);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 20, "MSFT", 25));
+        openEvent(ackEvent(order));
+        partialFillEvent(order, 8);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertCreditUsage(750);
+
+        advanceClock(Duration.ofHours(1));
+        timer.work(clock.time());
+        assertCreditUsage(550); // traded 200 is restored, reservations are kept
+    }
+
+    // helpers
+
+    private void assertCreditUsage(long expected) {
+        assertEquals(Decimal64Utils.toString(Decimal64Utils.fromLong(expected)), Decimal64Utils.toString(rule.getCreditUsage()));
+    }
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private SampleCreditRiskRule newRiskRule(double maxCredit) {
+        rule = init(new SampleCreditRiskRule());
+        rule.setMaxCredit(maxCredit);
+        return rule;
+    }
+}
@@ -0,0 +1,26 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.service.oms.risk.limits.RiskRuleFuzzTest;
+import org.junit.Test;
+
+public class Test_SampleCreditRiskRuleFuzzing extends RiskRuleFuzzTest<SampleCreditRiskRule> {
+
+    @Test
+    public void reservationsAreReleased() {
+        rule = new SampleCreditRiskRule();
+        fuzz();
+    }
+
+    /** Reservations of active orders are never negative. Checked from the switch to live: trades replayed during warm-up count as used credit */
+    @Override
+    protected void checkInvariants() {
+        assertInvariant( ! Decimal64Utils.isLess(rule.getCreditUsage(), getTradedNotional()), "credit usage is below traded notional");
+    }
+
+    /** Once all orders are closed only traded notional remains */
+    @Override
+    protected void checkDrained() {
+        assertInvariant(Decimal64Utils.isEqual(rule.getCreditUsage(), getTradedNotional()), "reservations remain after all orders were closed");
+    }
+}
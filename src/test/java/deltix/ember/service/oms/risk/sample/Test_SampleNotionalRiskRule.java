@@ -0,0 +1,64 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import static deltix.ember.service.oms.risk.sample.SampleNotionalRiskRule.MaxNotional;
+import static deltix.ember.service.oms.risk.sample.SampleNotionalRiskRule.MaxOpenNotional;
+import static org.junit.Assert.assertEquals;
+
+public class Test_SampleNotionalRiskRule extends RiskRuleTestEx<SampleNotionalRiskRule> {
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+    }
+
+    @Test
+    public void orderNotionalIsLimited() {
+        rule = newRiskRule(MaxNotional, 1000);
+        assertValid(newOrder(Side.BUY, 40, "MSFT", 25));
+        assertInvalid(newOrder(Side.SELL, 41, "MSFT", 25), "Order notional 1025 exceeds maximum 1000");
+    }
+
+    @Test
+    public void openNotionalAccumulates() {
+        rule = newRiskRule(MaxOpenNotional, 1000);
+        assertValid(newOrder(Side.BUY, 20, "MSFT", 25));
+        assertValid(newOrder(Side.SELL, 10, "MSFT", 25));
+        assertEquals(Decimal64Utils.fromLong(750), rule.getCurrentValue(MaxOpenNotional));
+
+        assertInvalid(newOrder(Side.BUY, 11, "MSFT", 25), "Estimated open notional 1025 would exceed maximum 1000");
+        assertEquals(Decimal64Utils.fromLong(750), rule.getCurrentValue(MaxOpenNotional));
+    }
+
+    @Test
+    public void replaceIsCheckedOnIncrease() {
+        rule = newRiskRule(MaxOpenNotional, 1000);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 30, "MSFT", 25));
+        OrderReplaceRequest replace = assertValid(cancelReplaceOrder(order, Side.BUY, 10, "MSFT", 25));
+        assertInvalid(cancelReplaceOrder(replace, Side.BUY, 50, "MSFT", 25), "would exceed maximum 1000");
+        assertValid(cancelReplaceOrder(replace, Side.BUY, 40, "MSFT", 25));
+        assertEquals(Decimal64Utils.fromLong(1000), rule.getCurrentValue(MaxOpenNotional));
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private SampleNotionalRiskRule newRiskRule(String limitName, double maxNotional) {
+        rule = init(new SampleNotionalRiskRule(limitName));
+        rule.setMaxNotional(maxNotional);
+        return rule;
+    }
+}
@@ -0,0 +1,102 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static deltix.ember.service.oms.risk.sample.SampleOrderToTradeRiskRule.MaxOrderToTradeRatio;
+
+public class Test_SampleOrderToTradeRiskRule extends RiskRuleTestEx<SampleOrderToTradeRiskRule> {
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        setClock("2026-10-19 16:00:00.000 UTC");
+    }
+
+    @Test
+    public void ratioIsEnforced() {
+        rule = newRiskRule(2, 2);
+        fill(assertValid(newOrder(Side.BUY, 10, "MSFT", 25)));
+        OrderNewRequest second = assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Order to trade ratio 3 would exceed maximum 2");
+
+        fill(second);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25)); // 3 orders, 2 fills
+    }
+
+    @Test
+    public void ratioIsNotEnforcedBeforeMinOrders() {
+        rule = newRiskRule(1, 5);
+        for (int i = 0; i < 5; i++)
+            assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Order to trade ratio 6 would exceed maximum 1");
+    }
+
+    @Test
+    public void countersExpireWithWindow() {
+        rule = newRiskRule(1, 1);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Order to trade ratio 2 would exceed maximum 1");
+
+        advanceClock(Duration.ofMinutes(1));
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    @Test
+    public void sessionResetClearsCounters() {
+        rule = newRiskRule(1, 1);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Order to trade ratio 2 would exceed maximum 1");
+
+        rule.resetSession();
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    @Test
+    public void factoryResetsCountersAtMarketClose() {
+        SampleQuantityRiskRuleFactory factory = new SampleQuantityRiskRuleFactory();
+        factory.setMarketClosingTime("17:00:00");
+        factory.setTimeZone("UTC");
+        factory.setOtrMinOrders(1);
+
+        rule = (SampleOrderToTradeRiskRule) factory.create(MaxOrderToTradeRatio, makeProjectionPath(ProjectionKey.Trader, "A"), this);
+        rule.setMaxRatio(1);
+        rule = init(rule);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Order to trade ratio 2 would exceed maximum 1");
+
+        advanceClock(Duration.ofMinutes(59));
+        timer.work(clock.time());
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Order to trade ratio 2 would exceed maximum 1");
+
+        advanceClock(Duration.ofMinutes(1));
+        timer.work(clock.time());
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private void fill(OrderNewRequest request) {
+        openEvent(ackEvent(request));
+        completeFillEvent(request);
+    }
+
+    private SampleOrderToTradeRiskRule newRiskRule(double maxRatio, long minOrders) {
+        rule = new SampleOrderToTradeRiskRule(60_000, 60, minOrders);
+        rule.setMaxRatio(maxRatio);
+        return init(rule);
+    }
+}
@@ -0,0 +1,232 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.smd.MutableEquityUpdate;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import deltix.ember.service.oms.util.FixedPositionView;
+import deltix.ember.service.oms.util.FixedPricingService;
+import deltix.ember.service.price.api.FixedPriceInfo;
+import deltix.ember.service.price.api.PriceInfo;
+import deltix.ember.service.price.api.PricingService;
+import org.junit.Before;
+import org.junit.Test;
+
+import static deltix.ember.service.oms.risk.sample.SamplePnLRiskRule.MaxLoss;
+import static deltix.ember.service.oms.risk.sample.SamplePnLRiskRule.MaxLossLatch;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_SamplePnLRiskRule extends RiskRuleTestEx<SamplePnLRiskRule> {
+
+    private final FixedPositionView position = new FixedPositionView();
+    private final MutableEquityUpdate msftUpdate = new MutableEquityUpdate();
+    private boolean hasPositions;
+
+    private @Decimal long bid;
+    private @Decimal long ask;
+
+    /** Live MSFT prices (handle is updated in place as in real PricingService), other symbols are unknown */
+    private final PricingService market = new FixedPricingService(Decimal64Utils.NULL) {
+        private final PriceInfo msft = new FixedPriceInfo("MSFT", Decimal64Utils.NULL) {
+            @Override
+            public @Decimal long getBestAvailableMarketPrice(boolean isBuy) {
+                return isBuy ? ask : bid;
+            }
+        };
+
+        @Override
+        public PriceInfo getInstrumentPrices(CharSequence symbol) {
+            return "MSFT".contentEquals(symbol) ? msft : null;
+        }
+    };
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        addInstrument("IBM", InstrumentType.EQUITY, 150);
+        setMarket(25, 25);
+        msftUpdate.setSymbol("MSFT");
+    }
+
+    @Test
+    public void totalLossMarksOpenPosition() {
+        rule = newTotalRiskRule("MSFT", 40);
+        fill(Side.BUY, 10, "MSFT", 25);
+
+        setMarket(24, 24.1);
+        assertLoss(10);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 24));
+
+        setMarket(20, 20.1);
+        assertLoss(50);
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 20), "Total Loss -50 exceeds maximum 40");
+    }
+
+    @Test
+    public void shortPositionIsMarkedAtAsk() {
+        rule = newTotalRiskRule("MSFT", 100);
+        fill(Side.SELL, 10, "MSFT", 25);
+
+        setMarket(25, 26);
+        assertLoss(10);
+    }
+
+    @Test
+    public void closedPositionRealizesLossAtAverageCost() {
+        rule = newTotalRiskRule("MSFT", 100);
+        fill(Side.BUY, 10, "MSFT", 25);
+        fill(Side.BUY, 10, "MSFT", 23); // average cost 24
+        fill(Side.SELL, 10, "MSFT", 22); // realized -20
+
+        setMarket(24, 24);
+        assertLoss(20);
+
+        fill(Side.SELL, 20, "MSFT", 24); // flip to short 10 @ 24, realized 0
+        setMarket(25, 25);
+        assertLoss(30);
+    }
+
+    @Test
+    public void preexistingPositionAndRealizedPnLAreAccounted() {
+        hasPositions = true;
+        position.setActualPositionSize(Decimal64Utils.fromInt(20));
+        position.setRealizedPnL(Decimal64Utils.fromInt(-15));
+
+        rule = newTotalRiskRule("MSFT", 40); // position of 20 is valued at 25
+        assertLoss(15);
+
+        setMarket(24, 24);
+        assertLoss(35);
+        assertValid(newOrder(Side.SELL, 10, "MSFT", 24));
+
+        setMarket(23, 23);
+        assertInvalid(newOrder(Side.SELL, 10, "MSFT", 23), "Total Loss -55 exceeds maximum 40");
+    }
+
+    @Test
+    public void unknownSymbolIsNotMarked() {
+        rule = newTotalRiskRule("IBM", 40);
+        fill(Side.BUY, 10, "IBM", 150);
+
+        assertLoss(0);
+        assertValid(newOrder(Side.BUY, 10, "IBM", 150));
+    }
+
+    @Test
+    public void totalModeRequiresSymbol() {
+        rule = new SamplePnLRiskRule();
+        rule.setLossMode(SamplePnLRiskRule.LossMode.TOTAL);
+        rule.setMaxPosition(40);
+        rule = init(rule);
+
+        assertEquals(SamplePnLRiskRule.LossMode.REALIZED, rule.getLossMode());
+    }
+
+    @Test
+    public void breachIsLatchedUntilTrade() {
+        rule = newRealizedRiskRule(40);
+        OrderNewRequest resting = assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+        openEvent(ackEvent(resting));
+        assertEquals(Boolean.FALSE, rule.getCurrentValue(MaxLossLatch));
+
+        position.setRealizedPnL(Decimal64Utils.fromInt(-50));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Realized Loss -50 exceeds maximum 40");
+        assertEquals(Boolean.TRUE, rule.getCurrentValue(MaxLossLatch));
+
+        position.setRealizedPnL(Decimal64Utils.ZERO); // not re-evaluated while latched
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Realized Loss -50 exceeds maximum 40");
+        assertTrue(rule.isBreachLatched());
+
+        partialFillEvent(resting, 5);
+        assertEquals(Boolean.FALSE, rule.getCurrentValue(MaxLossLatch));
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    @Test
+    public void priceRecoveryClearsLatchWithoutActiveOrders() {
+        rule = newTotalRiskRule("MSFT", 40);
+        fill(Side.BUY, 10, "MSFT", 25);
+
+        setMarket(20, 20.1);
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 20), "Total Loss -50 exceeds maximum 40"); // rejected order leaves no active orders
+        assertTrue(rule.isBreachLatched());
+
+        setMarket(25, 25.1);
+        rule.onPriceUpdate(msftUpdate);
+        timer.work(clock.time());
+        assertFalse(rule.isBreachLatched());
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    @Test
+    public void limitUpdateClearsLatch() {
+        rule = newRealizedRiskRule(40);
+        position.setRealizedPnL(Decimal64Utils.fromInt(-50));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Realized Loss -50 exceeds maximum 40");
+
+        rule.setMaxPosition(60);
+        assertFalse(rule.isBreachLatched());
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+
+        position.setRealizedPnL(Decimal64Utils.fromInt(-70));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Realized Loss -70 exceeds maximum 60");
+
+        rule.setLimits(null); // limit removed
+        assertEquals(Boolean.FALSE, rule.getCurrentValue(MaxLossLatch));
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PricingService getPricingService() {
+        return market;
+    }
+
+    private void setMarket(double bid, double ask) {
+        this.bid = Decimal64Utils.fromDouble(bid);
+        this.ask = Decimal64Utils.fromDouble(ask);
+    }
+
+    private void fill(Side side, int quantity, String symbol, double price) {
+        OrderNewRequest request = assertValid(newOrder(side, quantity, symbol, price));
+        openEvent(ackEvent(request));
+        completeFillEvent(request);
+    }
+
+    private void assertLoss(double expected) {
+        assertEquals(expected, Decimal64Utils.toDouble((Long) rule.getCurrentValue(MaxLoss)), 1e-9);
+    }
+
+    private SamplePnLRiskRule newTotalRiskRule(String symbol, double maxLoss) {
+        rule = new SamplePnLRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return hasPositions ? position : null;
+            }
+        };
+        rule.setLossMode(SamplePnLRiskRule.LossMode.TOTAL);
+        rule.setSymbol(symbol);
+        rule.setMaxPosition(maxLoss);
+        return init(rule);
+    }
+
+    private SamplePnLRiskRule newRealizedRiskRule(double maxLoss) {
+        rule = new SamplePnLRiskRule();
+        rule.setPositionView(position);
+        rule.setMaxPosition(maxLoss);
+        return init(rule);
+    }
+}
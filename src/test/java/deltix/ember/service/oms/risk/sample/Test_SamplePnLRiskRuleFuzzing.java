@@ -0,0 +1,24 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.limits.RiskRuleFuzzTest;
+import org.junit.Test;
+
+public class Test_SamplePnLRiskRuleFuzzing extends RiskRuleFuzzTest<SamplePnLRiskRule> {
+
+    @Test
+    public void activeOrdersMatchOms() {
+        rule = new SamplePnLRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return getModelPosition();
+            }
+        };
+        fuzz();
+    }
+
+    @Override
+    protected void checkInvariants() {
+        assertInvariant(rule.activeOrders.size() == getActiveOrderCount(), "active orders of the rule differ from OMS");
+    }
+}
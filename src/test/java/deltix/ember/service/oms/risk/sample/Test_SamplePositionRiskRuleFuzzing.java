@@ -0,0 +1,47 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.service.oms.risk.api.PositionView;
+import deltix.ember.service.oms.risk.limits.RiskRuleFuzzTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class Test_SamplePositionRiskRuleFuzzing extends RiskRuleFuzzTest<SamplePositionRiskRule> {
+
+    private static final long MAX_POSITION = 300;
+
+    private long accepted;
+    private long rejected;
+
+    @Test
+    public void decisionsMatchReferenceHeadroom() {
+        rule = new SamplePositionRiskRule() {
+            @Override
+            protected PositionView lookupPositionView() {
+                return getModelPosition();
+            }
+        };
+        rule.setMaxPosition(MAX_POSITION);
+
+        fuzz();
+        assertTrue("Scenario has no rejects", rejected > 0);
+        assertTrue("Scenario has no accepted requests", accepted > 0);
+    }
+
+    /** Estimated LONG (SHORT) position includes the request and must stay within the limit */
+    @Override
+    protected void checkDecision(boolean isBuy, long increase, boolean rejected) {
+        long estimated = isBuy ? getActualPosition() + getOpenBuySize() : getOpenSellSize() - getActualPosition();
+        boolean expected = increase > 0 && estimated > MAX_POSITION;
+        assertInvariant(rejected == expected, rejected ? "request within position headroom was rejected" : "request exceeding position headroom was accepted");
+
+        // monitoring reads between requests must not affect decisions
+        long netPosition = Math.abs(getActualPosition() + getOpenBuySize() - getOpenSellSize());
+        assertInvariant(Decimal64Utils.toLong((Long) rule.getCurrentValue(SamplePositionRiskRule.MaxPosition)) == netPosition, "current value differs from net position");
+        if (rejected)
+            this.rejected++;
+        else
+            this.accepted++;
+    }
+}
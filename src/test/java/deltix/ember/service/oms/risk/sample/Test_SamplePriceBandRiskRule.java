@@ -0,0 +1,163 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.smd.MutableEquityUpdate;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import deltix.ember.service.oms.util.FixedPricingService;
+import deltix.ember.service.price.api.FixedPriceInfo;
+import deltix.ember.service.price.api.PriceInfo;
+import deltix.ember.service.price.api.PricingService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class Test_SamplePriceBandRiskRule extends RiskRuleTestEx<SamplePriceBandRiskRule> {
+
+    private final MutableEquityUpdate update = new MutableEquityUpdate();
+
+    private @Decimal long bid;
+    private @Decimal long ask;
+
+    /** Live MSFT prices (handle is updated in place as in real PricingService), other symbols are unknown */
+    private final PricingService market = new FixedPricingService(Decimal64Utils.NULL) {
+        private final PriceInfo msft = new FixedPriceInfo("MSFT", Decimal64Utils.NULL) {
+            @Override
+            public @Decimal long getBestAvailableMarketPrice(boolean isBuy) {
+                return isBuy ? ask : bid;
+            }
+        };
+
+        @Override
+        public PriceInfo getInstrumentPrices(CharSequence symbol) {
+            return "MSFT".contentEquals(symbol) ? msft : null;
+        }
+    };
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        addInstrument("IBM", InstrumentType.EQUITY, 150);
+        setMarket(25, 25);
+        setClock(1_700_000_000_000L);
+        update.setSymbol("MSFT");
+        update.setInstrumentType(InstrumentType.EQUITY);
+    }
+
+    @Test
+    public void pricesOutsideOfBandAreRejected() {
+        rule = newRiskRule(10);
+        rule.onPriceUpdate(update);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 27.5));
+        assertValid(newOrder(Side.SELL, 10, "MSFT", 22.5));
+        assertValid(newOrder(Side.BUY, 10, "MSFT"));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 28), "Limit price 28 is above price band high 27.5");
+        assertInvalid(newOrder(Side.SELL, 10, "MSFT", 22), "Limit price 22 is below price band low 22.5");
+    }
+
+    @Test
+    public void bandFollowsMarketWithoutInstrumentUpdates() {
+        rule = newRiskRule(10);
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 28), "Limit price 28 is above price band high 27.5");
+
+        setMarket(29.9, 30.1);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 28));
+        assertInvalid(newOrder(Side.SELL, 10, "MSFT", 26.9), "Limit price 26.9 is below price band low 26.91");
+    }
+
+    @Test
+    public void stalePricesAreRejected() {
+        rule = newRiskRule(10, EnumSet.noneOf(InstrumentType.class), 5000);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+
+        advanceClock(Duration.ofMillis(5000));
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+
+        advanceClock(Duration.ofMillis(1));
+        rule.onPriceUpdate(update); // reference data update does not refresh market prices
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Market price is stale");
+
+        setMarket(25, 25.1);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25));
+    }
+
+    @Test
+    public void stalenessIsMeasuredFromSampledPrices() {
+        rule = newRiskRule(10, EnumSet.noneOf(InstrumentType.class), 4000);
+        rule.samplePrices(currentTimeMillis()); // factory timer observes prices after rule went live
+
+        advanceClock(Duration.ofMillis(3000));
+        rule.samplePrices(currentTimeMillis()); // market did not move
+        advanceClock(Duration.ofMillis(1001));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Market price is stale"); // feed froze before the first order
+
+        setMarket(25, 25.1);
+        rule.samplePrices(currentTimeMillis());
+        advanceClock(Duration.ofMillis(4000));
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25)); // age is measured from sampled change, not from this order
+
+        advanceClock(Duration.ofMillis(1));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "Market price is stale");
+    }
+
+    @Test
+    public void deviationInTicks() {
+        rule = newRiskRule(10, EnumSet.of(InstrumentType.EQUITY), 0);
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25), "No tick size to check limit price");
+
+        update.setTickSize(Decimal64Utils.fromDouble(0.01));
+        rule.onPriceUpdate(update);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 25.1));
+        assertValid(newOrder(Side.SELL, 10, "MSFT", 24.9));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT", 25.11), "Limit price 25.11 is above price band high 25.1");
+        assertInvalid(newOrder(Side.SELL, 10, "MSFT", 24.89), "Limit price 24.89 is below price band low 24.9");
+
+        setMarket(26, 26);
+        assertValid(newOrder(Side.BUY, 10, "MSFT", 26.1));
+    }
+
+    @Test
+    public void unknownSymbolIsRejected() {
+        rule = new SamplePriceBandRiskRule();
+        rule.setSymbol("IBM");
+        rule.setMaxDeviation(10);
+        rule = init(rule);
+
+        assertInvalid(newOrder(Side.BUY, 10, "IBM", 25), "No market price to check limit price");
+        assertInvalid(newOrder(Side.BUY, 10, "IBM", 25), "No market price to check limit price");
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public PricingService getPricingService() {
+        return market;
+    }
+
+    private void setMarket(double bid, double ask) {
+        this.bid = Decimal64Utils.fromDouble(bid);
+        this.ask = Decimal64Utils.fromDouble(ask);
+    }
+
+    private SamplePriceBandRiskRule newRiskRule(double maxDeviation) {
+        return newRiskRule(maxDeviation, EnumSet.noneOf(InstrumentType.class), 0);
+    }
+
+    private SamplePriceBandRiskRule newRiskRule(double maxDeviation, Set<InstrumentType> tickInstrumentTypes, long maxPriceAge) {
+        rule = new SamplePriceBandRiskRule(tickInstrumentTypes, maxPriceAge);
+        rule.setSymbol("MSFT");
+        rule.setMaxDeviation(maxDeviation);
+        return init(rule);
+    }
+}
@@ -2,6 +2,7 @@ package deltix.ember.service.oms.risk.sample;
 
 import deltix.ember.message.risk.ProjectionKey;
 import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
 import deltix.ember.message.trade.Side;
 import deltix.ember.service.InstrumentUpdateHandler;
 import deltix.ember.service.oms.risk.api.PositionView;
@@ -33,6 +34,16 @@ public class Test_SampleQuantityRiskRule extends RiskRuleTestEx<SampleQuantityRi
     }
 
 
+    @Test
+    public void smallOrdersAreAllocationFree () {
+        rule = newRiskRule(15);
+        enableAllocationTracking(100);
+        for (int i = 0; i < 300; i++) {
+            OrderNewRequest order = assertValid(newOrder(Side.BUY, 10, "MSFT"));
+            assertValid(cancelReplaceOrder(order, 12));
+        }
+    }
+
     // helpers
 
 
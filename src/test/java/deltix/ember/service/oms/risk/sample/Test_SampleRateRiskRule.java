@@ -0,0 +1,147 @@
+package deltix.ember.service.oms.risk.sample;
+
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.OrderReplaceRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.api.RiskObserver;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static deltix.ember.service.oms.risk.sample.SampleRateRiskRule.MaxMessagesPerSecond;
+import static deltix.ember.service.oms.risk.sample.SampleRateRiskRule.MaxOrdersPerSecond;
+import static org.junit.Assert.assertEquals;
+
+public class Test_SampleRateRiskRule extends RiskRuleTestEx<SampleRateRiskRule> {
+
+    private long breaches;
+    private final RiskObserver countingObserver = (path, limitName, rejectCode, reason) -> breaches++;
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        setClock(1_700_000_000_000L);
+    }
+
+    @Test
+    public void ordersAboveRateAreRejected() {
+        rule = newRiskRule(MaxOrdersPerSecond, 3);
+        assertValid(newOrder(Side.BUY, 10, "MSFT"));
+        assertValid(newOrder(Side.BUY, 10, "MSFT"));
+        assertValid(newOrder(Side.BUY, 10, "MSFT"));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT"), "Request rate 3 per 1000 ms reached maximum 3");
+
+        advanceClock(Duration.ofMillis(999));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT"), "reached maximum 3");
+
+        advanceClock(Duration.ofMillis(1));
+        assertValid(newOrder(Side.BUY, 10, "MSFT"));
+    }
+
+    @Test
+    public void replacesCountAsMessages() {
+        rule = newRiskRule(MaxMessagesPerSecond, 2);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 10, "MSFT"));
+        OrderReplaceRequest replace = assertValid(cancelReplaceOrder(order, 12));
+        assertInvalid(cancelReplaceOrder(replace, 14), "reached maximum 2");
+    }
+
+    @Test
+    public void replacesDoNotCountAsOrders() {
+        rule = newRiskRule(MaxOrdersPerSecond, 1);
+        OrderNewRequest order = assertValid(newOrder(Side.BUY, 10, "MSFT"));
+        OrderReplaceRequest replace = assertValid(cancelReplaceOrder(order, 12));
+        assertValid(cancelReplaceOrder(replace, 14));
+        assertInvalid(newOrder(Side.BUY, 10, "MSFT"), "reached maximum 1");
+    }
+
+    @Test
+    public void burstIsCappedUntilWindowRollsOver() {
+        rule = newRiskRule(MaxOrdersPerSecond, 1_000_000);
+        OrderNewRequest request = newOrder(Side.BUY, 10, "MSFT");
+        RiskOrder order = processor.placeOrder(request);
+
+        assertEquals(1_000_000, burst(order, request, 3_000_000));
+        assertEquals(Decimal64Utils.fromLong(1_000_000), rule.getCurrentValue(MaxOrdersPerSecond));
+
+        advanceClock(Duration.ofMillis(500));
+        assertEquals(0, burst(order, request, 1_000_000));
+
+        advanceClock(Duration.ofMillis(500)); // the whole first bucket expires
+        assertEquals(1_000_000, burst(order, request, 2_000_000));
+    }
+
+    @Test
+    public void steadyFlowRollsBucketByBucket() {
+        rule = newRiskRule(MaxOrdersPerSecond, 1_000_000);
+        OrderNewRequest request = newOrder(Side.BUY, 10, "MSFT");
+        RiskOrder order = processor.placeOrder(request);
+
+        // fill the window in 10 steps of 100 ms
+        for (int i = 0; i < 10; i++) {
+            assertEquals(100_000, burst(order, request, 100_000));
+            advanceClock(Duration.ofMillis(100));
+        }
+
+        // from now on each step frees exactly one bucket
+        for (int i = 0; i < 50; i++) {
+            assertEquals(100_000, burst(order, request, 250_000));
+            advanceClock(Duration.ofMillis(100));
+        }
+
+        // long pause expires the whole window
+        advanceClock(Duration.ofMinutes(5));
+        assertEquals(Decimal64Utils.fromLong(0), rule.getCurrentValue(MaxOrdersPerSecond));
+        assertEquals(1_000_000, burst(order, request, 1_500_000));
+    }
+
+    @Test
+    public void shortWindowAllowsAtLeastOneRequest() {
+        rule = init(new SampleRateRiskRule(MaxOrdersPerSecond, 100, 10));
+        rule.setMaxRate(5); // 0.5 per window is rounded up
+        OrderNewRequest request = newOrder(Side.BUY, 10, "MSFT");
+        RiskOrder order = processor.placeOrder(request);
+
+        assertEquals(1, burst(order, request, 3));
+        advanceClock(Duration.ofMillis(100));
+        assertEquals(1, burst(order, request, 3));
+    }
+
+    @Test
+    public void warmUpIsNotCounted() {
+        rule = newRiskRule(MaxOrdersPerSecond, 1);
+        OrderNewRequest request = newOrder(Side.BUY, 10, "MSFT");
+        RiskOrder order = processor.placeOrder(request);
+        for (int i = 0; i < 1000; i++)
+            rule.onNewOrderRequest(order, request, null);
+
+        assertEquals(1, burst(order, request, 2));
+    }
+
+    // helpers
+
+    /** @return number of accepted requests */
+    private long burst(RiskOrder order, OrderNewRequest request, int count) {
+        long breachesBefore = breaches;
+        for (int i = 0; i < count; i++)
+            rule.onNewOrderRequest(order, request, countingObserver);
+        return count - (breaches - breachesBefore);
+    }
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private SampleRateRiskRule newRiskRule(String limitName, int maxRate) {
+        rule = init(new SampleRateRiskRule(limitName));
+        rule.setMaxRate(maxRate);
+        return rule;
+    }
+}
@@ -0,0 +1,86 @@
+package deltix.ember.service.oms.risk.sample;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Test_SlidingWindowCounter {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void eventsExpireBucketByBucket() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        counter.increment(START);
+        counter.increment(START + 150);
+        counter.increment(START + 950);
+        assertEquals(3, counter.count(START + 999));
+
+        assertEquals(2, counter.count(START + 1000)); // first bucket expired
+        assertEquals(1, counter.count(START + 1100));
+        assertEquals(0, counter.count(START + 5000));
+    }
+
+    @Test
+    public void tryIncrementRespectsMaximum() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        assertTrue(counter.tryIncrement(START, 2));
+        assertTrue(counter.tryIncrement(START, 2));
+        assertFalse(counter.tryIncrement(START + 999, 2));
+        assertTrue(counter.tryIncrement(START + 1000, 2));
+    }
+
+    @Test
+    public void negativeTimesUseFloorBuckets() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        counter.increment(-1500);
+        counter.increment(-1450);
+        counter.increment(-50);
+        assertEquals(3, counter.count(-600));
+
+        assertEquals(1, counter.count(-400)); // bucket [-1500, -1400) expired
+        assertEquals(1, counter.count(0));
+        assertEquals(0, counter.count(1000));
+    }
+
+    @Test
+    public void stateRoundTrip() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        counter.increment(START);
+        counter.increment(START + 500);
+        counter.increment(START + 500);
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        counter.write(buffer);
+        int length = buffer.position();
+        buffer.flip();
+
+        SlidingWindowCounter restored = new SlidingWindowCounter(1000, 10);
+        restored.read(buffer);
+        assertEquals(length, buffer.position());
+        assertEquals(3, restored.count(START + 600));
+        assertEquals(2, restored.count(START + 1000));
+        assertEquals(0, restored.count(START + 1500));
+    }
+
+    @Test
+    public void stateOfDifferentWindowIsDiscarded() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+        counter.increment(START);
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        counter.write(buffer);
+        buffer.putLong(42); // next entry
+        buffer.flip();
+
+        SlidingWindowCounter restored = new SlidingWindowCounter(2000, 10);
+        restored.increment(START);
+        restored.read(buffer);
+        assertEquals(0, restored.count(START));
+        assertEquals(42, buffer.getLong());
+    }
+}
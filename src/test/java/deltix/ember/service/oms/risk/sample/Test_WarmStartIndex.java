@@ -0,0 +1,108 @@
+package deltix.ember.service.oms.risk.sample;
+
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.OrderNewRequest;
+import deltix.ember.message.trade.Side;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class Test_WarmStartIndex extends RiskRuleTestEx<SampleRiskRule> {
+
+    private final WarmStartIndex index = new WarmStartIndex();
+
+    private final ProjectionOrderFilter msft = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, "MSFT"));
+    private final ProjectionOrderFilter ibm = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, "IBM"));
+    private final ProjectionOrderFilter aapl = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, "AAPL"));
+    private final ProjectionOrderFilter any = new ProjectionOrderFilter(makeProjectionPath(ProjectionKey.Symbol, ProjectionPathUtil.WILDCARD));
+
+    @Before
+    public void init() {
+        addInstrument("MSFT", InstrumentType.EQUITY, 25);
+        addInstrument("IBM", InstrumentType.EQUITY, 150);
+    }
+
+    @Test
+    public void rowsOfSameProjectionShareSingleScan() {
+        placeOrder("MSFT");
+        placeOrder("MSFT");
+        placeOrder("IBM");
+
+        long msftTicket = index.register();
+        long ibmTicket = index.register();
+        long aaplTicket = index.register();
+
+        assertEquals(2, visit(msftTicket, msft).size());
+        assertEquals(1, visit(ibmTicket, ibm).size());
+        assertEquals(0, visit(aaplTicket, aapl).size());
+        assertEquals(1, index.getScans());
+    }
+
+    @Test
+    public void newPatternRequiresAnotherScan() {
+        placeOrder("MSFT");
+        placeOrder("IBM");
+
+        long msftTicket = index.register();
+        long anyTicket = index.register();
+
+        assertEquals(1, visit(msftTicket, msft).size());
+        assertEquals(2, visit(anyTicket, any).size());
+        assertEquals(2, index.getScans());
+    }
+
+    @Test
+    public void orderFlowInvalidatesIndex() {
+        placeOrder("MSFT");
+
+        long first = index.register();
+        long second = index.register();
+        assertEquals(1, visit(first, msft).size());
+
+        placeOrder("MSFT");
+        index.invalidate();
+        assertEquals(2, visit(second, msft).size());
+        assertEquals(2, index.getScans());
+    }
+
+    @Test
+    public void rulesRegisteredAfterScanTriggerNewScan() {
+        placeOrder("MSFT");
+
+        long first = index.register();
+        index.register(); // keeps index alive
+        assertEquals(1, visit(first, msft).size());
+
+        placeOrder("MSFT");
+        long late = index.register();
+        assertEquals(2, visit(late, msft).size());
+        assertEquals(2, index.getScans());
+    }
+
+    // helpers
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        throw new UnsupportedOperationException();
+    }
+
+    private List<RiskOrder> visit(long ticket, ProjectionOrderFilter filter) {
+        List<RiskOrder> result = new ArrayList<>();
+        index.iterate(ticket, filter, this, (order, orders) -> orders.add(order), result);
+        return result;
+    }
+
+    private void placeOrder(String symbol) {
+        OrderNewRequest request = newOrder(Side.BUY, 10, symbol, 25);
+        RiskOrder order = processor.placeOrder(request);
+        cache.add(order.getLastOrder());
+    }
+}
@@ -0,0 +1,90 @@
+package deltix.ember.service.oms.tools;
+
+import deltix.ember.message.bus.client.MessageBusClient;
+import deltix.ember.message.risk.RiskUpdateResponse;
+import deltix.ember.message.trade.*;
+import deltix.ember.sample.SampleSupportTools;
+import deltix.ember.service.OrderEventHandler;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Receives messages that OMS publishes to clients (Ember event channel of the message bus) in a background thread.
+ * Only messages addressed to {@link SampleSupportTools#CLIENT_SOURCE_ID} are dispatched: order events go to
+ * {@link OrderEventHandler}, risk update responses go to response consumer.
+ *
+ * Sample tools use it to close the loop: measure request-to-event latency and apply flow control.
+ * Handlers are invoked from listener thread.
+ */
+final class OmsEventListener extends SampleSupportTools implements AutoCloseable {
+
+    private final OrderEventHandler eventHandler;
+    private final Consumer<RiskUpdateResponse> responseHandler;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    OmsEventListener(OrderEventHandler eventHandler, Consumer<RiskUpdateResponse> responseHandler) {
+        this.eventHandler = eventHandler;
+        this.responseHandler = responseHandler;
+        this.thread = new Thread(this::run, "oms-event-listener");
+        this.thread.setDaemon(true);
+    }
+
+    /** Subscribes to event channel, events published before this call are not received */
+    OmsEventListener start() {
+        thread.start();
+        return this;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        thread.join();
+    }
+
+    private void run() {
+        try (MessageBusClient client = MessageBusClient.create()) { // connects to Ember configured via ember.home, like sendRequest()
+            client.subscribeEvents();
+            while ( ! closed) {
+                if (client.poll(this::onMessage) == 0)
+                    LockSupport.parkNanos(10_000);
+            }
+        } catch (Exception e) {
+            System.err.println("Event subscription failed: " + e);
+        }
+    }
+
+    private void onMessage(Object message) {
+        if (message instanceof OrderEvent) {
+            OrderEvent event = (OrderEvent) message;
+            if (event.getDestinationId() == CLIENT_SOURCE_ID)
+                dispatch(event);
+        } else if (message instanceof RiskUpdateResponse) {
+            RiskUpdateResponse response = (RiskUpdateResponse) message;
+            if (response.getDestinationId() == CLIENT_SOURCE_ID && responseHandler != null)
+                responseHandler.accept(response);
+        }
+    }
+
+    private void dispatch(OrderEvent event) {
+        if (eventHandler == null)
+            return;
+
+        if (event instanceof OrderNewEvent)
+            eventHandler.onOrderNewEvent((OrderNewEvent) event);
+        else if (event instanceof OrderRejectEvent)
+            eventHandler.onOrderRejectEvent((OrderRejectEvent) event);
+        else if (event instanceof OrderReplaceEvent)
+            eventHandler.onOrderReplaceEvent((OrderReplaceEvent) event);
+        else if (event instanceof OrderReplaceRejectEvent)
+            eventHandler.onOrderReplaceRejectEvent((OrderReplaceRejectEvent) event);
+        else if (event instanceof OrderCancelEvent)
+            eventHandler.onOrderCancelEvent((OrderCancelEvent) event);
+        else if (event instanceof OrderCancelRejectEvent)
+            eventHandler.onOrderCancelRejectEvent((OrderCancelRejectEvent) event);
+        else if (event instanceof OrderTradeReportEvent)
+            eventHandler.onOrderTradeReportEvent((OrderTradeReportEvent) event);
+        // other events are not used by sample tools
+    }
+}
@@ -0,0 +1,350 @@
+package deltix.ember.service.oms.tools;
+
+import deltix.anvil.util.codec.AlphanumericCodec;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.trade.*;
+import deltix.ember.sample.SampleSupportTools;
+import deltix.ember.service.OrderEventHandler;
+import deltix.ember.service.OrderRequestHandler;
+import deltix.ember.service.oms.risk.sample.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load generator built on top of OrderSubmitSample: pipelines NEW / REPLACE / CANCEL flows at target rate
+ * across many traders and symbols and measures request-to-ack latency of each flow.
+ *
+ * Run it against Ember with SIM connector (see home/ember.conf) to see how much latency custom risk rules add end-to-end.
+ * Load profile is configured via system properties, for example:
+ * <pre>
+ *     -Drate=20000 -Dduration=60 -Dtraders=50 -Dsymbols=BTCUSD,ETHUSD -Dslots=4096 -DreplacePercent=50
+ * </pre>
+ *
+ * Each slot holds one order that goes through NEW -&gt; (REPLACE)* -&gt; CANCEL lifecycle.
+ * Requests are preallocated per slot and reused. Slot sends its next request only after previous one was
+ * acknowledged or rejected (events are received via {@link OmsEventListener}), so <code>slots</code> bounds
+ * the number of requests in flight. Latency is measured from the intended send time
+ * (to avoid coordinated omission when generator falls behind) to the corresponding event.
+ * Generator also reports send lag (actual minus intended send time).
+ */
+public class OrderLoadGenerator extends SampleSupportTools {
+
+    private static final int RATE = Integer.getInteger("rate", 1000); // requests per second
+    private static final int DURATION = Integer.getInteger("duration", 30); // seconds
+    private static final int TRADERS = Integer.getInteger("traders", 10);
+    private static final String[] SYMBOLS = System.getProperty("symbols", "BTCUSD").split(",");
+    private static final int SLOTS = Integer.getInteger("slots", 1024); // max number of orders in flight
+    private static final int REPLACE_PERCENT = Integer.getInteger("replacePercent", 50);
+    private static final int QUANTITY = Integer.getInteger("quantity", 10);
+    private static final double PRICE = Double.parseDouble(System.getProperty("price", "1000")); // far from market to avoid fills
+    private static final long DESTINATION_ID = AlphanumericCodec.encode(System.getProperty("destination", "SIM"));
+
+    // slot states
+    private static final int FREE = 0;
+    private static final int PENDING_NEW = 1;
+    private static final int OPEN = 2;
+    private static final int PENDING_REPLACE = 3;
+    private static final int REPLACED = 4;
+    private static final int PENDING_CANCEL = 5;
+
+    private final AtomicIntegerArray states = new AtomicIntegerArray(SLOTS);
+    private final AtomicLongArray sendTimes = new AtomicLongArray(SLOTS); // intended send time of request in flight (nanos)
+
+    // sender thread state
+    private final MutableOrderNewRequest[] newRequests = new MutableOrderNewRequest[SLOTS];
+    private final StringBuilder[] orderIds = new StringBuilder[SLOTS];
+    private final StringBuilder[] nextOrderIds = new StringBuilder[SLOTS];
+    private final int[] sequences = new int[SLOTS];
+    private final MutableOrderReplaceRequest replaceRequest = new MutableOrderReplaceRequest();
+    private final MutableOrderCancelRequest cancelRequest = new MutableOrderCancelRequest();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private long random = System.nanoTime() | 1;
+    private long sent;
+    private long stalled;
+    private final LatencyHistogram sendLag = new LatencyHistogram();
+
+    // written by event listener thread
+    private final LatencyHistogram newLatency = new LatencyHistogram();
+    private final LatencyHistogram replaceLatency = new LatencyHistogram();
+    private final LatencyHistogram cancelLatency = new LatencyHistogram();
+    private final LatencyHistogram rejectLatency = new LatencyHistogram();
+
+    public static void main(String[] args) throws InterruptedException {
+        OrderLoadGenerator generator = new OrderLoadGenerator();
+        try (OmsEventListener listener = new OmsEventListener(generator.new LatencyRecorder(), null).start()) {
+            sendRequest(generator::run);
+        }
+        generator.printReport();
+    }
+
+    private OrderLoadGenerator() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            String trader = "trader" + (slot % TRADERS);
+            String symbol = SYMBOLS[(slot / TRADERS) % SYMBOLS.length];
+
+            MutableOrderNewRequest request = OrderSubmitSample.createNewOrderRequest(Side.BUY, QUANTITY, symbol, PRICE);
+            request.setTraderId(trader);
+            request.setDestinationId(DESTINATION_ID);
+            newRequests[slot] = request;
+            orderIds[slot] = new StringBuilder(32);
+            nextOrderIds[slot] = new StringBuilder(32);
+        }
+        replaceRequest.setSourceId(CLIENT_SOURCE_ID);
+        replaceRequest.setDestinationId(DESTINATION_ID);
+        replaceRequest.setOrderType(OrderType.LIMIT);
+        replaceRequest.setTimeInForce(TimeInForce.DAY);
+        cancelRequest.setSourceId(CLIENT_SOURCE_ID);
+        cancelRequest.setDestinationId(DESTINATION_ID);
+    }
+
+    /// region Sender
+
+    private void run(OrderRequestHandler publication) {
+        final long interval = 1_000_000_000L / RATE;
+        long sendTime = System.nanoTime();
+        final long endTime = sendTime + DURATION * 1_000_000_000L;
+
+        System.out.println("Sending " + RATE + " requests/sec for " + DURATION + " sec using " + SLOTS + " order slots");
+        int slot = 0;
+        while (sendTime < endTime) {
+            long now;
+            while ((now = System.nanoTime()) < sendTime)
+                Thread.onSpinWait();
+            sendLag.record(now - sendTime);
+
+            boolean progressed = false;
+            for (int attempt = 0; attempt < SLOTS && ! progressed; attempt++) {
+                slot = (slot + 1 == SLOTS) ? 0 : slot + 1;
+                progressed = sendNext(publication, slot, sendTime);
+            }
+            if ( ! progressed)
+                stalled++; // all slots wait for acks
+
+            sendTime += interval;
+        }
+
+        drain();
+        for (slot = 0; slot < SLOTS; slot++) { // leave no orders behind
+            int state = states.get(slot);
+            if (state == REPLACED)
+                swapOrderIds(slot);
+            if (state == OPEN || state == REPLACED)
+                sendCancel(publication, slot, System.nanoTime());
+        }
+        drain();
+    }
+
+    /** Waits for acknowledgements of requests in flight */
+    private static void drain() {
+        try {
+            TimeUnit.SECONDS.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return false if order in given slot awaits acknowledgement */
+    private boolean sendNext(OrderRequestHandler publication, int slot, long sendTime) {
+        switch (states.get(slot)) {
+            case FREE:
+                sendNew(publication, slot, sendTime);
+                return true;
+
+            case REPLACED:
+                swapOrderIds(slot);
+                // fall through
+            case OPEN:
+                if (nextRandom(100) < REPLACE_PERCENT)
+                    sendReplace(publication, slot, sendTime);
+                else
+                    sendCancel(publication, slot, sendTime);
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private void sendNew(OrderRequestHandler publication, int slot, long sendTime) {
+        MutableOrderNewRequest request = newRequests[slot];
+        request.setOrderId(nextOrderId(orderIds[slot], slot));
+        request.setTimestamp(System.currentTimeMillis());
+
+        send(slot, PENDING_NEW, sendTime);
+        publication.onNewOrderRequest(request);
+    }
+
+    private void sendReplace(OrderRequestHandler publication, int slot, long sendTime) {
+        MutableOrderNewRequest original = newRequests[slot];
+        replaceRequest.setOrderId(nextOrderId(nextOrderIds[slot], slot));
+        replaceRequest.setOriginalOrderId(orderIds[slot]);
+        replaceRequest.setSide(original.getSide());
+        replaceRequest.setSymbol(original.getSymbol());
+        replaceRequest.setTraderId(original.getTraderId());
+        replaceRequest.setQuantity(Decimal64Utils.fromLong(QUANTITY + nextRandom(QUANTITY)));
+        replaceRequest.setLimitPrice(original.getLimitPrice());
+        replaceRequest.setTimestamp(System.currentTimeMillis());
+
+        send(slot, PENDING_REPLACE, sendTime);
+        publication.onReplaceOrderRequest(replaceRequest);
+    }
+
+    private void sendCancel(OrderRequestHandler publication, int slot, long sendTime) {
+        cancelRequest.setRequestId(nextOrderId(nextOrderIds[slot], slot));
+        cancelRequest.setOrderId(orderIds[slot]);
+        cancelRequest.setTimestamp(System.currentTimeMillis());
+
+        send(slot, PENDING_CANCEL, sendTime);
+        publication.onCancelOrderRequest(cancelRequest);
+    }
+
+    private void send(int slot, int pendingState, long sendTime) {
+        sendTimes.set(slot, sendTime);
+        states.set(slot, pendingState);
+        sent++;
+    }
+
+    /** Order ID format: runId-slot-sequence (listener parses slot back) */
+    private StringBuilder nextOrderId(StringBuilder orderId, int slot) {
+        orderId.setLength(0);
+        return orderId.append(runId).append('-').append(slot).append('-').append(++sequences[slot]);
+    }
+
+    private void swapOrderIds(int slot) {
+        StringBuilder orderId = orderIds[slot];
+        orderIds[slot] = nextOrderIds[slot];
+        nextOrderIds[slot] = orderId;
+        states.set(slot, OPEN);
+    }
+
+    /** xorshift random in [0, bound) */
+    private int nextRandom(int bound) {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) ((random >>> 1) % bound);
+    }
+
+    /// endregion
+
+    /// region Events
+
+    /** Receives events addressed to this client from {@link OmsEventListener} thread */
+    private final class LatencyRecorder implements OrderEventHandler {
+
+        @Override
+        public void onOrderNewEvent(OrderNewEvent event) {
+            acknowledge(event, PENDING_NEW, OPEN, newLatency);
+        }
+
+        @Override
+        public void onOrderRejectEvent(OrderRejectEvent event) {
+            acknowledge(event, PENDING_NEW, FREE, rejectLatency);
+        }
+
+        @Override
+        public void onOrderReplaceEvent(OrderReplaceEvent event) {
+            acknowledge(event, PENDING_REPLACE, REPLACED, replaceLatency);
+        }
+
+        @Override
+        public void onOrderReplaceRejectEvent(OrderReplaceRejectEvent event) {
+            acknowledge(event, PENDING_REPLACE, OPEN, rejectLatency);
+        }
+
+        @Override
+        public void onOrderCancelEvent(OrderCancelEvent event) {
+            acknowledge(event, PENDING_CANCEL, FREE, cancelLatency);
+        }
+
+        @Override
+        public void onOrderCancelRejectEvent(OrderCancelRejectEvent event) {
+            acknowledge(event, PENDING_CANCEL, FREE, rejectLatency); // most likely order is already complete
+        }
+
+        @Override
+        public void onOrderPendingNewEvent(OrderPendingNewEvent event) {
+        }
+
+        @Override
+        public void onOrderPendingCancelEvent(OrderPendingCancelEvent event) {
+        }
+
+        @Override
+        public void onOrderPendingReplaceEvent(OrderPendingReplaceEvent event) {
+        }
+
+        @Override
+        public void onOrderTradeReportEvent(OrderTradeReportEvent event) {
+        }
+
+        @Override
+        public void onOrderTradeCancelEvent(OrderTradeCancelEvent event) {
+        }
+
+        @Override
+        public void onOrderTradeCorrectEvent(OrderTradeCorrectEvent event) {
+        }
+
+        @Override
+        public void onOrderStatusEvent(OrderStatusEvent event) {
+        }
+
+        @Override
+        public void onOrderRestateEvent(OrderRestateEvent event) {
+        }
+
+        private void acknowledge(OrderEvent event, int expectedState, int newState, LatencyHistogram histogram) {
+            int slot = parseSlot(event.getOrderId());
+            if (slot >= 0 && states.get(slot) == expectedState) {
+                histogram.record(System.nanoTime() - sendTimes.get(slot));
+                states.set(slot, newState);
+            }
+        }
+
+        /** @return slot encoded in order ID or -1 if this order was not sent by this run */
+        private int parseSlot(CharSequence orderId) {
+            int length = orderId.length();
+            int index = runId.length();
+            if (length <= index || orderId.charAt(index) != '-')
+                return -1;
+            for (int i = 0; i < index; i++) {
+                if (orderId.charAt(i) != runId.charAt(i))
+                    return -1;
+            }
+
+            int slot = 0;
+            for (index++; index < length; index++) {
+                char ch = orderId.charAt(index);
+                if (ch == '-')
+                    return (slot < SLOTS) ? slot : -1;
+                slot = slot * 10 + (ch - '0');
+            }
+            return -1;
+        }
+    }
+
+    /// endregion
+
+    private void printReport() {
+        System.out.println("Sent " + sent + " requests (" + stalled + " send opportunities stalled waiting for acks)");
+        printLatency("SEND LAG           ", sendLag);
+        printLatency("NEW     -> ACK     ", newLatency);
+        printLatency("REPLACE -> REPLACED", replaceLatency);
+        printLatency("CANCEL  -> CANCELED", cancelLatency);
+        printLatency("REJECTS            ", rejectLatency);
+    }
+
+    private static void printLatency(String flow, LatencyHistogram histogram) {
+        System.out.printf("%s count: %8d  p50: %8.1f  p90: %8.1f  p99: %8.1f  p99.9: %8.1f  max: %8.1f (us)%n",
+                flow,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+}
@@ -20,7 +20,7 @@ public class OrderSubmitSample extends SampleSupportTools {
         );
     }
 
-    private static MutableOrderNewRequest createNewOrderRequest(Side side, int size, String symbol, double price) {
+    static MutableOrderNewRequest createNewOrderRequest(Side side, int size, String symbol, double price) {
         MutableOrderNewRequest request = new MutableOrderNewRequest();
         request.setOrderId(Long.toString(System.currentTimeMillis() % 100000000000L));
         request.setSide(side);
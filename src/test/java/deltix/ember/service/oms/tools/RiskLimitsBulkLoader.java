@@ -0,0 +1,212 @@
+package deltix.ember.service.oms.tools;
+
+import deltix.ember.message.risk.*;
+import deltix.ember.sample.SampleSupportTools;
+import deltix.ember.service.oms.risk.api.RiskUtils;
+import deltix.ember.service.oms.risk.sample.LatencyHistogram;
+import deltix.util.collections.generated.ObjectArrayList;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk loader of risk limits: streams limits of entire risk table from CSV file as batched RiskUpdateRequests.
+ *
+ * First line of the file defines projection keys followed by limit names, for example:
+ * <pre>
+ *     Trader,Symbol,MaxQuantity,MaxPosition
+ *     jdoe,BTCUSD,100,1000
+ *     jdoe,ETHUSD,50,
+ * </pre>
+ * Empty cell leaves limit undefined. Each row becomes INSERT command of Trader/Symbol projection.
+ *
+ * Settings (system properties):
+ * <ul>
+ *     <li>batchSize - maximum number of commands per RiskUpdateRequest (default 1000)</li>
+ *     <li>maxInFlight - maximum number of batches sent but not yet confirmed by server (default 4)</li>
+ *     <li>responseTimeout - seconds to wait for server response before loader gives up (default 30)</li>
+ * </ul>
+ * Flow control: requests are numbered <code>bulk-1</code>, <code>bulk-2</code>, ... and each RiskUpdateResponse
+ * (received via {@link OmsEventListener}) is correlated with its request by request ID. Loader sends next batch only
+ * while fewer than maxInFlight batches await response. Apply time of a batch is measured from publication
+ * to response. After the last batch loader waits for responses to all batches, so completion confirms that
+ * entire table was loaded.
+ * Usage: <code>RiskLimitsBulkLoader limits.csv</code>
+ */
+public class RiskLimitsBulkLoader extends SampleSupportTools {
+
+    private static final int BATCH_SIZE = Integer.getInteger("batchSize", 1000);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("maxInFlight", 4);
+    private static final int RESPONSE_TIMEOUT = Integer.getInteger("responseTimeout", 30); // seconds
+    private static final int PROGRESS_INTERVAL = 10; // batches
+    private static final String REQUEST_ID_PREFIX = "bulk-";
+
+    private final String projection;
+    private final ProjectionKey[] keys;
+    private final String[] limitNames;
+
+    private final Semaphore window = new Semaphore(MAX_IN_FLIGHT);
+    private final Map<String, Long> sendTimes = new ConcurrentHashMap<>(); // request ID -> publication time of batch in flight
+
+    private long rows;
+    private long batches;
+
+    // written by event listener thread
+    private final LatencyHistogram applyTimes = new LatencyHistogram();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1)
+            throw new IllegalArgumentException("Expecting path to CSV file with risk limits");
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+            RiskLimitsBulkLoader loader = new RiskLimitsBulkLoader(reader.readLine());
+            try (OmsEventListener listener = new OmsEventListener(null, loader::onResponse).start()) {
+                sendRequest(
+                        (publication) -> loader.load(reader, publication::onRiskUpdateRequest)
+                );
+            }
+        }
+    }
+
+    RiskLimitsBulkLoader(String header) {
+        if (header == null)
+            throw new IllegalArgumentException("CSV file is empty");
+
+        List<ProjectionKey> keys = new ArrayList<>();
+        List<String> limitNames = new ArrayList<>();
+        for (String column : header.split(",")) {
+            column = column.trim();
+            ProjectionKey key = findProjectionKey(column);
+            if (key != null) {
+                if ( ! limitNames.isEmpty())
+                    throw new IllegalArgumentException("Projection keys must precede limit names: " + column);
+                keys.add(key);
+            } else {
+                limitNames.add(column);
+            }
+        }
+        if (keys.isEmpty() || limitNames.isEmpty())
+            throw new IllegalArgumentException("Header must define projection keys and limit names: " + header);
+
+        this.keys = keys.toArray(new ProjectionKey[0]);
+        this.limitNames = limitNames.toArray(new String[0]);
+        this.projection = String.join("/", keys.stream().map(ProjectionKey::name).toArray(String[]::new));
+    }
+
+    void load(BufferedReader reader, RiskUpdatePublisher publisher) {
+        final long startTime = System.nanoTime();
+
+        try {
+            ObjectArrayList<RiskTableCommand> commands = new ObjectArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+
+                commands.add(parseCommand(line));
+                if (commands.size() == BATCH_SIZE) {
+                    sendBatch(commands, publisher);
+                    commands = new ObjectArrayList<>(BATCH_SIZE);
+                }
+            }
+            if ( ! commands.isEmpty())
+                sendBatch(commands, publisher);
+
+            acquire(MAX_IN_FLIGHT); // all batches are confirmed
+            window.release(MAX_IN_FLIGHT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("Loaded %d rows of %s in %d batches in %.1f sec (%.0f rows/sec). Batch apply time p50: %.1f ms, p99: %.1f ms, max: %.1f ms%n",
+                rows, projection, batches, seconds, rows / seconds,
+                applyTimes.getValueAtPercentile(50) / 1e6, applyTimes.getValueAtPercentile(99) / 1e6, applyTimes.getMaxValue() / 1e6);
+    }
+
+    private MutableRiskTableCommand parseCommand(String line) {
+        String[] cells = line.split(",", -1);
+        if (cells.length < keys.length)
+            throw new IllegalArgumentException("Row " + (rows + 1) + " does not define all projection keys: " + line);
+
+        ObjectArrayList<RiskCondition> conditions = new ObjectArrayList<>(keys.length);
+        for (int i = 0; i < keys.length; i++)
+            conditions.add(RiskUtils.makeCondition(keys[i], cells[i].trim()));
+
+        ObjectArrayList<RiskLimit> limits = new ObjectArrayList<>(limitNames.length);
+        for (int i = 0; i < limitNames.length; i++) {
+            int cell = keys.length + i;
+            if (cell < cells.length && ! cells[cell].trim().isEmpty())
+                limits.add(RiskUtils.makeLimit(limitNames[i], cells[cell].trim()));
+        }
+
+        MutableRiskTableCommand command = new MutableRiskTableCommand();
+        command.setCmdType(RiskTableCommandType.INSERT);
+        command.setConditions(conditions);
+        command.setLimits(limits);
+        rows++;
+        return command;
+    }
+
+    private void sendBatch(ObjectArrayList<RiskTableCommand> commands, RiskUpdatePublisher publisher) {
+        MutableRiskUpdateRequest request = new MutableRiskUpdateRequest();
+        request.setSourceId(CLIENT_SOURCE_ID);
+        request.setTimestamp(System.currentTimeMillis());
+        request.setProjection(projection);
+        request.setChangedByUserId("riskmanager");
+        String requestId = REQUEST_ID_PREFIX + (batches + 1);
+        request.setRequestId(requestId);
+        request.setCommands(commands);
+
+        acquire(1);
+        sendTimes.put(requestId, System.nanoTime());
+        publisher.onRiskUpdateRequest(request);
+        batches++;
+
+        if (batches % PROGRESS_INTERVAL == 0)
+            System.out.printf("Sent %d batches (%d rows), %d batches in flight%n", batches, rows, sendTimes.size());
+    }
+
+    /** Waits until server confirms enough batches in flight to free given number of window permits */
+    private void acquire(int permits) {
+        try {
+            if ( ! window.tryAcquire(permits, RESPONSE_TIMEOUT, TimeUnit.SECONDS))
+                throw new IllegalStateException("Server did not respond within " + RESPONSE_TIMEOUT + " sec, batches awaiting response: " + sendTimes.keySet());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for server response", e);
+        }
+    }
+
+    /** Called from event listener thread. Ignores responses to requests of other clients or runs */
+    void onResponse(RiskUpdateResponse response) {
+        CharSequence requestId = response.getRequestId();
+        Long sendTime = (requestId != null) ? sendTimes.remove(requestId.toString()) : null;
+        if (sendTime != null) {
+            applyTimes.record(System.nanoTime() - sendTime);
+            window.release();
+        }
+    }
+
+    private static ProjectionKey findProjectionKey(String name) {
+        for (ProjectionKey key : ProjectionKey.values()) {
+            if (key.name().equalsIgnoreCase(name))
+                return key;
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    interface RiskUpdatePublisher {
+        void onRiskUpdateRequest(RiskUpdateRequest request);
+    }
+}
@@ -0,0 +1,253 @@
+package deltix.ember.service.oms.tools;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.trade.*;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary file of recorded order requests, order events and market prices replayed by {@link RiskReplayTool}.
+ *
+ * File starts with magic and version followed by records. Each record starts with type and timestamp:
+ * <pre>
+ *     NEW_ORDER      sourceId destinationId orderId symbol side quantity limitPrice traderId account
+ *     REPLACE_ORDER  sourceId destinationId orderId originalOrderId symbol side quantity limitPrice traderId account
+ *     event          sourceId orderId (REPLACE: originalOrderId, TRADE: tradeQuantity tradePrice)
+ *     PRICE          symbol instrumentType price tickSize
+ * </pre>
+ * Events carry source of the order (destination of the event). Prices and quantities are Decimal64,
+ * market orders have NULL limit price, strings are ASCII prefixed by short length (-1 for null).
+ *
+ * Other recordings (e.g. TimeBase export of OMS stream) can be converted by feeding their messages to {@link Writer}.
+ */
+public final class RiskReplayFile {
+
+    private static final int MAGIC = 0x52525046;
+    private static final int VERSION = 1;
+
+    // record types
+    static final byte NEW_ORDER = 1;
+    static final byte REPLACE_ORDER = 2;
+    static final byte PENDING_NEW = 10;
+    static final byte NEW = 11;
+    static final byte REJECT = 12;
+    static final byte CANCEL = 13;
+    static final byte REPLACE = 14;
+    static final byte CANCEL_REJECT = 15;
+    static final byte TRADE = 16;
+    static final byte PRICE = 20;
+
+    private static final Side[] SIDES = Side.values();
+    private static final InstrumentType[] INSTRUMENT_TYPES = InstrumentType.values();
+
+    private RiskReplayFile() {
+    }
+
+    /** Decoded record, reused by reader */
+    static final class Record {
+        byte type;
+        long timestamp;
+        long sourceId;
+        long destinationId;
+        String orderId;
+        String originalOrderId;
+        String symbol;
+        String traderId;
+        String account;
+        Side side;
+        InstrumentType instrumentType;
+        @Decimal long quantity;
+        @Decimal long price;
+        @Decimal long tickSize;
+
+        boolean isRequest() {
+            return type == NEW_ORDER || type == REPLACE_ORDER;
+        }
+
+        boolean isEvent() {
+            return type >= PENDING_NEW && type <= TRADE;
+        }
+    }
+
+    /** @return records of given file (positioned after the header) */
+    static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+                throw new IOException("Not a risk replay file: " + file);
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported risk replay file version " + version + ": " + file);
+            return buffer;
+        }
+    }
+
+    /** @return false if there are no more records */
+    static boolean read(ByteBuffer buffer, Record record) {
+        if ( ! buffer.hasRemaining())
+            return false;
+
+        record.type = buffer.get();
+        record.timestamp = buffer.getLong();
+        switch (record.type) {
+            case NEW_ORDER:
+            case REPLACE_ORDER:
+                record.sourceId = buffer.getLong();
+                record.destinationId = buffer.getLong();
+                record.orderId = readString(buffer);
+                record.originalOrderId = (record.type == REPLACE_ORDER) ? readString(buffer) : null;
+                record.symbol = readString(buffer);
+                record.side = SIDES[buffer.get()];
+                record.quantity = buffer.getLong();
+                record.price = buffer.getLong();
+                record.traderId = readString(buffer);
+                record.account = readString(buffer);
+                break;
+
+            case PENDING_NEW:
+            case NEW:
+            case REJECT:
+            case CANCEL:
+            case REPLACE:
+            case CANCEL_REJECT:
+            case TRADE:
+                record.sourceId = buffer.getLong();
+                record.orderId = readString(buffer);
+                record.originalOrderId = (record.type == REPLACE) ? readString(buffer) : null;
+                if (record.type == TRADE) {
+                    record.quantity = buffer.getLong();
+                    record.price = buffer.getLong();
+                }
+                break;
+
+            case PRICE:
+                record.symbol = readString(buffer);
+                record.instrumentType = INSTRUMENT_TYPES[buffer.get()];
+                record.price = buffer.getLong();
+                record.tickSize = buffer.getLong();
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown record type " + record.type + " at " + (buffer.position() - 9));
+        }
+        return true;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /** Writes recorded messages in replay file format */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+
+        public Writer(Path file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public void writeNewOrderRequest(OrderNewRequest request) throws IOException {
+            out.writeByte(NEW_ORDER);
+            out.writeLong(request.getTimestamp());
+            out.writeLong(request.getSourceId());
+            out.writeLong(request.getDestinationId());
+            writeString(request.getOrderId());
+            writeOrderEntry(request);
+        }
+
+        public void writeReplaceOrderRequest(OrderReplaceRequest request) throws IOException {
+            out.writeByte(REPLACE_ORDER);
+            out.writeLong(request.getTimestamp());
+            out.writeLong(request.getSourceId());
+            out.writeLong(request.getDestinationId());
+            writeString(request.getOrderId());
+            writeString(request.getOriginalOrderId());
+            writeOrderEntry(request);
+        }
+
+        /** Writes supported event (pending new, new, reject, cancel, replace, cancel reject or trade report), ignores others */
+        public void writeEvent(OrderEvent event) throws IOException {
+            final byte type;
+            if (event instanceof OrderPendingNewEvent)
+                type = PENDING_NEW;
+            else if (event instanceof OrderNewEvent)
+                type = NEW;
+            else if (event instanceof OrderRejectEvent)
+                type = REJECT;
+            else if (event instanceof OrderCancelEvent)
+                type = CANCEL;
+            else if (event instanceof OrderReplaceEvent)
+                type = REPLACE;
+            else if (event instanceof OrderCancelRejectEvent)
+                type = CANCEL_REJECT;
+            else if (event instanceof OrderTradeReportEvent)
+                type = TRADE;
+            else
+                return;
+
+            out.writeByte(type);
+            out.writeLong(event.getTimestamp());
+            out.writeLong(event.getDestinationId()); // source of the order
+            writeString(event.getOrderId());
+            if (type == REPLACE)
+                writeString(((OrderReplaceEvent) event).getOriginalOrderId());
+            if (type == TRADE) {
+                out.writeLong(((OrderTradeReportEvent) event).getTradeQuantity());
+                out.writeLong(((OrderTradeReportEvent) event).getTradePrice());
+            }
+        }
+
+        /** @param tickSize minimum price increment (NULL if unknown) */
+        public void writePrice(long timestamp, CharSequence symbol, InstrumentType instrumentType, @Decimal long price, @Decimal long tickSize) throws IOException {
+            out.writeByte(PRICE);
+            out.writeLong(timestamp);
+            writeString(symbol);
+            out.writeByte(instrumentType.ordinal());
+            out.writeLong(price);
+            out.writeLong(tickSize);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeOrderEntry(OrderEntryRequest request) throws IOException {
+            writeString(request.getSymbol());
+            out.writeByte(request.getSide().ordinal());
+            out.writeLong(request.getQuantity());
+            out.writeLong(request.getOrderType() == OrderType.MARKET ? Decimal64Utils.NULL : request.getLimitPrice());
+            writeString(request.getTraderId());
+            writeString(request.getAccount());
+        }
+
+        private void writeString(CharSequence value) throws IOException {
+            if (value == null) {
+                out.writeShort(-1);
+            } else {
+                out.writeShort(value.length());
+                for (int i = 0; i < value.length(); i++)
+                    out.writeByte(value.charAt(i));
+            }
+        }
+    }
+}
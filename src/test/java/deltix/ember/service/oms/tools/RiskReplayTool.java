@@ -0,0 +1,748 @@
+package deltix.ember.service.oms.tools;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.anvil.util.codec.AlphanumericCodec;
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.message.smd.InstrumentType;
+import deltix.ember.message.smd.MutableBondUpdate;
+import deltix.ember.message.smd.MutableEquityUpdate;
+import deltix.ember.message.smd.MutableFutureUpdate;
+import deltix.ember.message.smd.MutableInstrumentUpdate;
+import deltix.ember.message.trade.*;
+import deltix.ember.service.InstrumentUpdateHandler;
+import deltix.ember.service.data.InstrumentInfo;
+import deltix.ember.service.data.OrderState;
+import deltix.ember.service.oms.position.ConstProjectionPath;
+import deltix.ember.service.oms.position.Projection;
+import deltix.ember.service.oms.risk.api.CustomRiskRuleFactory;
+import deltix.ember.service.oms.risk.api.RiskLimits;
+import deltix.ember.service.oms.risk.api.RiskObserver;
+import deltix.ember.service.oms.risk.api.RiskOrder;
+import deltix.ember.service.oms.risk.api.RiskRule;
+import deltix.ember.service.oms.risk.limits.ManualClock;
+import deltix.ember.service.oms.risk.limits.RiskRuleTestEx;
+import deltix.ember.service.oms.risk.sample.LatencyHistogram;
+import deltix.ember.service.oms.risk.sample.PositionRule;
+import deltix.ember.service.oms.risk.sample.SampleQuantityRiskRuleFactory;
+import deltix.ember.service.oms.util.FixedPositionView;
+import deltix.ember.service.oms.util.OrderRequestBuilder;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Offline replay of recorded order flow through risk rules of CustomRiskRuleFactory.
+ *
+ * Reads {@link RiskReplayFile} and drives each record through FullOrderProcessor (TestOrderProcessor) and rules of
+ * the projection row of the order at maximum speed. Rules are created on first order of each row. Replay clock follows
+ * record timestamps and fires rule timers as time advances. Tool reports throughput, latency of rule callbacks and
+ * every breach. Configuration is passed via system properties, for example:
+ * <pre>
+ *     -Dfile=flow.dat -Dprojection=Trader/Symbol -Dlimits=MaxQuantity=100,MaxNotional=1000000 -Dfactory.maxLossMode=TOTAL
+ * </pre>
+ * where factory.XXX properties are passed to factory setters (as settings of ember.conf) and factory class can be
+ * changed via -Dfactory=className.
+ *
+ * Request rejected by replayed rules is rejected back to OMS (as risk manager would do) and recorded events of such
+ * order (or replacement) are skipped. Position projection of Ember is not available offline: each row maintains its own
+ * position (open sizes, actual size and average cost realized P&amp;L of replayed orders) and passes it to rules that
+ * read positions (see {@link PositionRule}). Rules that need other Ember services unavailable offline are disabled
+ * on first failure and reported.
+ */
+public class RiskReplayTool extends RiskRuleTestEx<RiskRule> {
+
+    private final CustomRiskRuleFactory factory;
+    private final ProjectionKey[] keys;
+    private final Map<String, String> limits;
+    private final RiskLimits riskLimits;
+
+    private final ManualClock replayClock = new ManualClock(0);
+    private final List<InstrumentUpdateHandler> instrumentListeners = new ArrayList<>();
+    private final Map<String, Row> rows = new HashMap<>();
+    private final Map<RiskOrder, Row> orderRows = new IdentityHashMap<>();
+    private final Set<String> rejectedOrders = new HashSet<>();
+    private final StringBuilder rowKey = new StringBuilder(64);
+    private final BreachReporter breaches = new BreachReporter();
+    private final BreachReporter timerHalts = new BreachReporter();
+
+    // reusable messages
+    private final MutableOrderNewRequest newRequest = new MutableOrderNewRequest();
+    private final MutableOrderReplaceRequest replaceRequest = new MutableOrderReplaceRequest();
+    private final MutableOrderPendingNewEvent pendingNewEvent = new MutableOrderPendingNewEvent();
+    private final MutableOrderNewEvent newEvent = new MutableOrderNewEvent();
+    private final MutableOrderRejectEvent rejectEvent = new MutableOrderRejectEvent();
+    private final MutableOrderCancelEvent cancelEvent = new MutableOrderCancelEvent();
+    private final MutableOrderReplaceEvent replaceEvent = new MutableOrderReplaceEvent();
+    private final MutableOrderCancelRejectEvent cancelRejectEvent = new MutableOrderCancelRejectEvent();
+    private final MutableOrderTradeReportEvent tradeEvent = new MutableOrderTradeReportEvent();
+    private final MutableEquityUpdate equityUpdate = new MutableEquityUpdate();
+    private final MutableBondUpdate bondUpdate = new MutableBondUpdate();
+    private final MutableFutureUpdate futureUpdate = new MutableFutureUpdate();
+    private long eventSequence;
+
+    // statistics
+    private final LatencyHistogram newOrderLatency = new LatencyHistogram();
+    private final LatencyHistogram replaceOrderLatency = new LatencyHistogram();
+    private final LatencyHistogram orderEventLatency = new LatencyHistogram();
+    private final LatencyHistogram priceUpdateLatency = new LatencyHistogram();
+    private long records;
+    private long rejectedRequests;
+    private long skippedRecords;
+    private long halts;
+    private long elapsedNanos;
+    private boolean printBreaches = true;
+
+    public static void main(String[] args) throws Exception {
+        String file = (args.length > 0) ? args[0] : System.getProperty("file");
+        if (file == null)
+            throw new IllegalArgumentException("Usage: RiskReplayTool <file> (or -Dfile=...)");
+
+        RiskReplayTool tool = new RiskReplayTool(createFactory(), parseProjection(System.getProperty("projection", "Symbol")), parseLimits(System.getProperty("limits", "")));
+        tool.replay(RiskReplayFile.map(Paths.get(file)));
+        tool.printReport();
+    }
+
+    public RiskReplayTool(CustomRiskRuleFactory factory, ProjectionKey[] keys, Map<String, String> limits) {
+        for (String limitName : limits.keySet()) {
+            if ( ! factory.getLimitNames().contains(limitName))
+                throw new IllegalArgumentException("Limit " + limitName + " is not supported by " + factory.getClass().getSimpleName() + " (supported: " + factory.getLimitNames() + ')');
+        }
+        this.factory = factory;
+        this.keys = keys;
+        this.limits = limits;
+        this.riskLimits = createRiskLimits(limits);
+        this.clock = replayClock;
+        this.isLive = true;
+    }
+
+    /** Replays all records of given buffer */
+    public void replay(ByteBuffer buffer) {
+        final RiskReplayFile.Record record = new RiskReplayFile.Record();
+        final long start = System.nanoTime();
+        while (RiskReplayFile.read(buffer, record))
+            onRecord(record);
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Replays subset of records
+     * @param buffer records (position is not used)
+     * @param offsets ascending positions of records to replay
+     */
+    public void replay(ByteBuffer buffer, int[] offsets) {
+        final RiskReplayFile.Record record = new RiskReplayFile.Record();
+        final long start = System.nanoTime();
+        for (int offset : offsets) {
+            buffer.position(offset);
+            RiskReplayFile.read(buffer, record);
+            onRecord(record);
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /** @param printBreaches false to count breaches without printing them */
+    public void setPrintBreaches(boolean printBreaches) {
+        this.printBreaches = printBreaches;
+    }
+
+    private void onRecord(RiskReplayFile.Record record) {
+        advanceTime(record.timestamp);
+        switch (record.type) {
+            case RiskReplayFile.NEW_ORDER:
+                onNewOrderRequest(record);
+                break;
+            case RiskReplayFile.REPLACE_ORDER:
+                onReplaceOrderRequest(record);
+                break;
+            case RiskReplayFile.PRICE:
+                onPrice(record);
+                break;
+            default:
+                onOrderEvent(record);
+        }
+        records++;
+    }
+
+    /// region Requests
+
+    private void onNewOrderRequest(RiskReplayFile.Record record) {
+        final MutableOrderNewRequest request = newRequest;
+        request.setSourceId(record.sourceId);
+        request.setDestinationId(record.destinationId);
+        request.setOrderId(record.orderId);
+        setOrderEntry(request, record);
+
+        RiskOrder order = processor.placeOrder(request);
+        order.setDMA(OrderRequestBuilder.isDMA(request));
+        cache.add(order.getLastOrder());
+
+        final Row row = getRow(record);
+        orderRows.put(order, row);
+        row.position.addOpen(order); // position includes the request being checked
+        breaches.begin("REJECT", row, record.orderId);
+        for (int i = 0; i < row.rules.length; i++) {
+            final RiskRule rule = row.rules[i];
+            if (rule == null)
+                continue;
+            try {
+                long startTime = System.nanoTime();
+                rule.onNewOrderRequest(order, request, breaches);
+                newOrderLatency.record(System.nanoTime() - startTime);
+            } catch (RuntimeException e) {
+                disable(row, i, e);
+            }
+        }
+
+        if (breaches.breached) {
+            rejectedRequests++;
+            rejectedOrders.add(orderKey(record.sourceId, record.orderId));
+
+            final MutableOrderRejectEvent event = rejectEvent;
+            setOrderEvent(event, order, record.sourceId, record.orderId);
+            event.setReason("Rejected by replayed risk rules");
+            OrderState previousState = order.getState();
+            row.position.removeOpen(order);
+            processor.onOrderReject(order, event);
+            row.position.addOpen(order);
+            dispatchOrderEvent(order, event, previousState, row);
+        }
+    }
+
+    private void onReplaceOrderRequest(RiskReplayFile.Record record) {
+        final RiskOrder order = isRejected(record.sourceId, record.originalOrderId) ? null : cache.get(record.sourceId, record.originalOrderId);
+        final Row row = (order != null) ? orderRows.get(order) : null;
+        if (row == null) {
+            rejectedOrders.add(orderKey(record.sourceId, record.orderId)); // skip events of replacement too
+            skippedRecords++;
+            return;
+        }
+
+        final MutableOrderReplaceRequest request = replaceRequest;
+        request.setSourceId(record.sourceId);
+        request.setDestinationId(record.destinationId);
+        request.setOrderId(record.orderId);
+        request.setOriginalOrderId(record.originalOrderId);
+        setOrderEntry(request, record);
+
+        row.position.removeOpen(order);
+        processor.replaceOrder(order, request);
+        cache.add(order.getLastOrder());
+        row.position.addOpen(order);
+
+        breaches.begin("REJECT", row, record.orderId);
+        for (int i = 0; i < row.rules.length; i++) {
+            final RiskRule rule = row.rules[i];
+            if (rule == null)
+                continue;
+            try {
+                long startTime = System.nanoTime();
+                rule.onReplaceOrderRequest(order, request, breaches);
+                replaceOrderLatency.record(System.nanoTime() - startTime);
+            } catch (RuntimeException e) {
+                disable(row, i, e);
+            }
+        }
+
+        if (breaches.breached) {
+            rejectedRequests++;
+            rejectedOrders.add(orderKey(record.sourceId, record.orderId));
+
+            final MutableOrderCancelRejectEvent event = cancelRejectEvent;
+            setOrderEvent(event, order, record.sourceId, record.orderId);
+            event.setReason("Rejected by replayed risk rules");
+            OrderState previousState = order.getState();
+            row.position.removeOpen(order);
+            processor.onOrderCancelReject(order, event);
+            row.position.addOpen(order);
+            dispatchOrderEvent(order, event, previousState, row);
+        }
+    }
+
+    private void setOrderEntry(MutableOrderEntryRequest request, RiskReplayFile.Record record) {
+        request.setSymbol(record.symbol);
+        request.setInstrumentType(getInstrument(record.symbol, InstrumentType.EQUITY).getInstrumentType());
+        request.setSide(record.side);
+        request.setQuantity(record.quantity);
+        request.setOrderType(Decimal64Utils.isNaN(record.price) ? OrderType.MARKET : OrderType.LIMIT);
+        request.setLimitPrice(record.price);
+        request.setTimeInForce(TimeInForce.DAY);
+        request.setTraderId(record.traderId);
+        request.setAccount(record.account);
+        request.setTimestamp(record.timestamp);
+    }
+
+    /// endregion
+
+    /// region Events
+
+    private void onOrderEvent(RiskReplayFile.Record record) {
+        if (isRejected(record.sourceId, record.orderId)) {
+            skippedRecords++;
+            return;
+        }
+
+        final RiskOrder order = cache.get(record.sourceId, record.orderId);
+        final Row row = (order != null) ? orderRows.get(order) : null;
+        if (row == null) {
+            skippedRecords++; // order was placed before recording started
+            return;
+        }
+
+        final OrderState previousState = order.getState();
+        final OrderEvent event;
+        row.position.removeOpen(order);
+        switch (record.type) {
+            case RiskReplayFile.PENDING_NEW:
+                setOrderEvent(pendingNewEvent, order, record.sourceId, record.orderId);
+                processor.onOrderPendingNew(order, pendingNewEvent);
+                event = pendingNewEvent;
+                break;
+            case RiskReplayFile.NEW:
+                setOrderEvent(newEvent, order, record.sourceId, record.orderId);
+                processor.onOrderNew(order, newEvent);
+                event = newEvent;
+                break;
+            case RiskReplayFile.REJECT:
+                setOrderEvent(rejectEvent, order, record.sourceId, record.orderId);
+                rejectEvent.setReason("Rejected by venue");
+                processor.onOrderReject(order, rejectEvent);
+                event = rejectEvent;
+                break;
+            case RiskReplayFile.CANCEL:
+                setOrderEvent(cancelEvent, order, record.sourceId, record.orderId);
+                cancelEvent.setReason("Canceled");
+                processor.onOrderCancel(order, cancelEvent);
+                event = cancelEvent;
+                break;
+            case RiskReplayFile.REPLACE:
+                setOrderEvent(replaceEvent, order, record.sourceId, record.orderId);
+                replaceEvent.setOriginalOrderId(record.originalOrderId);
+                processor.onOrderReplace(order, replaceEvent);
+                event = replaceEvent;
+                break;
+            case RiskReplayFile.CANCEL_REJECT:
+                setOrderEvent(cancelRejectEvent, order, record.sourceId, record.orderId);
+                cancelRejectEvent.setReason("Rejected by venue");
+                processor.onOrderCancelReject(order, cancelRejectEvent);
+                event = cancelRejectEvent;
+                break;
+            case RiskReplayFile.TRADE:
+                setOrderEvent(tradeEvent, order, record.sourceId, record.orderId);
+                tradeEvent.setTradeQuantity(record.quantity);
+                tradeEvent.setTradePrice(record.price);
+                processor.onTradeReport(order, tradeEvent);
+                row.position.onTrade(order.getSide(), record.quantity, record.price);
+                event = tradeEvent;
+                break;
+            default:
+                throw new IllegalStateException("Unexpected record type " + record.type);
+        }
+        row.position.addOpen(order);
+
+        breaches.begin("HALT", row, record.orderId);
+        dispatchOrderEvent(order, event, previousState, row);
+    }
+
+    private void dispatchOrderEvent(RiskOrder order, OrderEvent event, OrderState previousState, Row row) {
+        for (int i = 0; i < row.rules.length; i++) {
+            final RiskRule rule = row.rules[i];
+            if (rule == null)
+                continue;
+            try {
+                long startTime = System.nanoTime();
+                rule.onOrderEvent(order, event, previousState, breaches);
+                orderEventLatency.record(System.nanoTime() - startTime);
+            } catch (RuntimeException e) {
+                disable(row, i, e);
+            }
+        }
+
+        if (order.isFinal())
+            orderRows.remove(order);
+    }
+
+    private void setOrderEvent(MutableOrderEvent event, RiskOrder order, long sourceId, String orderId) {
+        event.setSourceId(order.getDestinationId());
+        event.setDestinationId(sourceId);
+        event.setOrderId(orderId);
+        event.setTimestamp(replayClock.time);
+        event.setEventId(Long.toString(++eventSequence));
+    }
+
+    /// endregion
+
+    /// region Prices
+
+    private void onPrice(RiskReplayFile.Record record) {
+        getInstrument(record.symbol, record.instrumentType);
+        ps.addPrice(record.symbol, record.price);
+        if (instrumentListeners.isEmpty())
+            return;
+
+        final MutableInstrumentUpdate update;
+        switch (record.instrumentType) {
+            case BOND:
+                update = bondUpdate;
+                break;
+            case FUTURE:
+                update = futureUpdate;
+                break;
+            default:
+                update = equityUpdate;
+        }
+        update.setSymbol(record.symbol);
+        update.setInstrumentType(record.instrumentType);
+        update.setTickSize(record.tickSize);
+
+        for (int i = 0; i < instrumentListeners.size(); i++) {
+            InstrumentUpdateHandler listener = instrumentListeners.get(i);
+            long startTime = System.nanoTime();
+            if (update == bondUpdate)
+                listener.onBondUpdate(bondUpdate);
+            else if (update == futureUpdate)
+                listener.onFutureUpdate(futureUpdate);
+            else
+                listener.onEquityUpdate(equityUpdate);
+            priceUpdateLatency.record(System.nanoTime() - startTime);
+        }
+    }
+
+    /** @return instrument of given symbol, defined on first use (without price) */
+    private InstrumentInfo getInstrument(String symbol, InstrumentType type) {
+        InstrumentInfo result = smd.get(symbol);
+        if (result == null) {
+            addInstrument(symbol, (type == InstrumentType.BOND || type == InstrumentType.FUTURE) ? type : InstrumentType.EQUITY, Double.NaN);
+            result = smd.get(symbol);
+        }
+        return result;
+    }
+
+    @Override
+    public void addInstrumentUpdateListener(InstrumentUpdateHandler instrumentUpdateHandler) {
+        instrumentListeners.add(instrumentUpdateHandler);
+    }
+
+    /// endregion
+
+    /// region Rules
+
+    /** Rules of projection row, rule is null once disabled */
+    private static final class Row {
+        final String path;
+        final String[] limitNames;
+        final RiskRule[] rules;
+        final ReplayPosition position = new ReplayPosition();
+
+        Row(String path, String[] limitNames, RiskRule[] rules) {
+            this.path = path;
+            this.limitNames = limitNames;
+            this.rules = rules;
+        }
+    }
+
+    /** Offline position of projection row, updated before replayed messages reach rules (as position projection of OMS) */
+    private static final class ReplayPosition extends FixedPositionView {
+        private @Decimal long openCost = Decimal64Utils.ZERO; // average cost accounting of actual position
+
+        /** Called before order state changes */
+        void removeOpen(RiskOrder order) {
+            if ( ! order.isFinal())
+                addOpen(order.getSide(), Decimal64Utils.negate(order.getRemainingQuantity()));
+        }
+
+        /** Called after order state changed */
+        void addOpen(RiskOrder order) {
+            if ( ! order.isFinal())
+                addOpen(order.getSide(), order.getRemainingQuantity());
+        }
+
+        private void addOpen(Side side, @Decimal long quantity) {
+            if (side == Side.BUY)
+                setOpenBuySize(Decimal64Utils.add(getOpenBuySize(), quantity));
+            else
+                setOpenSellSize(Decimal64Utils.add(getOpenSellSize(), quantity));
+        }
+
+        void onTrade(Side side, @Decimal long tradeQuantity, @Decimal long price) {
+            final @Decimal long size = getActualPositionSize();
+            final @Decimal long quantity = (side == Side.BUY) ? tradeQuantity : Decimal64Utils.negate(tradeQuantity);
+            final @Decimal long newSize = Decimal64Utils.add(size, quantity);
+
+            if (Decimal64Utils.isZero(size) || Decimal64Utils.isNegative(size) == Decimal64Utils.isNegative(quantity)) {
+                openCost = Decimal64Utils.add(openCost, Decimal64Utils.multiply(quantity, price));
+            } else {
+                final @Decimal long averagePrice = Decimal64Utils.divide(openCost, size);
+                final @Decimal long priceChange = Decimal64Utils.subtract(price, averagePrice);
+                if (Decimal64Utils.isZero(newSize) || Decimal64Utils.isNegative(newSize) == Decimal64Utils.isNegative(size)) {
+                    setRealizedPnL(Decimal64Utils.subtract(getRealizedPnL(), Decimal64Utils.multiply(quantity, priceChange)));
+                    openCost = Decimal64Utils.multiply(newSize, averagePrice);
+                } else {
+                    setRealizedPnL(Decimal64Utils.add(getRealizedPnL(), Decimal64Utils.multiply(size, priceChange)));
+                    openCost = Decimal64Utils.multiply(newSize, price);
+                }
+            }
+            setActualPositionSize(newSize);
+        }
+    }
+
+    private Row getRow(RiskReplayFile.Record record) {
+        rowKey.setLength(0);
+        for (ProjectionKey key : keys)
+            rowKey.append(getValue(key, record)).append('/');
+
+        Row row = rows.get(rowKey.toString());
+        if (row == null) {
+            row = createRow(record);
+            rows.put(rowKey.toString(), row);
+        }
+        return row;
+    }
+
+    private Row createRow(RiskReplayFile.Record record) {
+        final String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            values[i] = getValue(keys[i], record);
+        final ConstProjectionPath path = new ConstProjectionPath(new Projection(keys), values);
+
+        final String[] limitNames = limits.keySet().toArray(new String[0]);
+        final RiskRule[] rules = new RiskRule[limitNames.length];
+        final Row row = new Row(path.toString(), limitNames, rules);
+        for (int i = 0; i < limitNames.length; i++) {
+            try {
+                RiskRule rule = factory.create(limitNames[i], path, this);
+                if (rule instanceof PositionRule)
+                    ((PositionRule) rule).setPositionView(row.position);
+                rule.setLimits(riskLimits);
+                rule.onLive(this);
+                rules[i] = rule;
+            } catch (RuntimeException e) {
+                disable(row, i, e);
+            }
+        }
+        return row;
+    }
+
+    /** @return value of given projection key of order request record */
+    static String getValue(ProjectionKey key, RiskReplayFile.Record record) {
+        final String value;
+        switch (key) {
+            case Source:
+                return AlphanumericCodec.decode(record.sourceId);
+            case Destination:
+                return AlphanumericCodec.decode(record.destinationId);
+            case Symbol:
+                value = record.symbol;
+                break;
+            case Trader:
+                value = record.traderId;
+                break;
+            case Account:
+                value = record.account;
+                break;
+            default:
+                throw new IllegalArgumentException("Projection key " + key + " is not supported by replay");
+        }
+        return (value != null) ? value : "";
+    }
+
+    private void disable(Row row, int index, RuntimeException e) {
+        row.rules[index] = null;
+        System.out.println("Disabled " + row.limitNames[index] + " [" + row.path + "]: " + e);
+    }
+
+    /** Prints every breach and counts them by limit */
+    private final class BreachReporter implements RiskObserver {
+        private final Map<String, long[]> counts = new TreeMap<>();
+        private String action = "HALT";
+        private Row row;
+        private String orderId;
+        boolean breached;
+
+        void begin(String action, Row row, String orderId) {
+            this.action = action;
+            this.row = row;
+            this.orderId = orderId;
+            this.breached = false;
+        }
+
+        @Override
+        public void onBreach(ConstProjectionPath path, String limitName, int rejectCode, CharSequence reason) {
+            breached = true;
+            counts.computeIfAbsent(limitName, name -> new long[1])[0]++;
+            if (action.equals("HALT"))
+                halts++;
+            if (printBreaches) {
+                System.out.println(Instant.ofEpochMilli(replayClock.time) + " " + action + ' ' + limitName +
+                        " [" + ((row != null) ? row.path : path) + "] " + ((orderId != null) ? "order " + orderId : "timer") + ": " + reason);
+            }
+        }
+    }
+
+    @Override
+    public RiskObserver getTradeHaltHandler() {
+        return timerHalts;
+    }
+
+    /// endregion
+
+    /** Moves replay clock forward (records are not required to be strictly ordered) and fires due timers */
+    private void advanceTime(long timestamp) {
+        if (timestamp > replayClock.time) {
+            replayClock.time = timestamp;
+            timer.work(timestamp);
+        }
+    }
+
+    private boolean isRejected(long sourceId, String orderId) {
+        return ! rejectedOrders.isEmpty() && rejectedOrders.contains(orderKey(sourceId, orderId));
+    }
+
+    static String orderKey(long sourceId, String orderId) {
+        return sourceId + ":" + orderId;
+    }
+
+    /// region Report
+
+    public void printReport() {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Replayed %d records in %.3f sec (%.0f records/sec), %d projection rows%n", records, seconds, records / seconds, rows.size());
+        System.out.println("Rejected " + rejectedRequests + " requests, skipped " + skippedRecords + " records of rejected or unknown orders");
+        printLatency("onNewOrderRequest    ", newOrderLatency);
+        printLatency("onReplaceOrderRequest", replaceOrderLatency);
+        printLatency("onOrderEvent         ", orderEventLatency);
+        printLatency("onPriceUpdate        ", priceUpdateLatency);
+
+        getBreachCounts().forEach((limitName, count) -> System.out.println("Breaches of " + limitName + ": " + count));
+    }
+
+    /** @return number of requests rejected by replayed rules */
+    public long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    /** @return number of breaches reported by order events and timers (trading halts) */
+    public long getHalts() {
+        return halts;
+    }
+
+    /** @return number of breaches (rejects and halts) by limit name */
+    public Map<String, Long> getBreachCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        breaches.counts.forEach((limitName, count) -> result.merge(limitName, count[0], Long::sum));
+        timerHalts.counts.forEach((limitName, count) -> result.merge(limitName, count[0], Long::sum));
+        return result;
+    }
+
+    private static void printLatency(String callback, LatencyHistogram histogram) {
+        System.out.printf("%s count: %8d  p50: %8.3f  p90: %8.3f  p99: %8.3f  p99.9: %8.3f  max: %8.3f (us)%n",
+                callback,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    /// endregion
+
+    /// region Configuration
+
+    /** Creates factory and passes factory.XXX system properties to its setters */
+    static CustomRiskRuleFactory createFactory() throws ReflectiveOperationException {
+        String className = System.getProperty("factory", SampleQuantityRiskRuleFactory.class.getName());
+        CustomRiskRuleFactory factory = (CustomRiskRuleFactory) Class.forName(className).getDeclaredConstructor().newInstance();
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("factory."))
+                configure(factory, name.substring("factory.".length()), System.getProperty(name));
+        }
+        return factory;
+    }
+
+    private static void configure(Object factory, String setting, String value) throws ReflectiveOperationException {
+        String setterName = "set" + Character.toUpperCase(setting.charAt(0)) + setting.substring(1);
+        for (Method setter : factory.getClass().getMethods()) {
+            if (setter.getName().equals(setterName) && setter.getParameterCount() == 1) {
+                Class<?> type = setter.getParameterTypes()[0];
+                if (type == String.class)
+                    setter.invoke(factory, value);
+                else if (type == long.class)
+                    setter.invoke(factory, Long.parseLong(value));
+                else if (type == int.class)
+                    setter.invoke(factory, Integer.parseInt(value));
+                else if (type == boolean.class)
+                    setter.invoke(factory, Boolean.parseBoolean(value));
+                else if (type == List.class)
+                    setter.invoke(factory, Arrays.asList(value.split(",")));
+                else
+                    throw new IllegalArgumentException("Unsupported type of factory setting " + setting + ": " + type);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown factory setting: " + setting);
+    }
+
+    /** @param projection projection keys separated by slash, e.g. Trader/Symbol */
+    static ProjectionKey[] parseProjection(String projection) {
+        String[] names = projection.split("/");
+        ProjectionKey[] result = new ProjectionKey[names.length];
+        for (int i = 0; i < names.length; i++)
+            result[i] = ProjectionKey.valueOf(names[i].trim());
+        return result;
+    }
+
+    /** @param limits comma separated limits, e.g. MaxQuantity=100,MaxNotional=1000000 */
+    static Map<String, String> parseLimits(String limits) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String limit : limits.split(",")) {
+            if (limit.trim().isEmpty())
+                continue;
+            int index = limit.indexOf('=');
+            if (index < 0)
+                throw new IllegalArgumentException("Expected limitName=value: " + limit);
+            result.put(limit.substring(0, index).trim(), limit.substring(index + 1).trim());
+        }
+        if (result.isEmpty())
+            throw new IllegalArgumentException("No limits to replay, use -Dlimits=MaxQuantity=100,...");
+        return result;
+    }
+
+    /** @return RiskLimits of given limit values (limits that are not defined get default value) */
+    static RiskLimits createRiskLimits(Map<String, String> limits) {
+        return (RiskLimits) Proxy.newProxyInstance(RiskLimits.class.getClassLoader(), new Class<?>[]{RiskLimits.class}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "RiskLimits" + limits;
+                }
+            }
+
+            String value = (args != null && args.length > 0) ? limits.get(String.valueOf(args[0])) : null;
+            if (value == null)
+                return (args != null && args.length > 1) ? args[1] : null;
+
+            Class<?> type = method.getReturnType();
+            if (type == int.class)
+                return (int) Double.parseDouble(value);
+            if (type == long.class)
+                return (long) Double.parseDouble(value);
+            if (type == double.class)
+                return Double.parseDouble(value);
+            if (type == boolean.class)
+                return Boolean.parseBoolean(value);
+            return value;
+        });
+    }
+
+    /// endregion
+}
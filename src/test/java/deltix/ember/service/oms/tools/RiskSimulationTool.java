@@ -0,0 +1,305 @@
+package deltix.ember.service.oms.tools;
+
+import deltix.ember.message.risk.ProjectionKey;
+import deltix.ember.service.oms.risk.api.CustomRiskRuleFactory;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * What-if simulation of candidate limits over recorded order flow (see {@link RiskReplayTool}).
+ *
+ * Recorded flow is split into partitions by projection row (e.g. Trader/Symbol) in a single pass. Each partition is
+ * replayed for every candidate set of limits by independent RiskReplayTool (own factory, rules, OMS state and clock)
+ * on ForkJoinPool. Tasks share nothing but read-only mapped file, so simulation scales with number of cores.
+ * Partition replays its own orders and prices of symbols it trades. Example:
+ * <pre>
+ *     -Dfile=flow.dat -Dprojection=Trader -Dcandidates="MaxQuantity=100,MaxLoss=1000;MaxQuantity=200,MaxLoss=2000" -Dthreads=16 -Doutput=report.csv
+ * </pre>
+ * Breach counts and would-be rejects of each candidate are merged into report, optional CSV output breaks them down
+ * by partition. Factory is configured by factory.XXX system properties as in RiskReplayTool.
+ */
+public final class RiskSimulationTool {
+
+    private final ByteBuffer buffer;
+    private final ProjectionKey[] keys;
+    private final List<Map<String, String>> candidates;
+
+    private final List<Partition> partitions = new ArrayList<>();
+    private final Map<String, IntList> priceOffsets = new HashMap<>(); // by symbol
+    private long elapsedNanos;
+
+    public static void main(String[] args) throws Exception {
+        String file = (args.length > 0) ? args[0] : System.getProperty("file");
+        String candidates = System.getProperty("candidates");
+        if (file == null || candidates == null)
+            throw new IllegalArgumentException("Usage: RiskSimulationTool <file> -Dcandidates=MaxQuantity=100,MaxLoss=1000;MaxQuantity=200,...");
+
+        RiskSimulationTool simulation = new RiskSimulationTool(RiskReplayFile.map(Paths.get(file)), RiskReplayTool.parseProjection(System.getProperty("projection", "Trader/Symbol")), parseCandidates(candidates));
+        RiskReplayTool.createFactory(); // validate factory settings before fork
+        simulation.run(new ForkJoinPool(Integer.getInteger("threads", Runtime.getRuntime().availableProcessors())));
+        simulation.printReport(System.out);
+
+        String output = System.getProperty("output");
+        if (output != null) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(output)))) {
+                simulation.writeCsv(out);
+            }
+        }
+    }
+
+    public RiskSimulationTool(ByteBuffer buffer, ProjectionKey[] keys, List<Map<String, String>> candidates) {
+        this.buffer = buffer;
+        this.keys = keys;
+        this.candidates = candidates;
+    }
+
+    /** Splits flow into partitions and replays each partition for each candidate using given pool */
+    public void run(ForkJoinPool pool) {
+        final long start = System.nanoTime();
+        partition();
+        pool.invoke(new PartitionsTask(0, partitions.size()));
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /// region Partitioning
+
+    /** Records of projection row and results of its candidates */
+    private static final class Partition {
+        final String key;
+        final IntList offsets = new IntList();
+        final Set<String> symbols = new HashSet<>();
+        final Result[] results;
+
+        Partition(String key, int candidates) {
+            this.key = key;
+            this.results = new Result[candidates];
+        }
+    }
+
+    /** Outcome of partition replay with one candidate (replay state itself is discarded) */
+    private static final class Result {
+        final long rejects;
+        final long halts;
+        final Map<String, Long> breaches;
+
+        Result(RiskReplayTool replay) {
+            this.rejects = replay.getRejectedRequests();
+            this.halts = replay.getHalts();
+            this.breaches = replay.getBreachCounts();
+        }
+    }
+
+    /** Assigns each record to partition of its order, price records are indexed by symbol */
+    private void partition() {
+        final ByteBuffer records = buffer.duplicate();
+        final RiskReplayFile.Record record = new RiskReplayFile.Record();
+        final Map<String, Partition> partitionsByKey = new HashMap<>();
+        final Map<String, Partition> partitionsByOrder = new HashMap<>();
+        final StringBuilder key = new StringBuilder(64);
+
+        int offset = records.position();
+        while (RiskReplayFile.read(records, record)) {
+            final Partition partition;
+            switch (record.type) {
+                case RiskReplayFile.NEW_ORDER:
+                    key.setLength(0);
+                    for (ProjectionKey projectionKey : keys)
+                        key.append(RiskReplayTool.getValue(projectionKey, record)).append('/');
+                    partition = partitionsByKey.computeIfAbsent(key.toString(), k -> {
+                        Partition result = new Partition(k, candidates.size());
+                        partitions.add(result);
+                        return result;
+                    });
+                    partitionsByOrder.put(RiskReplayTool.orderKey(record.sourceId, record.orderId), partition);
+                    partition.symbols.add(record.symbol);
+                    break;
+
+                case RiskReplayFile.REPLACE_ORDER:
+                    partition = partitionsByOrder.get(RiskReplayTool.orderKey(record.sourceId, record.originalOrderId));
+                    if (partition != null) {
+                        partitionsByOrder.put(RiskReplayTool.orderKey(record.sourceId, record.orderId), partition);
+                        partition.symbols.add(record.symbol);
+                    }
+                    break;
+
+                case RiskReplayFile.PRICE:
+                    priceOffsets.computeIfAbsent(record.symbol, symbol -> new IntList()).add(offset);
+                    partition = null;
+                    break;
+
+                default:
+                    partition = partitionsByOrder.get(RiskReplayTool.orderKey(record.sourceId, record.orderId));
+            }
+
+            if (partition != null)
+                partition.offsets.add(offset);
+            offset = records.position();
+        }
+    }
+
+    /** @return offsets of partition records and prices of its symbols in file order */
+    private int[] getOffsets(Partition partition) {
+        IntList result = new IntList();
+        result.addAll(partition.offsets);
+        for (String symbol : partition.symbols) {
+            IntList prices = priceOffsets.get(symbol);
+            if (prices != null)
+                result.addAll(prices);
+        }
+        int[] offsets = result.toArray();
+        Arrays.sort(offsets);
+        return offsets;
+    }
+
+    /// endregion
+
+    /// region Tasks
+
+    /** Range of partitions, split in halves down to single partition */
+    private final class PartitionsTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        PartitionsTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartitionsTask(from, middle), new PartitionsTask(middle, to));
+            } else if (to > from) {
+                Partition partition = partitions.get(from);
+                int[] offsets = getOffsets(partition);
+                List<CandidateTask> tasks = new ArrayList<>(candidates.size());
+                for (int i = 0; i < candidates.size(); i++)
+                    tasks.add(new CandidateTask(partition, i, offsets));
+                invokeAll(tasks);
+            }
+        }
+    }
+
+    /** Replay of partition with one candidate set of limits */
+    private final class CandidateTask extends RecursiveAction {
+        private final Partition partition;
+        private final int candidate;
+        private final int[] offsets;
+
+        CandidateTask(Partition partition, int candidate, int[] offsets) {
+            this.partition = partition;
+            this.candidate = candidate;
+            this.offsets = offsets;
+        }
+
+        @Override
+        protected void compute() {
+            final CustomRiskRuleFactory factory;
+            try {
+                factory = RiskReplayTool.createFactory(); // factories keep per-rule state
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create risk rule factory", e);
+            }
+
+            RiskReplayTool replay = new RiskReplayTool(factory, keys, candidates.get(candidate));
+            replay.setPrintBreaches(false);
+            replay.replay(buffer.duplicate(), offsets);
+            partition.results[candidate] = new Result(replay);
+        }
+    }
+
+    /// endregion
+
+    /// region Report
+
+    public void printReport(PrintStream out) {
+        out.printf("Simulated %d partitions x %d candidates in %.3f sec%n", partitions.size(), candidates.size(), elapsedNanos / 1e9);
+        out.printf("%-4s %-48s %10s %10s  %s%n", "#", "Limits", "Rejects", "Halts", "Breaches");
+        for (int i = 0; i < candidates.size(); i++) {
+            long rejects = 0;
+            long halts = 0;
+            Map<String, Long> breaches = new TreeMap<>();
+            for (Partition partition : partitions) {
+                Result result = partition.results[i];
+                rejects += result.rejects;
+                halts += result.halts;
+                result.breaches.forEach((limitName, count) -> breaches.merge(limitName, count, Long::sum));
+            }
+            out.printf("%-4d %-48s %10d %10d  %s%n", i + 1, formatLimits(candidates.get(i)), rejects, halts, breaches);
+        }
+    }
+
+    /** Writes results of each partition and candidate */
+    public void writeCsv(PrintStream out) {
+        Set<String> limitNames = new TreeSet<>();
+        for (Map<String, String> candidate : candidates)
+            limitNames.addAll(candidate.keySet());
+
+        out.print("Partition,Candidate,Limits,Rejects,Halts");
+        for (String limitName : limitNames)
+            out.print(',' + limitName);
+        out.println();
+
+        for (Partition partition : partitions) {
+            for (int i = 0; i < candidates.size(); i++) {
+                Result result = partition.results[i];
+                out.print(partition.key + ',' + (i + 1) + ",\"" + formatLimits(candidates.get(i)) + "\"," + result.rejects + ',' + result.halts);
+                for (String limitName : limitNames)
+                    out.print(',' + String.valueOf(result.breaches.getOrDefault(limitName, 0L)));
+                out.println();
+            }
+        }
+    }
+
+    private static String formatLimits(Map<String, String> limits) {
+        StringBuilder result = new StringBuilder();
+        limits.forEach((limitName, value) -> {
+            if (result.length() > 0)
+                result.append(',');
+            result.append(limitName).append('=').append(value);
+        });
+        return result.toString();
+    }
+
+    /// endregion
+
+    /** @param candidates candidate sets of limits separated by semicolon, e.g. MaxQuantity=100,MaxLoss=1000;MaxQuantity=200,MaxLoss=2000 */
+    static List<Map<String, String>> parseCandidates(String candidates) {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (String candidate : candidates.split(";")) {
+            if ( ! candidate.trim().isEmpty())
+                result.add(RiskReplayTool.parseLimits(candidate));
+        }
+        return result;
+    }
+
+    /** Growable array of record offsets */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length)
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
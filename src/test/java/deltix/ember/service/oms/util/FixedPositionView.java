@@ -0,0 +1,50 @@
+package deltix.ember.service.oms.util;
+
+import com.epam.deltix.dfp.Decimal;
+import com.epam.deltix.dfp.Decimal64Utils;
+import deltix.ember.service.oms.risk.api.PositionView;
+
+/** PositionView with explicitly set values (for risk rule tests and benchmarks) */
+public class FixedPositionView implements PositionView {
+
+    private @Decimal long actualPositionSize = Decimal64Utils.ZERO;
+    private @Decimal long openBuySize = Decimal64Utils.ZERO;
+    private @Decimal long openSellSize = Decimal64Utils.ZERO;
+    private @Decimal long realizedPnL = Decimal64Utils.ZERO;
+
+    @Override
+    public @Decimal long getActualPositionSize() {
+        return actualPositionSize;
+    }
+
+    public void setActualPositionSize(@Decimal long actualPositionSize) {
+        this.actualPositionSize = actualPositionSize;
+    }
+
+    @Override
+    public @Decimal long getOpenBuySize() {
+        return openBuySize;
+    }
+
+    public void setOpenBuySize(@Decimal long openBuySize) {
+        this.openBuySize = openBuySize;
+    }
+
+    @Override
+    public @Decimal long getOpenSellSize() {
+        return openSellSize;
+    }
+
+    public void setOpenSellSize(@Decimal long openSellSize) {
+        this.openSellSize = openSellSize;
+    }
+
+    @Override
+    public @Decimal long getRealizedPnL() {
+        return realizedPnL;
+    }
+
+    public void setRealizedPnL(@Decimal long realizedPnL) {
+        this.realizedPnL = realizedPnL;
+    }
+}